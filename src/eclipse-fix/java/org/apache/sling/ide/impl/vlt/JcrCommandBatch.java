@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.sling.ide.impl.vlt;
+
+import org.apache.sling.ide.jcr.RepositoryUtils;
+import org.apache.sling.ide.transport.Command;
+import org.apache.sling.ide.transport.Repository;
+import org.apache.sling.ide.transport.RepositoryInfo;
+import org.apache.sling.ide.transport.Result;
+import org.apache.sling.ide.transport.TracingCommand;
+
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Executes a list of JCR Commands inside a single JCR Session and
+ * commits them with one save. A JcrCommand only exposes an execute()
+ * method that logs in, saves and logs out for each command and so this
+ * class needs to be in the same package to call execute0() directly.
+ * The Vault Repository wraps its commands into a Tracing Command which
+ * does not expose its delegate and so it is obtained with reflection.
+ */
+public class JcrCommandBatch {
+
+    private static Field tracedCommandField;
+    private static boolean tracedCommandFieldLookedUp = false;
+
+    private JcrCommandBatch() {}
+
+    /**
+     * @return True if all the given Commands can be executed in a single Session of the given Repository
+     */
+    public static boolean supports(Repository repository, List<Command<?>> commandList) {
+        if(!(repository instanceof VltRepository) || commandList == null || commandList.isEmpty()) {
+            return false;
+        }
+        for(Command<?> command : commandList) {
+            if(unwrap(command) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes the given commands in the given order in one JCR Session. Either all changes
+     * are saved or, if any of the commands fails, none of them.
+     *
+     * @param repository Repository to execute the commands against. Must be supported
+     * @param commandList Commands to be executed. Must be supported
+     * @return Success Result if all commands were saved otherwise a Failure Result with the cause
+     */
+    public static Result<Void> execute(Repository repository, List<Command<?>> commandList) {
+        if(!supports(repository, commandList)) {
+            return JcrResult.failure(new IllegalArgumentException("Commands cannot be executed as a batch: " + commandList));
+        }
+        Session session = null;
+        try {
+            RepositoryInfo repositoryInfo = ((VltRepository) repository).getRepositoryInfo();
+            javax.jcr.Repository jcrRepository = RepositoryUtils.getRepository(repositoryInfo);
+            Credentials credentials = RepositoryUtils.getCredentials(repositoryInfo);
+            session = jcrRepository.login(credentials);
+            for(Command<?> command : commandList) {
+                unwrap(command).execute0(session);
+            }
+            session.save();
+            return JcrResult.success(null);
+        } catch(RepositoryException e) {
+            return JcrResult.failure(e);
+        } catch(IOException e) {
+            return JcrResult.failure(e);
+        } catch(RuntimeException e) {
+            return JcrResult.failure(e);
+        } finally {
+            if(session != null) {
+                // Logging out without a save discards all the changes of a failed batch
+                session.logout();
+            }
+        }
+    }
+
+    private static JcrCommand<?> unwrap(Command<?> command) {
+        Command<?> ret = command;
+        if(ret instanceof TracingCommand) {
+            Field field = getTracedCommandField();
+            if(field == null) {
+                return null;
+            }
+            try {
+                ret = (Command<?>) field.get(ret);
+            } catch(IllegalAccessException e) {
+                return null;
+            }
+        }
+        return ret instanceof JcrCommand ? (JcrCommand<?>) ret : null;
+    }
+
+    private static synchronized Field getTracedCommandField() {
+        if(!tracedCommandFieldLookedUp) {
+            tracedCommandFieldLookedUp = true;
+            try {
+                tracedCommandField = TracingCommand.class.getDeclaredField("command");
+                tracedCommandField.setAccessible(true);
+            } catch(NoSuchFieldException e) {
+                System.err.println("Could not find the 'command' field of the Tracing Command -> batching is disabled");
+            } catch(SecurityException e) {
+                System.err.println("Could not access the 'command' field of the Tracing Command -> batching is disabled");
+            }
+        }
+        return tracedCommandField;
+    }
+}
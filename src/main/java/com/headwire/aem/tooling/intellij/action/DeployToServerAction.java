@@ -93,10 +93,10 @@ public class DeployToServerAction
         aProgressHandler.next("Build and Deploy " + (module != null ? "All" : "Single") + " Module");
         if(module != null) {
             // Deploy only the selected Module
-            connectionManager.deployModule(dataContext, module, false, aProgressHandler);
+            connectionManager.deployModule(dataContext, module, forceDeploy, aProgressHandler);
         } else {
             // Deploy all Modules of the Project
-            connectionManager.deployModules(dataContext, false, aProgressHandler);
+            connectionManager.deployModules(dataContext, forceDeploy, aProgressHandler);
         }
         progressHandler.next("Done");
     }
@@ -18,6 +18,7 @@
 
 package com.headwire.aem.tooling.intellij.action;
 
+import com.headwire.aem.tooling.intellij.communication.ContentHashIndexManager;
 import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager;
 import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
 import com.headwire.aem.tooling.intellij.explorer.SlingServerTreeSelectionHandler;
@@ -71,6 +72,10 @@ public class ResetConfigurationAction extends AbstractProjectAction {
                                 Util.resetModificationStamp(contentResourceDirectory, true);
                             }
                         }
+                        ContentHashIndexManager contentHashIndexManager = ComponentProvider.getComponent(project, ContentHashIndexManager.class);
+                        if(contentHashIndexManager != null) {
+                            contentHashIndexManager.reset(module);
+                        }
                         getMessageManager(project).sendInfoNotification("purge.cache.end", module.getName());
                     }
                 }
@@ -92,6 +92,8 @@ public class StartRunConnectionAction extends AbstractConnectionAction {
                         }
                         progressHandlerSubTask.next("progress.update.server.status.to.running");
                         serverConnectionManager.updateServerStatus(serverConfiguration.getName(), ServerConfiguration.ServerStatus.running);
+                        // Publish what was changed while the Server was not connected
+                        serverConnectionManager.replayOfflineChanges();
                     }
                 } else {
                     progressHandlerSubTask.next("progress.update.server.status.to.failed");
@@ -18,6 +18,8 @@
 
 package com.headwire.aem.tooling.intellij.communication;
 
+import com.headwire.aem.tooling.intellij.communication.DeployMetrics.Phase;
+import org.apache.sling.ide.impl.vlt.JcrCommandBatch;
 import org.apache.sling.ide.io.ConnectorException;
 import org.apache.sling.ide.io.ExceptionConstants;
 import org.apache.sling.ide.io.NewResourceChangeCommandFactory;
@@ -30,10 +32,18 @@ import org.apache.sling.ide.transport.Result;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class contains all the generic code that is common to all plugins
@@ -75,6 +85,20 @@ public abstract class AbstractDeploymentManager<M, P, F>
         abstract public FileWrapper obtainResourceFile(String resourcePath);
 
         abstract public void setModuleLastModificationTimestamp(long timestamp);
+
+        /** @return Number of Workers used to build and publish the Resources of this Module in parallel **/
+        abstract public int getPublishConcurrency();
+
+        /** @return Number of Commands saved together. 1 means no batching and 0 means one batch per folder **/
+        abstract public int getPublishBatchSize();
+
+        /** @return Journal of the Publishes of this Module to its Server or null if there is none **/
+        abstract public DeployJournal obtainDeployJournal();
+
+        /** @return True if the user cancelled the Publish of this Module **/
+        public boolean isCancelled() {
+            return false;
+        }
     }
 
     public class ProjectWrapper {
@@ -88,6 +112,15 @@ public abstract class AbstractDeploymentManager<M, P, F>
         }
     }
 
+    /** Receives the resources found by a walk of the local content **/
+    public interface ChangedResourceVisitor<W> {
+        /** Called with a resource that needs to be published **/
+        void changed(W file);
+
+        /** Called with the timestamp of a resource that is already deployed **/
+        void unchanged(long timestamp);
+    }
+
     public abstract class FileWrapper {
         private F file;
         public FileWrapper(F file) {
@@ -108,7 +141,26 @@ public abstract class AbstractDeploymentManager<M, P, F>
 
         abstract public long getTimestamp();
 
-        abstract public void getChangedResourceList(List<FileWrapper> resourceList);
+        /** @return True if this resource was deployed before so that it counts for the last modification timestamp **/
+        abstract public boolean isDeployed();
+
+        /**
+         * Walks the resources below this one and hands each resource that needs to be published to the visitor.
+         * Subtrees denied by the filter, ignored resources and renditions other than the originals are not
+         * entered and unchanged resources are only reported with their timestamp.
+         *
+         * @param force True if all resources are published even if they did not change
+         * @param visitor Receiver of the found resources
+         */
+        abstract public void walkChangedResources(boolean force, ChangedResourceVisitor<FileWrapper> visitor);
+
+        /** @return Digest of everything that defines the order of the children of this resource or null if not available **/
+        abstract public byte[] getChildOrderDigest();
+
+        /** @return Child Order Digest recorded after the last reorder of this resource or null if unknown **/
+        abstract public byte[] getDeployedChildOrderDigest();
+
+        abstract public void setDeployedChildOrderDigest(byte[] digest);
     }
 
     abstract void sendMessage(MessageType messageType, String message, Object...parameters);
@@ -119,14 +171,35 @@ public abstract class AbstractDeploymentManager<M, P, F>
     public enum SynchronizationStatus {updating, upToDate, failed}
 
     private NewResourceChangeCommandFactory commandFactory;
+    private RemotePathCache remotePathCache = new RemotePathCache();
+    private DeployMetrics deployMetrics;
 
-    public AbstractDeploymentManager(NewResourceChangeCommandFactory resourceChangeCommandFactory) {
+    public AbstractDeploymentManager(NewResourceChangeCommandFactory resourceChangeCommandFactory, DeployMetrics deployMetrics) {
         commandFactory = resourceChangeCommandFactory;
+        this.deployMetrics = deployMetrics;
+    }
+
+    /** @return Timings of the Deploy Pipeline **/
+    public DeployMetrics getDeployMetrics() {
+        return deployMetrics;
     }
 
-    public void publishModule(ModuleWrapper module, boolean force) {
+    /** @return Cache of the resources that are known to exist on the Server **/
+    public RemotePathCache getRemotePathCache() {
+        return remotePathCache;
+    }
+
+    /**
+     * @param module Module to publish
+     * @param force If true all resources are published otherwise only the changed ones
+     * @return True if the Module was published completely
+     */
+    public boolean publishModule(ModuleWrapper module, boolean force) {
+        long publishStart = deployMetrics.start();
+        boolean ret = false;
         Repository repository = null;
-        long lastModificationTimestamp = -1;
+        DeployJournal journal = null;
+        final AtomicLong lastModificationTimestamp = new AtomicLong(-1);
         if(force) {
             sendMessage(MessageType.INFO, "deploy.module.by.force.prepare", module);
         } else {
@@ -138,89 +211,76 @@ public abstract class AbstractDeploymentManager<M, P, F>
                 sendMessage(MessageType.DEBUG, "Got Repository: " + repository);
                 module.updateModuleStatus(SynchronizationStatus.updating);
                 List<String> resourceList = module.findContentResources(null);
-                Set<String> allResourcesUpdatedList = new HashSet<String>();
+                // Publish Jobs are running concurrently and so this set must be thread safe
+                Set<String> allResourcesUpdatedList = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                final List<PublishItem> publishList = new ArrayList<PublishItem>();
+                final List<PublishItem> renditionOriginalList = new ArrayList<PublishItem>();
+                long walkStart = deployMetrics.start();
                 for(String resource : resourceList) {
-                    FileWrapper resourceFile = module.obtainResourceFile(resource);
+                    final FileWrapper resourceFile = module.obtainResourceFile(resource);
                     sendMessage(MessageType.DEBUG, "Resource File to deploy: " + resourceFile);
-                    List<FileWrapper> changedResources = new ArrayList<FileWrapper>();
-                    resourceFile.getChangedResourceList(changedResources);
-                    //AS TODO: This is a hack to prevent the DAM Workflows to generate Renditions files before any of them a deployed to AEM. For that we just place any /renditions/original to the end of the list
-                    // Reorder the Changed Resoruces so that any /renditions/original is at the end
-                    List<FileWrapper> changedResourcesOrdered = new ArrayList<FileWrapper>(changedResources.size());
-                    Iterator<FileWrapper> i = changedResources.iterator();
-                    while(i.hasNext()) {
-                        FileWrapper fileWrapper = i.next();
-                        if(!fileWrapper.getPath().contains(RENDITIONS_ORIGINAL_FOLDER)) {
-                            changedResourcesOrdered.add(fileWrapper);
-                            i.remove();
-                        }
-                    }
-                    i = changedResources.iterator();
-                    while(i.hasNext()) {
-                        changedResourcesOrdered.add(i.next());
-                    }
-                    changedResources = changedResourcesOrdered;
-                    for(FileWrapper changedResource : changedResources) {
-                        // Brute force fix for avoiding the rendition issue
-                        String path = changedResource.getPath();
-                        if(path.contains(RENDITIONS_PATH_FOLDER) && !path.contains(RENDITIONS_ORIGINAL_FOLDER)) {
-                            continue;
-                        }
-                        try {
-                            Command<?> command = addFileCommand(repository, module, changedResource, force);
-                            if(command != null) {
-                                long parentLastModificationTimestamp = ensureParentIsPublished(module, resourceFile.getPath(), changedResource, repository, allResourcesUpdatedList, force);
-                                lastModificationTimestamp = Math.max(parentLastModificationTimestamp, lastModificationTimestamp);
-                                allResourcesUpdatedList.add(changedResource.getPath());
-
-                                sendMessage(MessageType.DEBUG, "Publish file: " + changedResource);
-                                sendMessage(MessageType.DEBUG, "Resource File to deploy: " + resourceFile);
-                                execute(command);
-
-                                // save the modification timestamp to avoid a redeploy if nothing has changed
-                                changedResource.setModificationTimestamp();
-                                lastModificationTimestamp = Math.max(changedResource.getTimestamp(), lastModificationTimestamp);
-                            } else {
-                                // We do not update the file but we need to find the last modification timestamp
-                                // We need to obtain the command to see if it is deployed
-                                command = addFileCommand(repository, module, changedResource, true);
-                                if(command != null) {
-                                    long parentLastModificationTimestamp = getParentLastModificationTimestamp(resourceFile.getPath(), changedResource, allResourcesUpdatedList);
-                                    lastModificationTimestamp = Math.max(lastModificationTimestamp, parentLastModificationTimestamp);
-                                    allResourcesUpdatedList.add(changedResource.getPath());
-                                    long timestamp = changedResource.getTimestamp();
-                                    lastModificationTimestamp = Math.max(lastModificationTimestamp, timestamp);
+                    resourceFile.walkChangedResources(
+                        force,
+                        new ChangedResourceVisitor<FileWrapper>() {
+                            @Override
+                            public void changed(FileWrapper changedResource) {
+                                //AS TODO: This is a hack to prevent the DAM Workflows to generate Renditions files before any of them a deployed to AEM. For that we just place any /renditions/original to the end of the list
+                                if(changedResource.getPath().contains(RENDITIONS_ORIGINAL_FOLDER)) {
+                                    renditionOriginalList.add(new PublishItem(resourceFile.getPath(), changedResource));
+                                } else {
+                                    publishList.add(new PublishItem(resourceFile.getPath(), changedResource));
                                 }
                             }
-                        } catch(ConnectorException e) {
-                            if(e.getId()  != ConnectorException.UNKNOWN) {
-                                // The Connector Exception is used to end the processing of publishing a file. In case of an error it will stop the entire processing
-                                // and in case of a warning it will proceed
-                                MessageType type = e.getId() < 0 ? MessageType.ERROR : MessageType.WARNING;
-                                sendAlert(type, "deploy.exception.title", e.getMessage());
-                                if(e.getId() < 0) {
-                                    return;
-                                }
-                                throw e;
-                            } else {
-                                sendAlert(MessageType.ERROR, "deploy.exception.title", e.getCause().getMessage());
-                                return;
+
+                            @Override
+                            public void unchanged(long timestamp) {
+                                updateMaximum(lastModificationTimestamp, timestamp);
                             }
                         }
-                    }
+                    );
                 }
-                // reorder the child nodes at the end, when all create/update/deletes have been processed
-                //AS TODO: This needs to be resolved -> done but needs to be verified
-                for(String resourcePath : allResourcesUpdatedList) {
-                    FileWrapper file = module.obtainResourceFile(resourcePath);
-                    if(file != null) {
-                        execute(reorderChildNodesCommand(repository, module, file));
+                deployMetrics.record(Phase.walk, walkStart, publishList.size() + renditionOriginalList.size());
+                journal = beginJournal(module, publishList, renditionOriginalList, allResourcesUpdatedList, lastModificationTimestamp, force);
+                sendMessage(
+                    MessageType.DEBUG, "Publish {0} resources with {1} workers and a batch size of {2}",
+                    publishList.size() + renditionOriginalList.size(), module.getPublishConcurrency(), module.getPublishBatchSize()
+                );
+                try {
+                    publishItems(module, repository, journal, publishList, allResourcesUpdatedList, lastModificationTimestamp, force);
+                    // The Rendition Originals are only published when all other resources are there
+                    publishItems(module, repository, journal, renditionOriginalList, allResourcesUpdatedList, lastModificationTimestamp, force);
+                } catch(ConnectorException e) {
+                    if(e.getId()  != ConnectorException.UNKNOWN) {
+                        // The Connector Exception is used to end the processing of publishing a file. In case of an error it will stop the entire processing
+                        // and in case of a warning it will proceed
+                        MessageType type = e.getId() < 0 ? MessageType.ERROR : MessageType.WARNING;
+                        sendAlert(type, "deploy.exception.title", e.getMessage());
+                        if(e.getId() < 0) {
+                            return ret;
+                        }
+                        throw e;
                     } else {
-                        sendMessage(MessageType.ERROR, "deploy.failed.to.reorder.missing.resource", resourcePath);
+                        sendAlert(MessageType.ERROR, "deploy.exception.title", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                        return ret;
                     }
                 }
-                module.setModuleLastModificationTimestamp(lastModificationTimestamp);
+                if(module.isCancelled()) {
+                    // The journal is kept so that the next forced deploy continues from here
+                    sendMessage(
+                        MessageType.INFO, "deploy.module.cancelled", module.getName(),
+                        journal == null ? 0 : journal.getRemainingCount()
+                    );
+                    module.updateModuleStatus(SynchronizationStatus.failed);
+                    return ret;
+                }
+                // reorder the child nodes at the end, when all create/update/deletes have been processed
+                reorderChildNodes(module, repository, allResourcesUpdatedList, force);
+                if(journal != null) {
+                    journal.finish();
+                }
+                module.setModuleLastModificationTimestamp(lastModificationTimestamp.get());
                 module.updateModuleStatus(SynchronizationStatus.upToDate);
+                ret = true;
                 if(force) {
                     sendMessage(MessageType.INFO, "deploy.module.by.force.success", module);
                 } else {
@@ -236,6 +296,407 @@ public abstract class AbstractDeploymentManager<M, P, F>
         } catch(IOException e) {
             sendMessage(MessageType.ERROR, "deploy.module.failed.io", module.getName(), e);
             module.updateModuleStatus(SynchronizationStatus.failed);
+        } finally {
+            if(journal != null) {
+                // Only open if the publish did not finish
+                journal.close();
+            }
+            deployMetrics.record(Phase.publishModule, publishStart);
+        }
+        return ret;
+    }
+
+    /**
+     * Starts the journal of this publish. If an interrupted forced publish is continued the items completed
+     * by it are removed from the lists and handled as already published unless their file changed since.
+     *
+     * @return Journal of this publish or null if there is none
+     */
+    private DeployJournal beginJournal(
+        ModuleWrapper module,
+        List<PublishItem> publishList,
+        List<PublishItem> renditionOriginalList,
+        Set<String> handledPaths,
+        AtomicLong lastModificationTimestamp,
+        boolean force
+    ) {
+        DeployJournal ret = module.obtainDeployJournal();
+        if(ret != null) {
+            boolean resume = force && ret.isResumable();
+            if(resume) {
+                Set<String> completedPaths = new HashSet<String>(ret.getCompletedPaths());
+                int remaining = removeCompletedItems(ret, publishList, lastModificationTimestamp)
+                    + removeCompletedItems(ret, renditionOriginalList, lastModificationTimestamp);
+                // Changed files are published again and the others including the Parents are not
+                for(PublishItem item : publishList) {
+                    completedPaths.remove(item.file.getPath());
+                }
+                for(PublishItem item : renditionOriginalList) {
+                    completedPaths.remove(item.file.getPath());
+                }
+                handledPaths.addAll(completedPaths);
+                sendMessage(MessageType.INFO, "deploy.module.resume", module.getName(), completedPaths.size(), remaining);
+            }
+            List<String> pathList = new ArrayList<String>(publishList.size() + renditionOriginalList.size());
+            for(PublishItem item : publishList) {
+                pathList.add(item.file.getPath());
+            }
+            for(PublishItem item : renditionOriginalList) {
+                pathList.add(item.file.getPath());
+            }
+            try {
+                ret.begin(force, pathList, resume);
+            } catch(IOException e) {
+                sendMessage(MessageType.DEBUG, "Failed to write Deploy Journal of {0}, publish without it: {1}", module.getName(), e.getMessage());
+                ret.close();
+                ret = null;
+            }
+        }
+        return ret;
+    }
+
+    /** @return Number of remaining items **/
+    private int removeCompletedItems(DeployJournal journal, List<PublishItem> itemList, AtomicLong lastModificationTimestamp) {
+        Iterator<PublishItem> i = itemList.iterator();
+        while(i.hasNext()) {
+            PublishItem item = i.next();
+            if(journal.isCompleted(item.file.getPath(), item.file.getTimestamp())) {
+                updateMaximum(lastModificationTimestamp, item.file.getTimestamp());
+                i.remove();
+            }
+        }
+        return itemList.size();
+    }
+
+    /**
+     * Publishes the given resources in two steps. First the Commands are built in parallel and then
+     * they are executed with a Path based Scheduler so that any parent is published before its children
+     * while unrelated subtrees are published concurrently. Siblings are grouped into batches which are
+     * saved together.
+     *
+     * @param module Module the resources belong to
+     * @param repository Repository to publish to
+     * @param journal Journal that records the completed resources. Can be null
+     * @param itemList Resources to be published in the order of the file tree walk
+     * @param handledPaths Paths that have been handled already in this publish operation
+     * @param lastModificationTimestamp Latest modification timestamp of all published resources
+     * @param force True if the resources are published even if they were not modified
+     */
+    private void publishItems(
+        final ModuleWrapper module,
+        final Repository repository,
+        final DeployJournal journal,
+        List<PublishItem> itemList,
+        Set<String> handledPaths,
+        final AtomicLong lastModificationTimestamp,
+        final boolean force
+    )
+        throws ConnectorException, SerializationException, IOException
+    {
+        if(itemList.isEmpty()) {
+            return;
+        }
+        int concurrency = module.getPublishConcurrency();
+        // Building the commands only reads the local files so they can be created all at once
+        PublishScheduler builder = new PublishScheduler(module.getName(), concurrency);
+        for(final PublishItem item : itemList) {
+            builder.addIndependent(
+                new PublishScheduler.Job() {
+                    @Override
+                    public void execute() throws ConnectorException, SerializationException, IOException {
+                        item.command = addFileCommand(repository, module, item.file, force);
+                        if(item.command == null) {
+                            // We do not update the file but we need to find the last modification timestamp
+                            // if it was deployed before
+                            item.deployed = item.file.isDeployed();
+                        }
+                    }
+                }
+            );
+        }
+        builder.execute();
+
+        // The Items must be collected in the order of the walk so that the parents are added first
+        List<PublishItem> publishList = new ArrayList<PublishItem>();
+        for(PublishItem item : itemList) {
+            FileWrapper changedResource = item.file;
+            if(item.command != null) {
+                addParentItems(publishList, repository, item.basePath, changedResource, handledPaths);
+                handledPaths.add(changedResource.getPath());
+                publishList.add(item);
+            } else if(item.deployed) {
+                long parentLastModificationTimestamp = getParentLastModificationTimestamp(item.basePath, changedResource, handledPaths);
+                updateMaximum(lastModificationTimestamp, parentLastModificationTimestamp);
+                handledPaths.add(changedResource.getPath());
+                updateMaximum(lastModificationTimestamp, changedResource.getTimestamp());
+            }
+        }
+        builder = new PublishScheduler(module.getName(), concurrency);
+        for(final PublishItem item : publishList) {
+            if(item.parent) {
+                builder.addIndependent(
+                    new PublishScheduler.Job() {
+                        @Override
+                        public void execute() throws ConnectorException, SerializationException, IOException {
+                            try {
+                                // A Parent known to exist on the Server is only sent again if it changed
+                                item.command = addFileCommand(repository, module, item.file, force && !item.known);
+                            } catch(ConnectorException e) {
+                                throw createParentException(e);
+                            }
+                        }
+                    }
+                );
+            }
+        }
+        builder.execute();
+
+        PublishScheduler publisher = new PublishScheduler(module.getName(), concurrency);
+        for(final List<PublishItem> batch : createBatches(publishList, module.getPublishBatchSize())) {
+            List<String> pathList = new ArrayList<String>(batch.size());
+            for(PublishItem item : batch) {
+                pathList.add(item.file.getPath());
+            }
+            publisher.add(
+                pathList,
+                new PublishScheduler.Job() {
+                    @Override
+                    public void execute() throws ConnectorException, SerializationException, IOException {
+                        publishBatch(module, repository, journal, batch, lastModificationTimestamp);
+                    }
+                }
+            );
+        }
+        publisher.execute();
+    }
+
+    /**
+     * Reorders the children of the given resources. A resource is skipped if the digest of its child order
+     * did not change since its last reorder. The remaining reorders are saved in batches.
+     *
+     * @param module Module the resources belong to
+     * @param repository Repository to publish to
+     * @param resourcePathList Paths of all the resources that were handled by the publish
+     * @param force True if all resources are reordered
+     */
+    private void reorderChildNodes(ModuleWrapper module, Repository repository, Collection<String> resourcePathList, boolean force)
+        throws ConnectorException, SerializationException, IOException
+    {
+        long start = deployMetrics.start();
+        try {
+            doReorderChildNodes(module, repository, resourcePathList, force);
+        } finally {
+            deployMetrics.record(Phase.reorder, start, resourcePathList.size());
+        }
+    }
+
+    private void doReorderChildNodes(ModuleWrapper module, Repository repository, Collection<String> resourcePathList, boolean force)
+        throws ConnectorException, SerializationException, IOException
+    {
+        List<FileWrapper> fileList = new ArrayList<FileWrapper>();
+        List<byte[]> digestList = new ArrayList<byte[]>();
+        List<Command<?>> commandList = new ArrayList<Command<?>>();
+        // Parents first so that a batch is executed in a stable order
+        for(String resourcePath : new TreeSet<String>(resourcePathList)) {
+            FileWrapper file = module.obtainResourceFile(resourcePath);
+            if(file == null) {
+                sendMessage(MessageType.ERROR, "deploy.failed.to.reorder.missing.resource", resourcePath);
+                continue;
+            }
+            byte[] digest = file.getChildOrderDigest();
+            if(!force && digest != null && Arrays.equals(digest, file.getDeployedChildOrderDigest())) {
+                continue;
+            }
+            Command<?> command = reorderChildNodesCommand(repository, module, file);
+            if(command != null) {
+                fileList.add(file);
+                digestList.add(digest);
+                commandList.add(command);
+            }
+        }
+        sendMessage(
+            MessageType.DEBUG, "Reorder {0} of {1} resources", commandList.size(), resourcePathList.size()
+        );
+        int batchSize = module.getPublishBatchSize();
+        if(batchSize <= 0) {
+            batchSize = commandList.size();
+        }
+        for(int start = 0; start < commandList.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, commandList.size());
+            List<Command<?>> batch = commandList.subList(start, end);
+            if(batch.size() <= 1 || !executeBatch(repository, new ArrayList<Command<?>>(batch))) {
+                for(Command<?> command : batch) {
+                    execute(command);
+                }
+            }
+            for(int i = start; i < end; i++) {
+                if(digestList.get(i) != null) {
+                    fileList.get(i).setDeployedChildOrderDigest(digestList.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the items into batches of siblings. The batches are returned in the order of their first item
+     * so that a batch containing a parent is always ahead of the batches of its children.
+     *
+     * @param publishList Items to be published in the order of the walk
+     * @param batchSize Maximum number of items in a batch. 0 means that all siblings go into one batch
+     * @return List of batches
+     */
+    private List<List<PublishItem>> createBatches(List<PublishItem> publishList, int batchSize) {
+        List<List<PublishItem>> ret = new ArrayList<List<PublishItem>>();
+        Map<String, List<PublishItem>> openBatches = new HashMap<String, List<PublishItem>>();
+        for(PublishItem item : publishList) {
+            String folderPath = item.file.getParent().getPath();
+            List<PublishItem> batch = openBatches.get(folderPath);
+            if(batch == null || (batchSize > 0 && batch.size() >= batchSize)) {
+                batch = new ArrayList<PublishItem>();
+                openBatches.put(folderPath, batch);
+                ret.add(batch);
+            }
+            batch.add(item);
+        }
+        return ret;
+    }
+
+    /**
+     * Publishes a batch of items with a single save. If that is not possible or fails then
+     * the items are published one by one. The completed items are committed to the journal
+     * after the batch so that an interrupted publish can continue after the last batch.
+     */
+    private void publishBatch(
+        ModuleWrapper module, Repository repository, DeployJournal journal, List<PublishItem> batch, AtomicLong lastModificationTimestamp
+    )
+        throws ConnectorException, IOException
+    {
+        if(module.isCancelled()) {
+            // Remaining batches are left in the journal
+            return;
+        }
+        try {
+            doPublishBatch(repository, journal, batch, lastModificationTimestamp);
+        } finally {
+            if(journal != null) {
+                journal.commit();
+                sendMessage(
+                    MessageType.DEBUG, "Published {0} of {1} resources of {2}",
+                    journal.getCompletedCount(), journal.getPlannedCount(), module.getName()
+                );
+            }
+        }
+    }
+
+    private void doPublishBatch(Repository repository, DeployJournal journal, List<PublishItem> batch, AtomicLong lastModificationTimestamp)
+        throws ConnectorException, IOException
+    {
+        List<Command<?>> commandList = new ArrayList<Command<?>>(batch.size());
+        for(PublishItem item : batch) {
+            if(item.command != null) {
+                commandList.add(item.command);
+            }
+        }
+        if(commandList.size() > 1 && executeBatch(repository, commandList)) {
+            sendMessage(MessageType.DEBUG, "Published batch of {0} resources", commandList.size());
+            for(PublishItem item : batch) {
+                item.published(repository, journal, lastModificationTimestamp);
+            }
+        } else {
+            for(PublishItem item : batch) {
+                sendMessage(MessageType.DEBUG, "Publish file: " + item.file);
+                try {
+                    execute(item.command);
+                } catch(ConnectorException e) {
+                    // A Parent could have been removed from the Server behind our back
+                    invalidateParents(repository, item.basePath, item.file);
+                    throw item.parent ? createParentException(e) : e;
+                }
+                item.published(repository, journal, lastModificationTimestamp);
+            }
+        }
+    }
+
+    /**
+     * Adds an item for any parent of the given file that is not handled yet. This is the scheduled
+     * counterpart of {@link #ensureParentIsPublished} and like it a parent known to exist on the
+     * Server is only sent again if it changed.
+     */
+    private void addParentItems(
+        List<PublishItem> publishList,
+        Repository repository,
+        String basePath,
+        FileWrapper file,
+        Set<String> handledPaths
+    ) {
+        FileWrapper parentFile = file.getParent();
+        String parentFilePath = parentFile.getPath();
+        if(parentFilePath.equals(basePath) || handledPaths.contains(parentFilePath)) {
+            return;
+        }
+        // handle the parent's parent first, if needed
+        addParentItems(publishList, repository, basePath, parentFile, handledPaths);
+        handledPaths.add(parentFilePath);
+        PublishItem parentItem = new PublishItem(basePath, parentFile);
+        parentItem.parent = true;
+        parentItem.known = remotePathCache.isKnown(repository, parentFilePath);
+        publishList.add(parentItem);
+    }
+
+    /**
+     * Forgets the parents of a resource that failed to publish so that they are sent again the next time
+     *
+     * @param repository Repository the resource was published to
+     * @param basePath Path of the content root the resource belongs to
+     * @param file Resource that failed to publish
+     */
+    public void invalidateParents(Repository repository, String basePath, FileWrapper file) {
+        FileWrapper parentFile = file.getParent();
+        while(parentFile != null && !parentFile.getPath().equals(basePath)) {
+            remotePathCache.forget(repository, parentFile.getPath());
+            parentFile = parentFile.getParent();
+        }
+    }
+
+    private static void updateMaximum(AtomicLong maximum, long value) {
+        long current = maximum.get();
+        while(value > current && !maximum.compareAndSet(current, value)) {
+            current = maximum.get();
+        }
+    }
+
+    /** Changed Resource or one of its Parents together with the Command that publishes it **/
+    private class PublishItem {
+        private final String basePath;
+        private final FileWrapper file;
+        private boolean parent;
+        /** Parent known to exist on the Server **/
+        private boolean known;
+        private Command<?> command;
+        private boolean deployed;
+
+        private PublishItem(String basePath, FileWrapper file) {
+            this.basePath = basePath;
+            this.file = file;
+        }
+
+        private void published(Repository repository, DeployJournal journal, AtomicLong lastModificationTimestamp)
+            throws IOException
+        {
+            // save the modification timestamp to avoid a redeploy if nothing has changed
+            file.setModificationTimestamp();
+            if(journal != null) {
+                journal.completed(file.getPath(), file.getTimestamp());
+            }
+            if(command != null) {
+                remotePathCache.markKnown(repository, file.getPath());
+            }
+            if(parent) {
+                sendMessage(MessageType.DEBUG, "Ensured that resource at path {0} is published", file.getPath());
+                updateMaximum(lastModificationTimestamp, file.getModificationTimestamp());
+            } else {
+                updateMaximum(lastModificationTimestamp, file.getTimestamp());
+            }
         }
     }
 
@@ -247,6 +708,11 @@ public abstract class AbstractDeploymentManager<M, P, F>
      * published due to a resource change
      * </p>
      *
+     * <p>
+     * A parent that is known to exist on the Server from an earlier publish is only sent again if its own
+     * serialization changed even if the publish is forced.
+     * </p>
+     *
      * AS NOTE: Taken from SlingLaunchpadBehaviour.class from Eclipse Sling IDE Project
      *
      * @ param moduleResource the current resource
@@ -287,33 +753,62 @@ public abstract class AbstractDeploymentManager<M, P, F>
         // handle the parent's parent first, if needed
         long lastParentModificationTimestamp = ensureParentIsPublished(module, basePath, parentFile, repository, handledPaths, force);
 
+        boolean known = remotePathCache.isKnown(repository, parentFilePath);
+        if(known) {
+            sendMessage(MessageType.DEBUG, "Parent path {0} is known to exist, only publish if it changed", parentFilePath);
+        }
+        long parentModificationTimestamp = publishParent(module, parentFile, repository, force && !known);
+        handledPaths.add(parentFile.getPath());
+        return Math.max(lastParentModificationTimestamp, parentModificationTimestamp);
+    }
+
+    /**
+     * Publishes a parent of a changed resource
+     *
+     * @return the modification timestamp of the parent after it was published
+     */
+    protected long publishParent(
+        ModuleWrapper module,
+        FileWrapper parentFile,
+        Repository repository,
+        boolean force
+    )
+        throws ConnectorException, SerializationException, IOException {
+
         Command command = null;
         try {
             // create this resource
             command = addFileCommand(repository, module, parentFile, force);
+            if(command == null) {
+                // Nothing to publish so there is no need to update the timestamp either
+                return parentFile.getModificationTimestamp();
+            }
             execute(command);
         } catch(ConnectorException e) {
-            ConnectorException rethrow = e;
-            if(e.getId() != ConnectorException.UNKNOWN) {
-                rethrow = new ConnectorException(
-                    getMessage(
-                        (e.getId() == ExceptionConstants.COMMAND_EXECUTION_FAILURE ?
-                            "deploy.create.parent.failed.message" :
-                            "deploy.create.parent.unsuccessful.message" ),
-                        e.getMessage(),
-                        e.getCause().getMessage()),
-                    e
-                );
-            }
-            throw rethrow;
+            throw createParentException(e);
         }
+        remotePathCache.markKnown(repository, parentFile.getPath());
 
         // save the modification timestamp to avoid a redeploy if nothing has changed
         parentFile.setModificationTimestamp();
-
-        handledPaths.add(parentFile.getPath());
         sendMessage(MessageType.DEBUG, "Ensured that resource at path {0} is published", parentFile.getPath());
-        return Math.max(lastParentModificationTimestamp, parentFile.getModificationTimestamp());
+        return parentFile.getModificationTimestamp();
+    }
+
+    private ConnectorException createParentException(ConnectorException e) {
+        ConnectorException ret = e;
+        if(e.getId() != ConnectorException.UNKNOWN) {
+            ret = new ConnectorException(
+                getMessage(
+                    (e.getId() == ExceptionConstants.COMMAND_EXECUTION_FAILURE ?
+                        "deploy.create.parent.failed.message" :
+                        "deploy.create.parent.unsuccessful.message" ),
+                    e.getMessage(),
+                    e.getCause() != null ? e.getCause().getMessage() : ""),
+                e
+            );
+        }
+        return ret;
     }
 
     protected long getParentLastModificationTimestamp(
@@ -347,8 +842,13 @@ public abstract class AbstractDeploymentManager<M, P, F>
         ConnectorException,
         SerializationException, IOException
     {
-        SlingResource resource = module.obtainSlingResource(file);
-        return commandFactory.newCommandForAddedOrUpdated(repository, resource, forceDeploy);
+        long start = deployMetrics.start();
+        try {
+            SlingResource resource = module.obtainSlingResource(file);
+            return commandFactory.newCommandForAddedOrUpdated(repository, resource, forceDeploy);
+        } finally {
+            deployMetrics.record(Phase.serialize, start);
+        }
     }
 
     protected Command<?> removeFileCommand(
@@ -356,8 +856,13 @@ public abstract class AbstractDeploymentManager<M, P, F>
     ) throws
         SerializationException, IOException, ConnectorException
     {
-        SlingResource resource = module.obtainSlingResource(file);
-        return commandFactory.newCommandForRemovedResources(repository, resource);
+        long start = deployMetrics.start();
+        try {
+            SlingResource resource = module.obtainSlingResource(file);
+            return commandFactory.newCommandForRemovedResources(repository, resource);
+        } finally {
+            deployMetrics.record(Phase.serialize, start);
+        }
     }
 
     protected Command<?> reorderChildNodesCommand(
@@ -369,11 +874,41 @@ public abstract class AbstractDeploymentManager<M, P, F>
         return commandFactory.newReorderChildNodesCommand(repository, resource);
     }
 
+    /**
+     * Executes the given commands with a single save if the repository supports it
+     *
+     * @param repository Repository the commands were created for
+     * @param commandList Commands to be executed in the given order
+     * @return True if all commands were saved. False if they could not be executed as a batch or the batch
+     *         failed in which case none of them was saved
+     */
+    protected boolean executeBatch(Repository repository, List<Command<?>> commandList) {
+        if(!JcrCommandBatch.supports(repository, commandList)) {
+            return false;
+        }
+        long start = deployMetrics.start();
+        Result<Void> result = JcrCommandBatch.execute(repository, commandList);
+        deployMetrics.record(Phase.execute, start, commandList.size());
+        if(!result.isSuccess()) {
+            String cause = "";
+            try {
+                result.get();
+            } catch(RepositoryException e) {
+                cause = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            }
+            sendMessage(MessageType.DEBUG, "Batch of {0} commands failed, publish them one by one. Cause: {1}", commandList.size(), cause);
+            return false;
+        }
+        return true;
+    }
+
     protected void execute(Command<?> command) throws ConnectorException {
         if (command == null) {
             return;
         }
+        long start = deployMetrics.start();
         Result<?> result = command.execute();
+        deployMetrics.record(Phase.execute, start);
 
         if (!result.isSuccess()) {
             try {
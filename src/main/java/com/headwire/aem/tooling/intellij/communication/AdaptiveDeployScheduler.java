@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+/**
+ * Picks the Quiet Period and the Batch Size of the automatic deployment from the observed latency
+ * of the Server and the number of waiting changes.
+ *
+ * A fast (local) Server gets a short Quiet Period and large batches so that changes show up right
+ * away. A slow (shared) Server gets a longer Quiet Period so that more changes are merged and the
+ * batches are limited to what the Server handles in a few seconds. If changes pile up the Quiet
+ * Period is stretched further. The Quiet Period never exceeds the Maximum Deploy Delay of the user
+ * and the Minimum Quiet Period as well as the Batch Size bounds are taken from the Plugin Configuration.
+ */
+public class AdaptiveDeployScheduler {
+
+    /** Quiet Period as long as no latency was measured **/
+    public static final long DEFAULT_QUIET_PERIOD_IN_MILLIS = 500;
+    public static final long DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS = 50;
+    /** Quiet Period in multiples of the latency of a single command **/
+    public static final int QUIET_PERIOD_FACTOR = 5;
+    public static final int DEFAULT_MINIMUM_BATCH_SIZE = 10;
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 1000;
+    /** Time the Server should need to handle one batch **/
+    public static final long TARGET_BATCH_DURATION_IN_MILLIS = 5000;
+    /** Longest stretch of the Quiet Period when changes pile up **/
+    public static final int MAXIMUM_BACKLOG_FACTOR = 4;
+    /** Weight of a new measurement in the moving averages **/
+    private static final double SMOOTHING = 0.3;
+
+    private double latencyInMillis = -1;
+    private double queueDepth;
+    private long minimumQuietPeriodInMillis = DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS;
+    private int minimumBatchSize = DEFAULT_MINIMUM_BATCH_SIZE;
+    private int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+
+    /**
+     * Sets the bounds set by the user. Values that are not positive fall back to the defaults
+     * and a Maximum Batch Size below the Minimum is raised to the Minimum.
+     *
+     * @param minimumQuietPeriodInMillis Shortest Quiet Period even for a fast Server
+     * @param minimumBatchSize Smallest Batch even for a slow Server
+     * @param maximumBatchSize Largest Batch even for a fast Server
+     */
+    public synchronized void setBounds(long minimumQuietPeriodInMillis, int minimumBatchSize, int maximumBatchSize) {
+        this.minimumQuietPeriodInMillis = minimumQuietPeriodInMillis > 0 ? minimumQuietPeriodInMillis : DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS;
+        this.minimumBatchSize = minimumBatchSize > 0 ? minimumBatchSize : DEFAULT_MINIMUM_BATCH_SIZE;
+        this.maximumBatchSize = Math.max(
+            this.minimumBatchSize,
+            maximumBatchSize > 0 ? maximumBatchSize : DEFAULT_MAXIMUM_BATCH_SIZE
+        );
+    }
+
+    /**
+     * Records the time it took to handle a number of commands
+     *
+     * @param commands Number of handled commands
+     * @param nanos Time it took in nanoseconds
+     */
+    public synchronized void recordLatency(int commands, long nanos) {
+        if(commands <= 0 || nanos < 0) {
+            return;
+        }
+        double latency = nanos / 1000000.0 / commands;
+        latencyInMillis = latencyInMillis < 0 ? latency : latencyInMillis + SMOOTHING * (latency - latencyInMillis);
+    }
+
+    /** Records the number of changes that were waiting when a batch was taken **/
+    public synchronized void recordQueueDepth(int depth) {
+        queueDepth = queueDepth + SMOOTHING * (Math.max(0, depth) - queueDepth);
+    }
+
+    /** @return Average latency of a command in milliseconds or -1 if none was measured yet **/
+    public synchronized double getLatencyInMillis() {
+        return latencyInMillis;
+    }
+
+    /**
+     * @param maximumDelayInMillis Maximum Deploy Delay set by the user
+     * @return Time without a change before the changes are deployed
+     */
+    public synchronized long getQuietPeriodInMillis(long maximumDelayInMillis) {
+        double ret;
+        if(latencyInMillis < 0) {
+            ret = DEFAULT_QUIET_PERIOD_IN_MILLIS;
+        } else {
+            ret = Math.max(minimumQuietPeriodInMillis, latencyInMillis * QUIET_PERIOD_FACTOR);
+            int batchSize = getBatchSize();
+            if(queueDepth > batchSize) {
+                // The Server cannot keep up -> wait longer to merge more changes
+                ret *= Math.min(MAXIMUM_BACKLOG_FACTOR, queueDepth / batchSize);
+            }
+        }
+        return Math.max(0, Math.min((long) ret, maximumDelayInMillis));
+    }
+
+    /** @return Maximum Number of changes deployed in one batch **/
+    public synchronized int getBatchSize() {
+        if(latencyInMillis <= 0) {
+            return maximumBatchSize;
+        }
+        long ret = (long) (TARGET_BATCH_DURATION_IN_MILLIS / latencyInMillis);
+        return (int) Math.max(minimumBatchSize, Math.min(maximumBatchSize, ret));
+    }
+}
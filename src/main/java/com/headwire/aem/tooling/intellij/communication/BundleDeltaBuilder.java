@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Updates a Bundle built by Maven with the classes and resources the IDE compiled since then.
+ * The Manifest and any entry that does not come from the output folder (embedded libraries,
+ * Maven metadata) are kept as they are.
+ *
+ * A Bundle can only be updated this way if the metadata bnd generated is still valid. That is the
+ * Manifest (Import-Package, Export-Package) and the Declarative Services and Metatype descriptors
+ * in OSGI-INF. As these can change with any added or removed class a full Maven Build is needed
+ * in that case as well as when one of the build files (pom.xml, bnd) was changed.
+ *
+ * A replaced class keeps the metadata of the last Maven Build. Therefore new imports or changed
+ * component annotations of an existing class still need a full Maven Build.
+ */
+public class BundleDeltaBuilder {
+
+    public static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+    private static final String CLASS_EXTENSION = ".class";
+
+    /** Outcome of a Delta Build **/
+    public static class Result {
+        private String fullBuildReason;
+        private int replaced;
+        private int added;
+
+        /** @return True if the Bundle could not be updated and a full Build is needed **/
+        public boolean isFullBuildNeeded() {
+            return fullBuildReason != null;
+        }
+
+        /** @return Reason why a full Build is needed or null if the Bundle was updated **/
+        public String getFullBuildReason() {
+            return fullBuildReason;
+        }
+
+        public int getReplaced() {
+            return replaced;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        /** @return True if entries of the Bundle were changed **/
+        public boolean isChanged() {
+            return replaced + added > 0;
+        }
+
+        private Result fullBuild(String reason) {
+            fullBuildReason = reason;
+            return this;
+        }
+    }
+
+    private final File bundle;
+    private final File outputDirectory;
+    private final List<File> buildFiles;
+
+    /**
+     * @param bundle Bundle Jar File of the last Maven Build
+     * @param outputDirectory Folder the IDE compiles the classes into
+     * @param buildFiles Files that define the Manifest or the Dependencies. If one is newer than the Bundle a full build is needed
+     */
+    public BundleDeltaBuilder(File bundle, File outputDirectory, List<File> buildFiles) {
+        this.bundle = bundle;
+        this.outputDirectory = outputDirectory;
+        this.buildFiles = buildFiles;
+    }
+
+    /**
+     * Replaces the changed entries of the Bundle with the ones from the output folder
+     *
+     * @return Result which tells if a full build is needed or how many entries were changed
+     * @throws IOException If the Bundle could not be read or written
+     */
+    public Result build() throws IOException {
+        Result ret = new Result();
+        if(!bundle.isFile()) {
+            return ret.fullBuild("No Bundle built yet");
+        }
+        if(!outputDirectory.isDirectory()) {
+            return ret.fullBuild("No Output Folder: " + outputDirectory);
+        }
+        long bundleTimestamp = bundle.lastModified();
+        for(File buildFile : buildFiles) {
+            if(buildFile.lastModified() > bundleTimestamp) {
+                return ret.fullBuild("Build File changed: " + buildFile.getName());
+            }
+        }
+        Map<String, File> outputFiles = new TreeMap<String, File>();
+        collect(outputDirectory, "", outputFiles);
+        File manifest = outputFiles.remove(MANIFEST_PATH);
+        if(manifest != null && manifest.lastModified() > bundleTimestamp) {
+            return ret.fullBuild("Manifest changed");
+        }
+
+        ZipFile zipFile = new ZipFile(bundle);
+        File target = new File(bundle.getParentFile(), bundle.getName() + ".delta");
+        boolean done = false;
+        try {
+            // Find added and removed classes first so that nothing is written if a full build is needed
+            Set<String> entryNames = new HashSet<String>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while(entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                entryNames.add(name);
+                if(
+                    name.endsWith(CLASS_EXTENSION) && !outputFiles.containsKey(name) &&
+                    new File(outputDirectory, getFolder(name)).isDirectory()
+                ) {
+                    // The class was removed from a package the IDE compiles into
+                    return ret.fullBuild("Class removed: " + name);
+                }
+            }
+            for(Map.Entry<String, File> outputFile : outputFiles.entrySet()) {
+                String name = outputFile.getKey();
+                if(
+                    !entryNames.contains(name) && outputFile.getValue().lastModified() > bundleTimestamp &&
+                    name.endsWith(CLASS_EXTENSION)
+                ) {
+                    return ret.fullBuild("Class added: " + name);
+                }
+            }
+
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));
+            try {
+                entries = zipFile.entries();
+                while(entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    File outputFile = outputFiles.remove(name);
+                    if(entry.isDirectory() || MANIFEST_PATH.equals(name)) {
+                        copy(zipFile, entry, out);
+                    } else if(outputFile != null) {
+                        if(outputFile.lastModified() > bundleTimestamp) {
+                            write(name, outputFile, out);
+                            ret.replaced++;
+                        } else {
+                            copy(zipFile, entry, out);
+                        }
+                    } else {
+                        // Not compiled by the IDE like embedded libraries or Maven metadata
+                        copy(zipFile, entry, out);
+                    }
+                }
+                for(Map.Entry<String, File> outputFile : outputFiles.entrySet()) {
+                    // Older files were left out of the Bundle on purpose by the last Maven build
+                    if(outputFile.getValue().lastModified() > bundleTimestamp) {
+                        write(outputFile.getKey(), outputFile.getValue(), out);
+                        ret.added++;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            done = true;
+        } finally {
+            zipFile.close();
+            if(!done || !ret.isChanged()) {
+                target.delete();
+            }
+        }
+        if(ret.isChanged()) {
+            if(!bundle.delete() || !target.renameTo(bundle)) {
+                throw new IOException("Could not replace Bundle: " + bundle);
+            }
+        }
+        return ret;
+    }
+
+    private static void collect(File folder, String prefix, Map<String, File> files) {
+        File[] children = folder.listFiles();
+        if(children == null) {
+            return;
+        }
+        for(File child : children) {
+            String name = prefix + child.getName();
+            if(child.isDirectory()) {
+                collect(child, name + "/", files);
+            } else {
+                files.put(name, child);
+            }
+        }
+    }
+
+    private static String getFolder(String entryName) {
+        int index = entryName.lastIndexOf('/');
+        return index < 0 ? "" : entryName.substring(0, index);
+    }
+
+    private static void copy(ZipFile zipFile, ZipEntry entry, ZipOutputStream out) throws IOException {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        out.putNextEntry(copy);
+        if(!entry.isDirectory()) {
+            InputStream in = zipFile.getInputStream(entry);
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        out.closeEntry();
+    }
+
+    private static void write(String name, File file, ZipOutputStream out) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(file.lastModified());
+        out.putNextEntry(entry);
+        InputStream in = new FileInputStream(file);
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches items to a queue per key (like a Module) and handles the queues concurrently
+ * on a shared pool of Workers. The items of one key are handled by one Worker at a time and
+ * in the order they were dispatched so that changes of the same path are applied in order.
+ * Different keys do not wait on each other.
+ *
+ * The queue of a key is bounded by a high-water mark. When more items are waiting than that
+ * the key is marked dirty and its items are dropped except for the ones that a resync cannot
+ * cover. The Handler then resyncs the key once instead of handling each item.
+ *
+ * Every item is handed back to the Handler exactly once: handled, as dropped by a resync or
+ * as dropped without a resync when the Dispatcher is shut down.
+ */
+public class ChangeDispatcher<K, T> {
+
+    /** Handles the items of a key **/
+    public interface Handler<K, T> {
+        void handle(K key, List<T> items);
+
+        /**
+         * Brings the key up to date after items were dropped. Kept items are handled before.
+         *
+         * @param key Key that overflowed
+         * @param dropped Items that were dropped in favor of the resync
+         */
+        void resync(K key, List<T> dropped);
+
+        /**
+         * Called with the items that were neither handled nor resynced because the Dispatcher was shut down
+         *
+         * @param key Key of the items
+         * @param dropped Items that were dropped
+         */
+        void dropped(K key, List<T> dropped);
+
+        /** @return True if the item cannot be covered by a resync and must be kept on an overflow **/
+        boolean isKeptOnOverflow(T item);
+    }
+
+    /** Items of a key waiting to be handled **/
+    private static class Queue<T> {
+        private List<T> items = new ArrayList<T>();
+        private boolean dirty;
+        private final List<T> dropped = new ArrayList<T>();
+
+        /** @return All items of this queue that were not handed to the Handler yet **/
+        private List<T> getAll() {
+            List<T> ret = new ArrayList<T>(items);
+            ret.addAll(dropped);
+            return ret;
+        }
+    }
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final Logger logger = Logger.getInstance(getClass());
+    private final Handler<K, T> handler;
+    private final int highWaterMark;
+    private final ExecutorService executor;
+    /** Items waiting for their key to be handled. A key is in here as long as a Worker handles it **/
+    private final Map<K, Queue<T>> pending = new HashMap<K, Queue<T>>();
+
+    /**
+     * @param name Name of the Worker Threads
+     * @param concurrency Number of Keys handled at the same time
+     * @param highWaterMark Number of waiting items of a key after which the key is resynced instead
+     * @param handler Handler of the items
+     */
+    public ChangeDispatcher(String name, int concurrency, int highWaterMark, Handler<K, T> handler) {
+        this.handler = handler;
+        this.highWaterMark = Math.max(1, highWaterMark);
+        executor = Executors.newFixedThreadPool(Math.max(1, concurrency), new DispatcherThreadFactory(name));
+    }
+
+    /**
+     * Adds items to the queue of their key and starts a Worker for the key if there is none
+     *
+     * @param key Key of the items
+     * @param items Items in the order they need to be handled
+     */
+    public void dispatch(final K key, List<T> items) {
+        if(items.isEmpty()) {
+            return;
+        }
+        synchronized(pending) {
+            Queue<T> queue = pending.get(key);
+            boolean started = queue != null;
+            if(!started) {
+                queue = new Queue<T>();
+                pending.put(key, queue);
+            }
+            add(queue, items);
+            if(started) {
+                // A Worker is on it and will pick them up when it is done with its current items
+                return;
+            }
+        }
+        try {
+            executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        drain(key);
+                    }
+                }
+            );
+        } catch(RejectedExecutionException e) {
+            // Dispatcher was shut down
+            Queue<T> queue;
+            synchronized(pending) {
+                queue = pending.remove(key);
+            }
+            if(queue != null) {
+                reportDropped(key, queue.getAll());
+            }
+        }
+    }
+
+    /** Must be called while holding the lock of the pending map **/
+    private void add(Queue<T> queue, List<T> items) {
+        if(!queue.dirty && queue.items.size() + items.size() > highWaterMark) {
+            // Too many items -> collapse them into a resync of the key
+            queue.dirty = true;
+            List<T> kept = new ArrayList<T>();
+            addKept(kept, queue.items, queue);
+            queue.items = kept;
+            addKept(queue.items, items, queue);
+        } else if(queue.dirty) {
+            addKept(queue.items, items, queue);
+        } else {
+            queue.items.addAll(items);
+        }
+    }
+
+    private void addKept(List<T> target, List<T> items, Queue<T> queue) {
+        for(T item : items) {
+            if(handler.isKeptOnOverflow(item)) {
+                target.add(item);
+            } else {
+                queue.dropped.add(item);
+            }
+        }
+    }
+
+    private void drain(K key) {
+        while(true) {
+            Queue<T> queue;
+            synchronized(pending) {
+                queue = pending.get(key);
+                if(queue == null) {
+                    // Dispatcher was shut down
+                    return;
+                }
+                if(queue.items.isEmpty() && !queue.dirty) {
+                    pending.remove(key);
+                    return;
+                }
+                pending.put(key, new Queue<T>());
+            }
+            try {
+                if(!queue.items.isEmpty()) {
+                    handler.handle(key, queue.items);
+                }
+                if(queue.dirty) {
+                    handler.resync(key, queue.dropped);
+                }
+            } catch(RuntimeException e) {
+                logger.warn("Failed to handle changes of: " + key, e);
+            }
+        }
+    }
+
+    /** @return Number of items waiting to be handled **/
+    public int getPendingCount() {
+        int ret = 0;
+        synchronized(pending) {
+            for(Queue<T> queue : pending.values()) {
+                ret += queue.items.size();
+            }
+        }
+        return ret;
+    }
+
+    /** Stops the Workers. Pending items are dropped and reported to the Handler. **/
+    public void shutdown() {
+        Map<K, Queue<T>> dropped;
+        synchronized(pending) {
+            // Taken before the Workers are stopped so that they do not pick them up anymore
+            dropped = new HashMap<K, Queue<T>>(pending);
+            pending.clear();
+        }
+        executor.shutdownNow();
+        for(Map.Entry<K, Queue<T>> entry : dropped.entrySet()) {
+            reportDropped(entry.getKey(), entry.getValue().getAll());
+        }
+    }
+
+    private void reportDropped(K key, List<T> items) {
+        if(!items.isEmpty()) {
+            try {
+                handler.dropped(key, items);
+            } catch(RuntimeException e) {
+                logger.warn("Failed to report dropped changes of: " + key, e);
+            }
+        }
+    }
+
+    private static class DispatcherThreadFactory
+        implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DispatcherThreadFactory(String name) {
+            prefix = "AEM Change Dispatcher (" + name + ")-" + POOL_COUNTER.incrementAndGet() + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread ret = new Thread(runnable, prefix + counter.incrementAndGet());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
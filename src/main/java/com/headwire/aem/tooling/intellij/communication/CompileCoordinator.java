@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.util.ComponentProvider;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.compiler.CompileStatusNotification;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowId;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the saved Java Sources per Module for a short window and compiles them with one
+ * compile per Module. The check for errors is done in a background read action so that the
+ * UI is not blocked by it and only the compile itself is started in the Dispatcher Thread.
+ *
+ * If a Module receives new saves while its batch is checked or waits for the Dispatcher Thread
+ * the batch is superseded and its files are compiled together with the new ones.
+ */
+public class CompileCoordinator {
+
+    /** Time Window in which saved Sources are collected before they are compiled **/
+    public static final long COLLECT_WINDOW_IN_MILLIS = 300;
+
+    private final Logger logger = Logger.getInstance(getClass());
+    private final Project project;
+    private final DeployMetrics deployMetrics;
+    private final ScheduledExecutorService executor;
+    /** Saved Sources by Module in the order they were saved **/
+    private final Map<Module, Set<VirtualFile>> pending = new LinkedHashMap<Module, Set<VirtualFile>>();
+    /** Number of Saves per Module which is used to detect superseded batches **/
+    private final Map<Module, Integer> generations = new HashMap<Module, Integer>();
+    private ScheduledFuture<?> flush;
+
+    public CompileCoordinator(Project project) {
+        this.project = project;
+        deployMetrics = DeployMetricsManager.getDeployMetrics(project);
+        executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread ret = new Thread(runnable, "AEM Compile Coordinator");
+                    ret.setDaemon(true);
+                    return ret;
+                }
+            }
+        );
+    }
+
+    /**
+     * Adds a saved Source which is compiled after the collect window
+     *
+     * @param file Saved Java Source
+     */
+    public void add(VirtualFile file) {
+        Module module = ProjectRootManager.getInstance(project).getFileIndex().getModuleForFile(file);
+        if(module == null) {
+            return;
+        }
+        synchronized(this) {
+            Set<VirtualFile> files = pending.get(module);
+            if(files == null) {
+                files = new LinkedHashSet<VirtualFile>();
+                pending.put(module, files);
+            }
+            files.add(file);
+            generations.put(module, getGeneration(module) + 1);
+            schedule();
+        }
+    }
+
+    /** Stops the Coordinator. Pending Sources are not compiled anymore. **/
+    public void shutdown() {
+        executor.shutdownNow();
+        synchronized(this) {
+            pending.clear();
+        }
+    }
+
+    /** Must be called while holding the lock **/
+    private int getGeneration(Module module) {
+        Integer ret = generations.get(module);
+        return ret == null ? 0 : ret;
+    }
+
+    /** (Re)starts the collect window. Must be called while holding the lock **/
+    private void schedule() {
+        if(flush != null) {
+            flush.cancel(false);
+        }
+        try {
+            flush = executor.schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                },
+                COLLECT_WINDOW_IN_MILLIS, TimeUnit.MILLISECONDS
+            );
+        } catch(RejectedExecutionException e) {
+            // Coordinator was shut down
+            flush = null;
+        }
+    }
+
+    private void flush() {
+        Map<Module, Set<VirtualFile>> batches;
+        Map<Module, Integer> batchGenerations = new HashMap<Module, Integer>();
+        synchronized(this) {
+            flush = null;
+            batches = new LinkedHashMap<Module, Set<VirtualFile>>(pending);
+            pending.clear();
+            for(Module module : batches.keySet()) {
+                batchGenerations.put(module, getGeneration(module));
+            }
+        }
+        for(Map.Entry<Module, Set<VirtualFile>> entry : batches.entrySet()) {
+            try {
+                check(entry.getKey(), entry.getValue(), batchGenerations.get(entry.getKey()));
+            } catch(RuntimeException e) {
+                logger.warn("Failed to compile the changes of Module: " + entry.getKey().getName(), e);
+            }
+        }
+    }
+
+    /** Checks the Sources of a Module for errors in a read action and hands them to the Dispatcher Thread to be compiled **/
+    private void check(final Module module, final Set<VirtualFile> files, final int generation) {
+        if(!isProjectOpen()) {
+            return;
+        }
+        long start = deployMetrics.start();
+        List<VirtualFile> errorFiles = ApplicationManager.getApplication().runReadAction(
+            new Computable<List<VirtualFile>>() {
+                @Override
+                public List<VirtualFile> compute() {
+                    List<VirtualFile> ret = new ArrayList<VirtualFile>();
+                    if(project.isDisposed()) {
+                        return ret;
+                    }
+                    PsiManager psiManager = PsiManager.getInstance(project);
+                    for(VirtualFile file : files) {
+                        if(file.isValid()) {
+                            PsiFile psiFile = psiManager.findFile(file);
+                            if(psiFile != null && PsiTreeUtil.hasErrorElements(psiFile)) {
+                                ret.add(file);
+                            }
+                        }
+                    }
+                    return ret;
+                }
+            }
+        );
+        deployMetrics.record(DeployMetrics.Phase.compileCheck, start, files.size());
+        if(isSuperseded(module, files, generation)) {
+            return;
+        }
+        if(!errorFiles.isEmpty()) {
+            MessageManager messageManager = ComponentProvider.getComponent(project, MessageManager.class);
+            if(messageManager != null) {
+                for(VirtualFile file : errorFiles) {
+                    messageManager.sendErrorNotification("server.update.file.change.with.error", file);
+                }
+            }
+            return;
+        }
+        ApplicationManager.getApplication().invokeLater(
+            new Runnable() {
+                @Override
+                public void run() {
+                    compile(module, files, generation);
+                }
+            }
+        );
+    }
+
+    private void compile(final Module module, Set<VirtualFile> files, int generation) {
+        if(!isProjectOpen() || isSuperseded(module, files, generation)) {
+            return;
+        }
+        final CompilerManager compilerManager = CompilerManager.getInstance(project);
+        if(compilerManager.isCompilationActive()) {
+            // Try again when the current compilation is done
+            requeue(module, files);
+            return;
+        }
+        List<VirtualFile> compileList = new ArrayList<VirtualFile>();
+        for(VirtualFile file : files) {
+            if(file.isValid() && !compilerManager.isExcludedFromCompilation(file)) {
+                compileList.add(file);
+            }
+        }
+        if(compileList.isEmpty()) {
+            return;
+        }
+        final int count = compileList.size();
+        final ToolWindow tw = ToolWindowManager.getInstance(project).getToolWindow(ToolWindowId.MESSAGES_WINDOW);
+        final boolean isShown = tw != null && tw.isVisible();
+        final long start = deployMetrics.start();
+        compilerManager.compile(
+            compileList.toArray(new VirtualFile[count]),
+            new CompileStatusNotification() {
+                @Override
+                public void finished(boolean aborted, int errors, int warnings, CompileContext compileContext) {
+                    deployMetrics.record(DeployMetrics.Phase.compile, start, count);
+                    MessageManager messageManager = ComponentProvider.getComponent(project, MessageManager.class);
+                    if(messageManager != null) {
+                        messageManager.sendDebugNotification("debug.compile.finished", module.getName(), count, errors, aborted);
+                    }
+                    if (tw != null && tw.isVisible()) {
+                        // Close / Hide the Build Message Window after we did the build if it wasn't shown
+                        if(!isShown) {
+                            tw.hide(null);
+                        }
+                    }
+                }
+            }
+        );
+    }
+
+    /** @return True if the Module received new saves after the batch was taken. The files are then added to the newer batch **/
+    private boolean isSuperseded(Module module, Set<VirtualFile> files, int generation) {
+        synchronized(this) {
+            if(getGeneration(module) == generation) {
+                return false;
+            }
+        }
+        MessageManager messageManager = ComponentProvider.getComponent(project, MessageManager.class);
+        if(messageManager != null) {
+            messageManager.sendDebugNotification("debug.compile.superseded", module.getName(), files.size());
+        }
+        requeue(module, files);
+        return true;
+    }
+
+    private void requeue(Module module, Set<VirtualFile> files) {
+        synchronized(this) {
+            Set<VirtualFile> pendingFiles = pending.get(module);
+            if(pendingFiles == null) {
+                pending.put(module, new LinkedHashSet<VirtualFile>(files));
+            } else {
+                pendingFiles.addAll(files);
+            }
+            schedule();
+        }
+    }
+
+    private boolean isProjectOpen() {
+        return project.isInitialized() && !project.isDisposed() && project.isOpen();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Index of the Serialization Files (.content.xml) inside a Sync Directory (jcr_root) which tells
+ * for each folder which Serialization File is the nearest one at or above it. That file is the
+ * only candidate to cover a plain folder or a deleted resource.
+ *
+ * The lookups are remembered so that a repeated lookup is a single map probe. They are forgotten
+ * whenever a Serialization File or a folder is added or removed. All paths are absolute
+ * with forward slashes.
+ */
+public class ContentCoverageIndex {
+
+    private static final String NONE = "";
+
+    private final String rootPath;
+    private final String serializationFileName;
+    /** Serialization File by the path of its folder **/
+    private final Map<String, String> serializationFiles = new HashMap<String, String>();
+    /** Nearest Serialization File or NONE by the path of a folder that was looked up **/
+    private final Map<String, String> coveringFiles = new HashMap<String, String>();
+
+    /**
+     * @param rootPath Path of the Sync Directory
+     * @param serializationFileName Name of the Serialization File of a folder like '.content.xml'
+     */
+    public ContentCoverageIndex(String rootPath, String serializationFileName) {
+        this.rootPath = normalize(rootPath);
+        this.serializationFileName = serializationFileName;
+    }
+
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    /** @return True if the given path is the Sync Directory or inside of it **/
+    public boolean contains(String path) {
+        path = normalize(path);
+        return path.equals(rootPath) || path.startsWith(rootPath + "/");
+    }
+
+    /** @return True if the given path is a Serialization File of a folder **/
+    public boolean isSerializationFile(String path) {
+        return normalize(path).endsWith("/" + serializationFileName);
+    }
+
+    /** Records a Serialization File that was found or created. Paths outside the Sync Directory are ignored **/
+    public synchronized void addSerializationFile(String path) {
+        path = normalize(path);
+        if(contains(path) && isSerializationFile(path)) {
+            serializationFiles.put(getParentPath(path), path);
+            coveringFiles.clear();
+        }
+    }
+
+    public synchronized void removeSerializationFile(String path) {
+        path = normalize(path);
+        if(isSerializationFile(path) && serializationFiles.remove(getParentPath(path)) != null) {
+            coveringFiles.clear();
+        }
+    }
+
+    /** Forgets the Serialization Files of a removed folder and all its descendants **/
+    public synchronized void removeFolder(String path) {
+        path = normalize(path);
+        String prefix = path + "/";
+        boolean changed = false;
+        Iterator<String> i = serializationFiles.keySet().iterator();
+        while(i.hasNext()) {
+            String folderPath = i.next();
+            if(folderPath.equals(path) || folderPath.startsWith(prefix)) {
+                i.remove();
+                changed = true;
+            }
+        }
+        if(changed) {
+            coveringFiles.clear();
+        }
+    }
+
+    /**
+     * @param path Path of a folder or resource inside the Sync Directory
+     * @return Path of the nearest Serialization File in the given folder or above up to the Sync Directory
+     *         or null if there is none
+     */
+    public synchronized String getCoveringSerializationFile(String path) {
+        path = normalize(path);
+        if(!contains(path)) {
+            return null;
+        }
+        String ret = coveringFiles.get(path);
+        if(ret == null) {
+            ret = NONE;
+            String folderPath = path;
+            while(true) {
+                String serializationFile = serializationFiles.get(folderPath);
+                if(serializationFile != null) {
+                    ret = serializationFile;
+                    break;
+                }
+                if(folderPath.equals(rootPath)) {
+                    break;
+                }
+                folderPath = getParentPath(folderPath);
+            }
+            coveringFiles.put(path, ret);
+        }
+        return ret.equals(NONE) ? null : ret;
+    }
+
+    /** @return Number of indexed Serialization Files **/
+    public synchronized int size() {
+        return serializationFiles.size();
+    }
+
+    private static String getParentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "/" : path.substring(0, index);
+    }
+
+    private static String normalize(String path) {
+        String ret = path.replace('\\', '/');
+        if(ret.length() > 1 && ret.endsWith("/")) {
+            ret = ret.substring(0, ret.length() - 1);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Keeps the Content Coverage Index of each Sync Directory up to date with the File Changes so that
+ * the covering .content.xml of a folder is found without crawling up.
+ *
+ * An index is built when it is requested for the first time. The Sync Directory is walked without
+ * holding the lock of this manager so that other Sync Directories and the File Changes are not blocked.
+ * Other requests for the same index wait until it is built.
+ */
+public class ContentCoverageIndexManager
+    extends AbstractProjectComponent
+{
+    private static final String CONTENT_XML_FILE_NAME = ".content.xml";
+
+    /** Coverage Index of a Sync Directory which can be used once it is built **/
+    private static class Entry {
+        private final ContentCoverageIndex index;
+        private final CountDownLatch built = new CountDownLatch(1);
+
+        private Entry(ContentCoverageIndex index) {
+            this.index = index;
+        }
+
+        private void awaitBuilt() {
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    built.await();
+                    break;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Entries by the Path of their Sync Directory **/
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public ContentCoverageIndexManager(@NotNull Project project) {
+        super(project);
+    }
+
+    /**
+     * @param syncDirectory Sync Directory (jcr_root) of a Module
+     * @return The Coverage Index of the Sync Directory which is built when it is requested for the first time
+     */
+    @NotNull
+    public ContentCoverageIndex getCoverageIndex(@NotNull final VirtualFile syncDirectory) {
+        String path = syncDirectory.getPath();
+        final Entry entry;
+        boolean build = false;
+        synchronized(entries) {
+            Entry existing = entries.get(path);
+            if(existing == null) {
+                // Registered before it is built so that the File Changes made in the meantime are applied to it
+                entry = new Entry(new ContentCoverageIndex(path, CONTENT_XML_FILE_NAME));
+                entries.put(path, entry);
+                build = true;
+            } else {
+                entry = existing;
+            }
+        }
+        if(build) {
+            try {
+                // The File Changes are made in a Write Action and so they cannot interleave with the walk
+                ApplicationManager.getApplication().runReadAction(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            addSerializationFiles(entry.index, syncDirectory);
+                        }
+                    }
+                );
+            } catch(RuntimeException e) {
+                synchronized(entries) {
+                    entries.remove(path);
+                }
+                throw e;
+            } finally {
+                entry.built.countDown();
+            }
+        } else {
+            entry.awaitBuilt();
+        }
+        return entry.index;
+    }
+
+    /**
+     * Updates the Coverage Indexes with the Serialization Files and Folders that were added or removed.
+     * It must be called after the File Changes are done.
+     *
+     * @param events File Changes
+     */
+    public void updateCoverageIndexes(@NotNull List<? extends VFileEvent> events) {
+        List<ContentCoverageIndex> indexList = new ArrayList<ContentCoverageIndex>();
+        synchronized(entries) {
+            if(entries.isEmpty()) {
+                return;
+            }
+            for(Entry entry : entries.values()) {
+                indexList.add(entry.index);
+            }
+        }
+        for(VFileEvent event : events) {
+            String oldPath = null;
+            VirtualFile newFile = null;
+            if(event instanceof VFileCreateEvent) {
+                newFile = event.getFile();
+            } else if(event instanceof VFileCopyEvent) {
+                newFile = ((VFileCopyEvent) event).findCreatedFile();
+            } else if(event instanceof VFileDeleteEvent) {
+                oldPath = event.getPath();
+            } else if(event instanceof VFileMoveEvent) {
+                VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                oldPath = moveEvent.getOldParent().getPath() + "/" + moveEvent.getFile().getName();
+                newFile = moveEvent.getFile();
+            } else if(
+                event instanceof VFilePropertyChangeEvent &&
+                VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())
+            ) {
+                VFilePropertyChangeEvent renameEvent = (VFilePropertyChangeEvent) event;
+                VirtualFile parent = renameEvent.getFile().getParent();
+                if(parent != null) {
+                    oldPath = parent.getPath() + "/" + renameEvent.getOldValue();
+                }
+                newFile = renameEvent.getFile();
+            }
+            for(ContentCoverageIndex index : indexList) {
+                if(oldPath != null && index.contains(oldPath)) {
+                    // The event does not tell anymore if it was a folder but removing its descendants is harmless for a file
+                    index.removeSerializationFile(oldPath);
+                    index.removeFolder(oldPath);
+                }
+                if(newFile != null && newFile.isValid() && index.contains(newFile.getPath())) {
+                    addSerializationFiles(index, newFile);
+                }
+            }
+        }
+    }
+
+    /** Adds the given file if it is a Serialization File or all the Serialization Files inside the given folder **/
+    private static void addSerializationFiles(final ContentCoverageIndex index, VirtualFile fileOrFolder) {
+        VfsUtilCore.visitChildrenRecursively(
+            fileOrFolder,
+            new VirtualFileVisitor() {
+                @Override
+                public boolean visitFile(@NotNull VirtualFile file) {
+                    if(!file.isDirectory() && CONTENT_XML_FILE_NAME.equals(file.getName())) {
+                        index.addSerializationFile(file.getPath());
+                    }
+                    return true;
+                }
+            }
+        );
+    }
+
+    @Override
+    public void projectClosed() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+}
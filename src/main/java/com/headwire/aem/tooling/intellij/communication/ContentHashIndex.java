@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent Index of the Content Hash of each File that was deployed to a Server
+ * keyed by its Repository Path. It is used to detect if the bytes of a file
+ * changed since it was deployed independent of its timestamp which changes on a
+ * branch switch, a checkout or a VFS refresh.
+ *
+ * The Index is a memory mapped file of append only records. Each record contains the
+ * path, the size and timestamp of the file when it was hashed and its SHA-1 digest.
+ * If the size and timestamp did not change the file is not read again. Updates of
+ * a known path are written in place, removed entries are marked as such and dropped
+ * when the index is opened the next time.
+ */
+public class ContentHashIndex {
+
+    private static final int MAGIC = 0x41454d48; // AEMH
+    private static final int VERSION = 1;
+    /** Magic, Version and the End of the last Record **/
+    private static final int HEADER_SIZE = 12;
+    private static final int END_OFFSET = 8;
+    private static final int HASH_SIZE = 20;
+    /** State, Size, Timestamp and Hash that follow the Path of a Record **/
+    private static final int ENTRY_SIZE = 1 + 8 + 8 + HASH_SIZE;
+    private static final int MINIMUM_FILE_SIZE = 64 * 1024;
+    private static final byte STATE_REMOVED = 0;
+    private static final byte STATE_ACTIVE = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File indexFile;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    /** Repository Path to the position of the entry following the path in the record **/
+    private final Map<String, Integer> entryPositions = new HashMap<String, Integer>();
+
+    /**
+     * Opens the Index. If the file does not exist or is not a valid index it is created empty.
+     *
+     * @param indexFile File the Index is stored in
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public ContentHashIndex(File indexFile) throws IOException {
+        this.indexFile = indexFile;
+        File parent = indexFile.getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create the Folder of the Content Hash Index: " + parent);
+        }
+        randomAccessFile = new RandomAccessFile(indexFile, "rw");
+        channel = randomAccessFile.getChannel();
+        load();
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    public synchronized int size() {
+        return entryPositions.size();
+    }
+
+    public synchronized boolean contains(String repositoryPath) {
+        return entryPositions.containsKey(repositoryPath);
+    }
+
+    /**
+     * Checks if the given file has the same content as when it was recorded with the given path.
+     * The file is only read if its size or timestamp changed in which case the new timestamp is
+     * recorded if the content is still the same.
+     *
+     * @param repositoryPath Repository Path of the file
+     * @param file Local File
+     * @return True if the file is recorded and its content did not change
+     * @throws IOException If the file could not be read
+     */
+    public boolean isUnchanged(String repositoryPath, File file) throws IOException {
+        if(!file.isFile()) {
+            return false;
+        }
+        long size = file.length();
+        long timestamp = file.lastModified();
+        byte[] recordedHash;
+        synchronized(this) {
+            Integer position = entryPositions.get(repositoryPath);
+            if(position == null) {
+                return false;
+            }
+            if(buffer.getLong(position + 1) == size && buffer.getLong(position + 9) == timestamp) {
+                return true;
+            }
+            recordedHash = readHash(position);
+        }
+        // Hashed outside of the lock so that other files are not blocked by a large one
+        byte[] hash = computeHash(file);
+        if(!Arrays.equals(hash, recordedHash)) {
+            return false;
+        }
+        synchronized(this) {
+            // Same content with a new timestamp (checkout, touch etc) -> avoid hashing it again
+            // unless the entry was removed or updated in the meantime
+            Integer position = entryPositions.get(repositoryPath);
+            if(position != null && Arrays.equals(recordedHash, readHash(position))) {
+                writeEntry(position, size, timestamp, hash);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the current content of the given file
+     *
+     * @param repositoryPath Repository Path of the file
+     * @param file Local File that was deployed
+     * @throws IOException If the file could not be read or the index could not be written
+     */
+    public void update(String repositoryPath, File file) throws IOException {
+        if(!file.isFile()) {
+            return;
+        }
+        long size = file.length();
+        long timestamp = file.lastModified();
+        // Hash it first and outside of the lock so that a failure does not leave an empty entry behind
+        byte[] hash = computeHash(file);
+        synchronized(this) {
+            writeEntry(obtainEntry(repositoryPath), size, timestamp, hash);
+        }
+    }
+
+    /**
+     * @param key Key of a Digest that is not based on a single file
+     * @return The recorded digest or null if there is none
+     */
+    public synchronized byte[] getDigest(String key) {
+        Integer position = entryPositions.get(key);
+        return position == null ? null : readHash(position);
+    }
+
+    /**
+     * Records a digest that is not based on a single file like the order of children
+     *
+     * @param key Key of the Digest. It must not clash with a Repository Path
+     * @param digest SHA-1 Digest
+     * @throws IOException If the index could not be written
+     */
+    public synchronized void putDigest(String key, byte[] digest) throws IOException {
+        if(digest.length != HASH_SIZE) {
+            throw new IllegalArgumentException("Digest must have " + HASH_SIZE + " bytes but has: " + digest.length);
+        }
+        writeEntry(obtainEntry(key), -1, -1, digest);
+    }
+
+    /** @return Position of the Entry of the given key which is appended if not there yet **/
+    private int obtainEntry(String key) throws IOException {
+        Integer ret = entryPositions.get(key);
+        if(ret == null) {
+            byte[] path = key.getBytes(UTF_8);
+            if(path.length > Short.MAX_VALUE) {
+                throw new IOException("Key is too long for the Content Hash Index: " + key);
+            }
+            ensureCapacity(2 + path.length + ENTRY_SIZE);
+            buffer.putShort(end, (short) path.length);
+            for(int i = 0; i < path.length; i++) {
+                buffer.put(end + 2 + i, path[i]);
+            }
+            ret = end + 2 + path.length;
+            end = ret + ENTRY_SIZE;
+            buffer.putInt(END_OFFSET, end);
+            entryPositions.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Removes the given path and all paths below it
+     *
+     * @param repositoryPath Repository Path of a removed file or folder
+     */
+    public synchronized void remove(String repositoryPath) {
+        String prefix = repositoryPath.endsWith("/") ? repositoryPath : repositoryPath + "/";
+        Iterator<Map.Entry<String, Integer>> i = entryPositions.entrySet().iterator();
+        while(i.hasNext()) {
+            Map.Entry<String, Integer> entry = i.next();
+            if(entry.getKey().equals(repositoryPath) || entry.getKey().startsWith(prefix)) {
+                buffer.put(entry.getValue(), STATE_REMOVED);
+                i.remove();
+            }
+        }
+    }
+
+    /** Removes all entries so that every file is considered changed **/
+    public synchronized void clear() {
+        entryPositions.clear();
+        end = HEADER_SIZE;
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    /** Writes any pending changes to the disk **/
+    public synchronized void flush() {
+        if(buffer != null) {
+            buffer.force();
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        buffer = null;
+        entryPositions.clear();
+        IOUtils.closeQuietly(channel);
+        IOUtils.closeQuietly(randomAccessFile);
+    }
+
+    /**
+     * Loads the entries of the file. Removed entries are dropped by rewriting the file
+     * before it is mapped.
+     */
+    private void load() throws IOException {
+        List<String> pathList = new ArrayList<String>();
+        List<byte[]> entryList = new ArrayList<byte[]>();
+        boolean compact = false;
+        long fileSize = channel.size();
+        if(fileSize >= HEADER_SIZE && fileSize <= Integer.MAX_VALUE) {
+            ByteBuffer content = ByteBuffer.allocate((int) fileSize);
+            while(content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+                // Read until the buffer is full
+            }
+            content.flip();
+            if(content.getInt(0) == MAGIC && content.getInt(4) == VERSION) {
+                int recordEnd = content.getInt(END_OFFSET);
+                int position = HEADER_SIZE;
+                while(position + 2 <= recordEnd && recordEnd <= content.limit()) {
+                    int pathLength = content.getShort(position);
+                    if(pathLength < 0 || position + 2 + pathLength + ENTRY_SIZE > recordEnd) {
+                        // Truncated Record -> drop the rest
+                        compact = true;
+                        break;
+                    }
+                    byte[] path = new byte[pathLength];
+                    content.position(position + 2);
+                    content.get(path);
+                    byte[] entry = new byte[ENTRY_SIZE];
+                    content.get(entry);
+                    if(entry[0] == STATE_ACTIVE) {
+                        pathList.add(new String(path, UTF_8));
+                        entryList.add(entry);
+                    } else {
+                        compact = true;
+                    }
+                    position += 2 + pathLength + ENTRY_SIZE;
+                }
+            } else {
+                compact = true;
+            }
+        } else {
+            compact = true;
+        }
+        if(compact) {
+            ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE);
+            content.putInt(MAGIC).putInt(VERSION).putInt(HEADER_SIZE);
+            content.flip();
+            channel.truncate(0);
+            channel.write(content, 0);
+            end = HEADER_SIZE;
+        }
+        map(Math.max(MINIMUM_FILE_SIZE, (int) Math.min(Integer.MAX_VALUE, channel.size())));
+        if(compact) {
+            // Write the live Records back into the new file
+            for(int i = 0; i < pathList.size(); i++) {
+                byte[] path = pathList.get(i).getBytes(UTF_8);
+                byte[] entry = entryList.get(i);
+                ensureCapacity(2 + path.length + ENTRY_SIZE);
+                buffer.putShort(end, (short) path.length);
+                buffer.position(end + 2);
+                buffer.put(path);
+                buffer.put(entry);
+                entryPositions.put(pathList.get(i), end + 2 + path.length);
+                end += 2 + path.length + ENTRY_SIZE;
+            }
+            buffer.putInt(END_OFFSET, end);
+        } else {
+            end = buffer.getInt(END_OFFSET);
+            int position = HEADER_SIZE;
+            for(String path : pathList) {
+                position += 2 + path.getBytes(UTF_8).length;
+                entryPositions.put(path, position);
+                position += ENTRY_SIZE;
+            }
+        }
+    }
+
+    private void map(int size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if(end + length > buffer.capacity()) {
+            long newSize = Math.max((long) buffer.capacity() * 2, (long) end + length);
+            if(newSize > Integer.MAX_VALUE) {
+                throw new IOException("Content Hash Index is full: " + indexFile);
+            }
+            buffer.force();
+            map((int) newSize);
+        }
+    }
+
+    private void writeEntry(int position, long size, long timestamp, byte[] hash) {
+        buffer.put(position, STATE_ACTIVE);
+        buffer.putLong(position + 1, size);
+        buffer.putLong(position + 9, timestamp);
+        for(int i = 0; i < HASH_SIZE; i++) {
+            buffer.put(position + 17 + i, hash[i]);
+        }
+    }
+
+    private byte[] readHash(int position) {
+        byte[] ret = new byte[HASH_SIZE];
+        for(int i = 0; i < HASH_SIZE; i++) {
+            ret[i] = buffer.get(position + 17 + i);
+        }
+        return ret;
+    }
+
+    static byte[] computeHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 is not supported", e);
+        }
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] data = new byte[8192];
+            int length;
+            while((length = input.read(data)) >= 0) {
+                digest.update(data, 0, length);
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration.Module;
+import com.headwire.aem.tooling.intellij.config.UnifiedModule;
+import com.headwire.aem.tooling.intellij.util.Util;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.headwire.aem.tooling.intellij.util.Constants.JCR_ROOT_FOLDER_NAME;
+
+/**
+ * Provides the Content Hash Index of each Module and Server and decides with it if a file
+ * needs to be deployed. The indexes are kept in the IDE's System Folder so that they
+ * survive a restart.
+ *
+ * If there is no index available or a file is not recorded yet the Modification Stamp is
+ * used instead. A file that is up to date by its stamp is then recorded so that the index
+ * takes over from there.
+ *
+ * The Deploy and Offline Change Journals are provided by the {@link DeployJournalManager} and
+ * the Content Coverage Indexes by the {@link ContentCoverageIndexManager}.
+ */
+public class ContentHashIndexManager
+    extends AbstractProjectComponent
+{
+    private static final String INDEX_FOLDER_NAME = "aem-tooling" + File.separator + "content-hash";
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+    private static final String CHILD_ORDER_KEY_PREFIX = "order:";
+    private static final String CONTENT_XML_FILE_NAME = ".content.xml";
+    private static final String DIR_FOLDER_EXTENSION = ".dir";
+
+    private final Logger logger = Logger.getInstance(getClass());
+    private final Map<String, ContentHashIndex> indexes = new HashMap<String, ContentHashIndex>();
+
+    public ContentHashIndexManager(@NotNull Project project) {
+        super(project);
+    }
+
+    /**
+     * @param module Module to check
+     * @param file File of the Module
+     * @return True if the file was changed since it was deployed or it is unknown to the index and outdated by its stamp
+     */
+    public boolean isModified(@NotNull Module module, @NotNull VirtualFile file) {
+        boolean ret = Util.getModificationStamp(file) < file.getTimeStamp();
+        if(!file.isDirectory()) {
+            ContentHashIndex index = getIndex(module);
+            String repositoryPath = getRepositoryPath(module, file);
+            if(index != null && repositoryPath != null) {
+                try {
+                    if(index.contains(repositoryPath)) {
+                        ret = !index.isUnchanged(repositoryPath, new File(file.getPath()));
+                    } else if(!ret) {
+                        // Deployed before the index was there -> record it now
+                        index.update(repositoryPath, new File(file.getPath()));
+                    }
+                } catch(IOException e) {
+                    logger.warn("Failed to check Content Hash of: " + file.getPath(), e);
+                    ret = true;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param module Module to check
+     * @param file File of the Module
+     * @return True if the file was deployed before according to the index or its modification stamp
+     */
+    public boolean isDeployed(@NotNull Module module, @NotNull VirtualFile file) {
+        boolean ret = Util.getModificationStamp(file) > 0;
+        if(!ret && !file.isDirectory()) {
+            ContentHashIndex index = getIndex(module);
+            String repositoryPath = getRepositoryPath(module, file);
+            ret = index != null && repositoryPath != null && index.contains(repositoryPath);
+        }
+        return ret;
+    }
+
+    /**
+     * Records the current content of a file after it was deployed
+     *
+     * @param module Module of the File
+     * @param file Deployed File. Folders are ignored
+     */
+    public void markDeployed(@NotNull Module module, @NotNull VirtualFile file) {
+        if(!file.isDirectory()) {
+            ContentHashIndex index = getIndex(module);
+            String repositoryPath = getRepositoryPath(module, file);
+            if(index != null && repositoryPath != null) {
+                try {
+                    index.update(repositoryPath, new File(file.getPath()));
+                } catch(IOException e) {
+                    logger.warn("Failed to record Content Hash of: " + file.getPath(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a file or a folder with all its descendants so that they are deployed again
+     *
+     * @param module Module of the File
+     * @param file File or Folder that was removed, moved or renamed
+     */
+    public void markRemoved(@NotNull Module module, @NotNull VirtualFile file) {
+        ContentHashIndex index = getIndex(module);
+        String repositoryPath = getRepositoryPath(module, file);
+        if(index != null && repositoryPath != null) {
+            index.remove(repositoryPath);
+            index.remove(CHILD_ORDER_KEY_PREFIX + repositoryPath);
+        }
+    }
+
+    /**
+     * @param module Module of the File
+     * @param file File or Folder
+     * @return Child Order Digest recorded after the last reorder of the given file or null if not known
+     */
+    @Nullable
+    public byte[] getDeployedChildOrderDigest(@NotNull Module module, @NotNull VirtualFile file) {
+        byte[] ret = null;
+        ContentHashIndex index = getIndex(module);
+        String repositoryPath = getRepositoryPath(module, file);
+        if(index != null && repositoryPath != null) {
+            ret = index.getDigest(CHILD_ORDER_KEY_PREFIX + repositoryPath);
+        }
+        return ret;
+    }
+
+    /**
+     * Records the Child Order Digest after the children of the given file were reordered
+     *
+     * @param module Module of the File
+     * @param file File or Folder
+     * @param digest Digest obtained with {@link #computeChildOrderDigest(VirtualFile)}
+     */
+    public void setDeployedChildOrderDigest(@NotNull Module module, @NotNull VirtualFile file, @NotNull byte[] digest) {
+        ContentHashIndex index = getIndex(module);
+        String repositoryPath = getRepositoryPath(module, file);
+        if(index != null && repositoryPath != null) {
+            try {
+                index.putDigest(CHILD_ORDER_KEY_PREFIX + repositoryPath, digest);
+            } catch(IOException e) {
+                logger.warn("Failed to record Child Order Digest of: " + file.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * The order of the children of a node is defined by its .content.xml and the files and folders
+     * of its folder. For a file that is the 'xyz.dir' folder next to it.
+     *
+     * @param file File or Folder of the node
+     * @return Digest of the names of the children and the content of the .content.xml
+     */
+    @Nullable
+    public static byte[] computeChildOrderDigest(@NotNull VirtualFile file) {
+        VirtualFile folder;
+        if(file.isDirectory()) {
+            folder = file;
+        } else if(CONTENT_XML_FILE_NAME.equals(file.getName())) {
+            folder = file.getParent();
+        } else {
+            folder = file.getParent() == null ? null : file.getParent().findChild(file.getName() + DIR_FOLDER_EXTENSION);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            if(folder != null) {
+                // The file system does not guarantee an order so the names are sorted and only additions and removals count
+                Set<String> names = new TreeSet<String>();
+                for(VirtualFile child : folder.getChildren()) {
+                    names.add(child.getName());
+                }
+                for(String name : names) {
+                    digest.update(name.getBytes("UTF-8"));
+                    digest.update((byte) 0);
+                }
+                VirtualFile contentXml = folder.findChild(CONTENT_XML_FILE_NAME);
+                if(contentXml != null) {
+                    digest.update(contentXml.contentsToByteArray());
+                }
+            }
+            return digest.digest();
+        } catch(NoSuchAlgorithmException e) {
+            return null;
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /** Forgets all files of the given Module so that the next deployment pushes everything **/
+    public void reset(@NotNull Module module) {
+        ContentHashIndex index = getIndex(module);
+        if(index != null) {
+            index.clear();
+            index.flush();
+        }
+    }
+
+    /**
+     * @param module Module to obtain the index for
+     * @return The index of the module and its server or null if it could not be opened
+     */
+    @Nullable
+    public synchronized ContentHashIndex getIndex(@NotNull Module module) {
+        String key = getKey(module);
+        ContentHashIndex ret = indexes.get(key);
+        if(ret == null) {
+            File indexFile = getFile(myProject, INDEX_FOLDER_NAME, key, INDEX_FILE_EXTENSION);
+            try {
+                ret = new ContentHashIndex(indexFile);
+                indexes.put(key, ret);
+            } catch(IOException e) {
+                logger.warn("Failed to open Content Hash Index: " + indexFile, e);
+            }
+        }
+        return ret;
+    }
+
+    /** @return Key of the given Module and its Server to name the files that are kept per Module **/
+    static String getKey(Module module) {
+        ServerConfiguration serverConfiguration = module.getParent();
+        return (serverConfiguration == null ? "" : serverConfiguration.getName()) + "/" + module.getName();
+    }
+
+    /** @return File of the given Key inside the Project's Folder of the given Folder in the IDE's System Folder **/
+    static File getFile(Project project, String folderName, String key, String extension) {
+        return new File(
+            PathManager.getSystemPath() + File.separator + folderName + File.separator + project.getLocationHash(),
+            toFileName(key) + extension
+        );
+    }
+
+    /** @return Path of the File inside the jcr_root folder of the Module or null if it is not inside **/
+    @Nullable
+    String getRepositoryPath(@NotNull Module module, @NotNull VirtualFile file) {
+        String ret = null;
+        UnifiedModule unifiedModule = module.getUnifiedModule();
+        if(unifiedModule != null) {
+            String filePath = file.getPath().replace("\\", "/");
+            for(String contentPath : unifiedModule.getContentDirectoryPaths()) {
+                String basePath = contentPath.replace("\\", "/");
+                if(basePath.endsWith("/")) {
+                    basePath = basePath.substring(0, basePath.length() - 1);
+                }
+                // A sibling like 'jcr_root_backup' must not match 'jcr_root'
+                if(
+                    Util.pathEndsWithFolder(basePath, JCR_ROOT_FOLDER_NAME) &&
+                    (filePath.equals(basePath) || filePath.startsWith(basePath + "/"))
+                ) {
+                    ret = filePath.substring(basePath.length());
+                    if(!ret.startsWith("/")) {
+                        ret = "/" + ret;
+                    }
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static String toFileName(String key) {
+        // The hash keeps names apart that only differ in replaced characters
+        return key.replaceAll("[^a-zA-Z0-9._-]", "_") + "-" + Integer.toHexString(key.hashCode());
+    }
+
+    @Override
+    public synchronized void projectClosed() {
+        for(ContentHashIndex index : indexes.values()) {
+            index.close();
+        }
+        indexes.clear();
+    }
+}
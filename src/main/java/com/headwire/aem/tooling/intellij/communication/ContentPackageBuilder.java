@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.fs.api.ImportMode;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.apache.jackrabbit.vault.util.Constants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a Vault Content Package of a Module's jcr_root folders and its filter.xml
+ * directly into the given Output Stream. Nothing is buffered in memory so that
+ * it can be streamed to the Server while it is written.
+ *
+ * The filters of the filter.xml are installed in Update Mode instead of the default
+ * Replace Mode so that the package only adds and updates content like the publishing
+ * of the Resources does. Content that only exists on the Server like DAM Renditions or
+ * user generated Nodes below a Filter Root is kept.
+ */
+public class ContentPackageBuilder {
+
+    public static final String DEFAULT_GROUP = "aem-ide-tooling";
+
+    /** Files that are only used by the local tooling and are not part of the content **/
+    private static final Set<String> IGNORED_FILE_NAMES = new HashSet<String>(
+        Arrays.asList(".vlt", ".vltignore", ".DS_Store", "Thumbs.db")
+    );
+
+    /** Informed about each content file that is written into the package **/
+    public interface Listener {
+        void fileAdded(File file);
+    }
+
+    private final String group;
+    private final String name;
+    private final String version;
+    private final File filterFile;
+    private final List<File> contentRootList;
+
+    /**
+     * @param group Package Group
+     * @param name Package Name
+     * @param version Package Version
+     * @param filterFile Vault filter.xml of the Module
+     * @param contentRootList List of jcr_root folders of the Module
+     */
+    public ContentPackageBuilder(String group, String name, String version, File filterFile, List<File> contentRootList) {
+        this.group = group;
+        this.name = name;
+        this.version = version;
+        this.filterFile = filterFile;
+        this.contentRootList = contentRootList;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileName() {
+        return name + "-" + version + ".zip";
+    }
+
+    /**
+     * Writes the Package into the given stream. The stream is not closed.
+     *
+     * @param out Stream to write the package to
+     * @param listener Optional Listener informed about each content file added to the package
+     * @throws IOException If the files could not be read or written into the stream
+     */
+    public void write(OutputStream out, Listener listener) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        addProperties(zip);
+        addFilter(zip);
+        zip.putNextEntry(new ZipEntry(Constants.ROOT_DIR + "/"));
+        zip.closeEntry();
+        for(File contentRoot : contentRootList) {
+            addFolder(zip, Constants.ROOT_DIR, contentRoot, listener);
+        }
+        // Finish the Zip Stream without closing the underlying stream
+        zip.finish();
+        zip.flush();
+    }
+
+    private void addProperties(ZipOutputStream zip) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PackageProperties.NAME_GROUP, group);
+        properties.setProperty(PackageProperties.NAME_NAME, name);
+        properties.setProperty(PackageProperties.NAME_VERSION, version);
+        properties.setProperty("description", "Deployed by the AEM IDE Tooling");
+        zip.putNextEntry(new ZipEntry(Constants.META_DIR + "/" + Constants.PROPERTIES_XML));
+        properties.storeToXML(zip, null);
+        zip.closeEntry();
+    }
+
+    /** Adds the filter.xml with the filters in Replace Mode changed to Update Mode **/
+    private void addFilter(ZipOutputStream zip) throws IOException {
+        DefaultWorkspaceFilter workspaceFilter = new DefaultWorkspaceFilter();
+        try {
+            workspaceFilter.load(filterFile);
+        } catch(ConfigurationException e) {
+            throw new IOException("Invalid Filter File: " + filterFile, e);
+        }
+        for(PathFilterSet filterSet : workspaceFilter.getFilterSets()) {
+            if(filterSet.getImportMode() == ImportMode.REPLACE) {
+                filterSet.setImportMode(ImportMode.UPDATE);
+            }
+        }
+        // Generate the filter.xml from the changed Filter Sets
+        workspaceFilter.resetSource();
+        zip.putNextEntry(new ZipEntry(Constants.META_DIR + "/" + Constants.FILTER_XML));
+        InputStream input = workspaceFilter.getSource();
+        try {
+            IOUtils.copy(input, zip);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        zip.closeEntry();
+    }
+
+    private void addFolder(ZipOutputStream zip, String entryPath, File folder, Listener listener) throws IOException {
+        File[] children = folder.listFiles();
+        if(children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for(File child : children) {
+            if(IGNORED_FILE_NAMES.contains(child.getName())) {
+                continue;
+            }
+            String childEntryPath = entryPath + "/" + child.getName();
+            if(child.isDirectory()) {
+                zip.putNextEntry(new ZipEntry(childEntryPath + "/"));
+                zip.closeEntry();
+                addFolder(zip, childEntryPath, child, listener);
+            } else {
+                addFile(zip, childEntryPath, child);
+                if(listener != null) {
+                    listener.fileAdded(child);
+                }
+            }
+        }
+    }
+
+    private void addFile(ZipOutputStream zip, String entryPath, File file) throws IOException {
+        ZipEntry entry = new ZipEntry(entryPath);
+        entry.setTime(file.lastModified());
+        zip.putNextEntry(entry);
+        InputStream input = new FileInputStream(file);
+        try {
+            IOUtils.copy(input, zip);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        zip.closeEntry();
+    }
+}
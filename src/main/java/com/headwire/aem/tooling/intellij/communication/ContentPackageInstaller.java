@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
+import org.apache.commons.httpclient.methods.multipart.Part;
+import org.apache.commons.httpclient.methods.multipart.PartBase;
+import org.apache.commons.httpclient.methods.multipart.StringPart;
+import org.apache.commons.httpclient.util.EncodingUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.ide.transport.RepositoryInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Uploads and installs a Content Package with the CRX Package Manager in one request.
+ * The package is written by the Content Package Builder straight into the request
+ * body which is sent with chunked transfer encoding.
+ */
+public class ContentPackageInstaller {
+
+    public static final String PACKAGE_MANAGER_SERVICE_PATH = "crx/packmgr/service.jsp";
+
+    private static final int CONNECTION_TIMEOUT_IN_MILLISECONDS = 30 * 1000;
+    /** Installing a large package can take a while before the server answers **/
+    private static final int SOCKET_TIMEOUT_IN_MILLISECONDS = 30 * 60 * 1000;
+    private static final Pattern STATUS_PATTERN = Pattern.compile("<status code=\"(\\d+)\">([^<]*)</status>");
+
+    public enum Status {installed, notSupported}
+
+    /**
+     * Streams the package to the Server and installs it
+     *
+     * @param repositoryInfo Repository Info of the Server
+     * @param builder Builder of the Package
+     * @param listener Optional Listener informed about each content file that is uploaded
+     * @return Installed if the package was installed or Not Supported if there is no Package Manager on the Server
+     * @throws IOException If the upload or the installation failed
+     */
+    public Status install(RepositoryInfo repositoryInfo, ContentPackageBuilder builder, ContentPackageBuilder.Listener listener)
+        throws IOException
+    {
+        HttpClient client = new HttpClient();
+        client.getHttpConnectionManager().getParams().setConnectionTimeout(CONNECTION_TIMEOUT_IN_MILLISECONDS);
+        client.getHttpConnectionManager().getParams().setSoTimeout(SOCKET_TIMEOUT_IN_MILLISECONDS);
+        client.getParams().setAuthenticationPreemptive(true);
+        client.getState().setCredentials(
+            new AuthScope(repositoryInfo.getHost(), repositoryInfo.getPort()),
+            new UsernamePasswordCredentials(repositoryInfo.getUsername(), repositoryInfo.getPassword())
+        );
+        PostMethod method = new PostMethod(repositoryInfo.appendPath(PACKAGE_MANAGER_SERVICE_PATH));
+        Part[] parts = new Part[] {
+            new ContentPackagePart(builder, listener),
+            new StringPart("name", builder.getName()),
+            new StringPart("force", "true"),
+            new StringPart("install", "true")
+        };
+        method.setRequestEntity(new MultipartRequestEntity(parts, method.getParams()));
+        InputStream input = null;
+        try {
+            int result = client.executeMethod(method);
+            if(result == HttpStatus.SC_NOT_FOUND) {
+                return Status.notSupported;
+            }
+            if(result != HttpStatus.SC_OK) {
+                throw new IOException("Package Manager returned status code " + result + " for call to " + method.getURI());
+            }
+            // The response contains the entire installation log so it is scanned rather than loaded
+            input = method.getResponseBodyAsStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null) {
+                Matcher matcher = STATUS_PATTERN.matcher(line);
+                if(matcher.find()) {
+                    if("200".equals(matcher.group(1))) {
+                        return Status.installed;
+                    }
+                    throw new IOException("Package Installation failed with status: " + matcher.group(1) + ", message: " + matcher.group(2));
+                }
+            }
+            throw new IOException("Package Manager response did not contain a status");
+        } finally {
+            IOUtils.closeQuietly(input);
+            method.releaseConnection();
+        }
+    }
+
+    /** Multipart File Part that writes the Package directly into the Request **/
+    private static class ContentPackagePart
+        extends PartBase
+    {
+        private final ContentPackageBuilder builder;
+        private final ContentPackageBuilder.Listener listener;
+
+        private ContentPackagePart(ContentPackageBuilder builder, ContentPackageBuilder.Listener listener) {
+            super("file", "application/zip", null, "binary");
+            this.builder = builder;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void sendDispositionHeader(OutputStream out) throws IOException {
+            super.sendDispositionHeader(out);
+            out.write(EncodingUtil.getAsciiBytes("; filename=\"" + builder.getFileName() + "\""));
+        }
+
+        @Override
+        protected void sendData(OutputStream out) throws IOException {
+            builder.write(out, listener);
+        }
+
+        /** The length is unknown as the package is written on the fly which enforces a chunked request **/
+        @Override
+        protected long lengthOfData() throws IOException {
+            return -1;
+        }
+
+        /** The package can only be written once per upload **/
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+    }
+}
@@ -22,45 +22,42 @@ import com.headwire.aem.tooling.intellij.action.ProgressHandlerImpl;
 import com.headwire.aem.tooling.intellij.action.StartDebugConnectionAction;
 import com.headwire.aem.tooling.intellij.action.StartRunConnectionAction;
 import com.headwire.aem.tooling.intellij.config.general.AEMPluginConfiguration;
+import com.headwire.aem.tooling.intellij.console.DeploySchedulerStatusWidget;
 import com.headwire.aem.tooling.intellij.explorer.SlingServerTreeManager;
 import com.headwire.aem.tooling.intellij.explorer.SlingServerNodeDescriptor;
 import com.headwire.aem.tooling.intellij.util.ComponentProvider;
-import com.intellij.codeInsight.CodeSmellInfo;
-import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.impl.SimpleDataContext;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.compiler.CompileContext;
-import com.intellij.openapi.compiler.CompileStatusNotification;
-import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupManager;
-import com.intellij.openapi.vcs.CodeSmellDetector;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileAdapter;
-import com.intellij.openapi.vfs.VirtualFileCopyEvent;
-import com.intellij.openapi.vfs.VirtualFileEvent;
 import com.intellij.openapi.vfs.VirtualFileManager;
-import com.intellij.openapi.vfs.VirtualFileMoveEvent;
-import com.intellij.openapi.vfs.VirtualFilePropertyEvent;
-import com.intellij.openapi.wm.ToolWindow;
-import com.intellij.openapi.wm.ToolWindowId;
-import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.WindowManager;
+import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
 import static com.headwire.aem.tooling.intellij.util.Constants.JCR_ROOT_FOLDER_NAME;
+import static com.headwire.aem.tooling.intellij.util.Constants.VAULT_FILTER_FILE_NAME;
 import static com.intellij.openapi.vfs.VirtualFile.PROP_NAME;
 
 /**
@@ -69,14 +66,18 @@ import static com.intellij.openapi.vfs.VirtualFile.PROP_NAME;
 public class ContentResourceChangeListener
     extends AbstractProjectComponent
 {
+    /** Longest Time a change is held back if no Deploy Delay is configured **/
+    public static final int DEFAULT_MAXIMUM_DELAY_IN_SECONDS = 5;
 
     private AEMPluginConfiguration pluginConfiguration;
     private final ServerConnectionManager serverConnectionManager;
     private final Project project;
 
-    private final LinkedList<FileChange> queue = new LinkedList<FileChange>();
+    private final FileChangeQueue queue = new FileChangeQueue();
     private Runner runner;
-    private VirtualFileAdapter virtualFileAdapter;
+    private MessageBusConnection connection;
+    private CompileCoordinator compileCoordinator;
+    private final DeploySchedulerStatusWidget statusWidget = new DeploySchedulerStatusWidget();
 
 
     public ContentResourceChangeListener(@NotNull Project project) {
@@ -136,103 +137,92 @@ public class ContentResourceChangeListener
     @Override
     public void projectOpened() {
 
-        // File Change Events are not handled right away but queued up and handled in
-        // batches to avoid a constant load on the IDEA. The timeout is configurable so
-        // that the user can decide the delay
+        // File Change Events are not handled right away but queued up, merged by path and handled
+        // in batches once the changes settled down to avoid a constant load on the IDEA. The Deploy Delay
+        // is the longest time a change is held back when changes keep coming in
         if(runner == null) {
+            queue.start();
             runner = new Runner();
             Thread thread = new Thread(runner);
             thread.setDaemon(true);
             thread.start();
         }
-
-        // Create the Listener on File Changes
-        virtualFileAdapter = new VirtualFileAdapter() {
-            @Override
-            public void contentsChanged(@NotNull VirtualFileEvent event) {
-                boolean listenToFS = true;
-                AEMPluginConfiguration pluginConfiguration = ComponentProvider.getComponent(project, AEMPluginConfiguration.class);
-                if(pluginConfiguration != null) {
-                    listenToFS = pluginConfiguration.isListenToFileSystemEvents();
-                }
-                // Either we listen to FS Events or Change must come from Save
-                if(listenToFS || event.isFromSave()) {
-                    executeMake(event);
-                    if (serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                        handleChange(event.getFile(), FileChangeType.CHANGED);
+        if(compileCoordinator == null) {
+            compileCoordinator = new CompileCoordinator(project);
+        }
+        StartupManager.getInstance(project).registerPostStartupActivity(
+            new Runnable() {
+                @Override
+                public void run() {
+                    StatusBar statusBar = WindowManager.getInstance().getStatusBar(project);
+                    if(statusBar != null) {
+                        statusBar.addWidget(statusWidget, project);
                     }
                 }
             }
+        );
 
-            @Override
-            public void fileCreated(@NotNull VirtualFileEvent event) {
-                if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                    handleChange(event.getFile(), FileChangeType.CREATED);
-                }
-            }
-
-            @Override
-            public void fileDeleted(@NotNull VirtualFileEvent event) {
-                // When a file is deleted the remove does not work anymore because it is gone -> Delete the file
-                // on line before the actual deletion
-            }
-
-            @Override
-            public void beforeFileMovement(@NotNull VirtualFileMoveEvent event) {
-                if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                    // We delete before the Move because the original file still exists
-                    VirtualFile file = event.getFile();
-                    handleChange(file, FileChangeType.DELETED);
-                }
-            }
-
-            @Override
-            public void beforeFileDeletion(@NotNull VirtualFileEvent event) {
-                if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                    // Delete the JCR Resource before the file is gone
-                    handleChange(event.getFile(), FileChangeType.DELETED);
-                }
-            }
-
-            @Override
-            public void fileMoved(@NotNull VirtualFileMoveEvent event) {
-                if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                    // After the move we create the new file
-                    VirtualFile file = event.getFile();
-                    handleChange(event.getFile(), FileChangeType.CREATED);
-                }
-            }
-
-            @Override
-            public void fileCopied(@NotNull VirtualFileCopyEvent event) {
-                if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                    handleChange(event.getFile(), FileChangeType.CREATED);
-                }
-            }
-
-            @Override
-            public void beforePropertyChange(@NotNull VirtualFilePropertyEvent event) {
-                if(event.getPropertyName().equals(PROP_NAME)) {
-                    // Before the Property Change the file is still there and so we use that to remove it from the target server
-                    VirtualFile file = event.getFile();
-                    handleChange(file, FileChangeType.DELETED);
+        // Listen to the File Changes in bulk so that a large change like a branch switch is handled in one go
+        connection = project.getMessageBus().connect();
+        connection.subscribe(
+            VirtualFileManager.VFS_CHANGES,
+            new BulkFileListener() {
+                @Override
+                public void before(@NotNull List<? extends VFileEvent> events) {
+                    List<FileChange> fileChangeList = new ArrayList<FileChange>();
+                    for(VFileEvent event : events) {
+                        if(event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent) {
+                            // Delete the JCR Resource before the file is gone or moved as the original file still exists
+                            addChange(fileChangeList, event.getFile(), FileChangeType.DELETED);
+                        } else if(isRename(event)) {
+                            // Before the Property Change the file is still there and so we use that to remove it from the target server
+                            addChange(fileChangeList, event.getFile(), FileChangeType.DELETED);
+                        }
+                    }
+                    handleChanges(fileChangeList);
                 }
-            }
 
-            @Override
-            public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
-                if(event.getPropertyName().equals(PROP_NAME)) {
-                    if(serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
-                        // Now the file has been renamed and we upload it to the target server
-                        VirtualFile file = event.getFile();
-                        handleChange(event.getFile(), FileChangeType.CREATED);
+                @Override
+                public void after(@NotNull List<? extends VFileEvent> events) {
+                    // Keep the Coverage Indexes up to date even if the changes are not deployed
+                    ContentCoverageIndexManager coverageIndexManager = ComponentProvider.getComponent(project, ContentCoverageIndexManager.class);
+                    if(coverageIndexManager != null) {
+                        coverageIndexManager.updateCoverageIndexes(events);
+                    }
+                    for(VFileEvent event : events) {
+                        if(
+                            event.getPath().endsWith("/" + VAULT_FILTER_FILE_NAME) ||
+                            isRename(event) && VAULT_FILTER_FILE_NAME.equals(((VFilePropertyChangeEvent) event).getOldValue())
+                        ) {
+                            serverConnectionManager.invalidateFilters(event.getPath());
+                        }
+                    }
+                    boolean listenToFS = true;
+                    AEMPluginConfiguration pluginConfiguration = ComponentProvider.getComponent(project, AEMPluginConfiguration.class);
+                    if(pluginConfiguration != null) {
+                        listenToFS = pluginConfiguration.isListenToFileSystemEvents();
                     }
+                    List<FileChange> fileChangeList = new ArrayList<FileChange>();
+                    for(VFileEvent event : events) {
+                        if(event instanceof VFileContentChangeEvent) {
+                            // Either we listen to FS Events or Change must come from Save
+                            if(listenToFS || event.isFromSave()) {
+                                executeMake(event.getFile());
+                                addChange(fileChangeList, event.getFile(), FileChangeType.CHANGED);
+                            }
+                        } else if(event instanceof VFileCreateEvent || event instanceof VFileMoveEvent) {
+                            // After the move we create the new file
+                            addChange(fileChangeList, event.getFile(), FileChangeType.CREATED);
+                        } else if(event instanceof VFileCopyEvent) {
+                            addChange(fileChangeList, ((VFileCopyEvent) event).findCreatedFile(), FileChangeType.CREATED);
+                        } else if(isRename(event)) {
+                            // Now the file has been renamed and we upload it to the target server
+                            addChange(fileChangeList, event.getFile(), FileChangeType.CREATED);
+                        }
+                    }
+                    handleChanges(fileChangeList);
                 }
             }
-        };
-        VirtualFileManager.getInstance().addVirtualFileListener(
-            virtualFileAdapter,
-            project
         );
     }
 
@@ -242,89 +232,43 @@ public class ContentResourceChangeListener
             runner.stop();
             runner = null;
         }
-        if(virtualFileAdapter != null) {
-            VirtualFileManager.getInstance().removeVirtualFileListener(virtualFileAdapter);
-            virtualFileAdapter = null;
+        if(connection != null) {
+            connection.disconnect();
+            connection = null;
+        }
+        if(compileCoordinator != null) {
+            compileCoordinator.shutdown();
+            compileCoordinator = null;
         }
     }
 
-    private void handleChange(VirtualFile file, FileChangeType fileChangeType) {
-        String path = file.getPath();
-        if(path.indexOf("/" + JCR_ROOT_FOLDER_NAME + "/") > 0) {
-            synchronized(queue) {
-                queue.add(new FileChange(file, fileChangeType));
-                queue.notifyAll();
-            }
+    private static boolean isRename(VFileEvent event) {
+        return event instanceof VFilePropertyChangeEvent && PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+
+    private static void addChange(List<FileChange> fileChangeList, VirtualFile file, FileChangeType fileChangeType) {
+        // Only Content Files are deployed
+        if(file != null && file.getPath().indexOf("/" + JCR_ROOT_FOLDER_NAME + "/") > 0) {
+            fileChangeList.add(new FileChange(file, fileChangeType));
+        }
+    }
+
+    /** The Server Configuration is checked once for all changes of a batch before they are queued up together **/
+    private void handleChanges(List<FileChange> fileChangeList) {
+        if(!fileChangeList.isEmpty() && serverConnectionManager.checkSelectedServerConfiguration(true, true)) {
+            queue.addAll(fileChangeList);
         }
     }
 
-    private void executeMake(final VirtualFileEvent event) {
+    private void executeMake(final VirtualFile file) {
         if(
             (pluginConfiguration == null || pluginConfiguration.isIncrementalBuilds())
 // If no Configuration Selected which can happen when the project is not AEM / Sling based then do nothing
             && serverConnectionManager.isConfigurationSelected()
         ) {
-            // Check if the file is a Java Class and if os build it
-            VirtualFile file = event.getFile();
-            if("java".equalsIgnoreCase(file.getExtension())) {
-                //AS TODO: In order to use the Code Snell Detector this needs to be invoked in a Read Only Thread but part of the Dispatcher Thread
-                ApplicationManager.getApplication().invokeLater(
-                    new Runnable() {
-                        @Override
-                        public void run() {
-                            executeMakeInUIThread(event);
-                        }
-                    }
-                );
-            }
-        }
-    }
-
-    private void executeMakeInUIThread(final VirtualFileEvent event) {
-        if(project.isInitialized() && !project.isDisposed() && project.isOpen()) {
-            final CompilerManager compilerManager = CompilerManager.getInstance(project);
-            if(!compilerManager.isCompilationActive() &&
-                !compilerManager.isExcludedFromCompilation(event.getFile()) // &&
-            ) {
-                // Check first if there are no errors in the code
-                CodeSmellDetector codeSmellDetector = CodeSmellDetector.getInstance(project);
-                boolean isOk = true;
-                if(codeSmellDetector != null) {
-                    List<CodeSmellInfo> codeSmellInfoList = codeSmellDetector.findCodeSmells(Arrays.asList(event.getFile()));
-                    for(CodeSmellInfo codeSmellInfo: codeSmellInfoList) {
-                        if(codeSmellInfo.getSeverity() == HighlightSeverity.ERROR) {
-                            isOk = false;
-                            break;
-                        }
-                    }
-                }
-                if(isOk) {
-                    // Changed file found in module. Make it.
-                    final ToolWindow tw = ToolWindowManager.getInstance(project).getToolWindow(ToolWindowId.MESSAGES_WINDOW);
-                    final boolean isShown = tw != null && tw.isVisible();
-                    compilerManager.compile(
-                        new VirtualFile[]{event.getFile()},
-                        new CompileStatusNotification() {
-                            @Override
-                            public void finished(boolean b, int i, int i1, CompileContext compileContext) {
-                                if (tw != null && tw.isVisible()) {
-                                    // Close / Hide the Build Message Window after we did the build if it wasn't shown
-                                    if(!isShown) {
-                                        tw.hide(null);
-                                    }
-                                }
-                            }
-                        }
-                    );
-                } else {
-                    MessageManager messageManager = ComponentProvider.getComponent(project, MessageManager.class);
-                    if(messageManager != null) {
-                        messageManager.sendErrorNotification(
-                            "server.update.file.change.with.error",
-                            event.getFile()
-                        );
-                    }
-                }
+            // Check if the file is a Java Class and if so collect it to be built together with the other saved classes of its module
+            if("java".equalsIgnoreCase(file.getExtension()) && compileCoordinator != null) {
+                compileCoordinator.add(file);
             }
         }
     }
@@ -342,10 +286,8 @@ public class ContentResourceChangeListener
 
         public void stop() {
             if(running != null) {
-                synchronized(queue) {
-                    running.set(false);
-                    queue.notifyAll();
-                }
+                running.set(false);
+                queue.stop();
             }
         }
 
@@ -355,36 +297,30 @@ public class ContentResourceChangeListener
                 running.set(true);
                 while(running.get()) {
                     try {
-                        LinkedList<FileChange> work = null;
-                        synchronized(queue) {
-                            if(queue.size() > 0) {
-                                work = new LinkedList<FileChange>(queue);
-                                queue.clear();
-                            }
+                        int delay = pluginConfiguration == null ? -1 : pluginConfiguration.getDeployDelayInSeconds();
+                        if(delay <= 0) {
+                            delay = DEFAULT_MAXIMUM_DELAY_IN_SECONDS;
                         }
-                        if(work == null) {
-                            synchronized(queue) {
-                                try {
-                                    // This should block until an entry is written to the queue
-                                    // where a notifyAll() will wake up this thread for another loop
-                                    queue.wait();
-                                } catch(InterruptedException e) {
-                                    // Ignore it
-                                }
-                            }
-                        } else {
-                            // Do the updates
+                        // The Quiet Period and Batch Size adapt to the latency of the Server and the waiting changes
+                        AdaptiveDeployScheduler scheduler = serverConnectionManager.getDeployScheduler();
+                        if(pluginConfiguration != null) {
+                            scheduler.setBounds(
+                                pluginConfiguration.getMinimumQuietPeriodInMillis(),
+                                pluginConfiguration.getMinimumBatchSize(),
+                                pluginConfiguration.getMaximumBatchSize()
+                            );
+                        }
+                        long quietPeriod = scheduler.getQuietPeriodInMillis(delay * 1000L);
+                        int batchSize = scheduler.getBatchSize();
+                        statusWidget.update(quietPeriod, batchSize, scheduler.getLatencyInMillis());
+                        // This blocks until the changes settled down or the oldest change waited long enough
+                        List<FileChange> work = queue.take(quietPeriod, delay * 1000L, batchSize);
+                        scheduler.recordQueueDepth(work.size() + queue.size() + serverConnectionManager.getPendingChangeCount());
+                        if(!work.isEmpty()) {
                             serverConnectionManager.handleFileChanges(work);
-                            // Wait for the timeout
-                            try {
-                                int delay = pluginConfiguration == null ? 30 : pluginConfiguration.getDeployDelayInSeconds();
-                                if(delay > 0) {
-                                    Thread.sleep(delay * 1000);
-                                }
-                            } catch(InterruptedException e) {
-                                // Ignore it
-                            }
                         }
+                    } catch(InterruptedException e) {
+                        // Ignore it
                     } catch(Exception e) {
                         //AS TODO: Write this to IDEA Logs -> ignore it for now
                         logger.warn("Caught unexpected exception while listening for file changes", e);
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-Ahead Journal of a Publish of a Module to a Server. The planned paths are written
+ * before anything is sent to the Server and the completed paths after their batch was
+ * saved. A journal that is finished is deleted so that a journal found on the disk
+ * belongs to an interrupted publish.
+ *
+ * An interrupted forced publish can then be resumed by skipping the completed paths. A path
+ * is only skipped if its file still has the timestamp it was published with so that a file
+ * changed in the meantime is published again. A journal that was not written for longer than
+ * the expiry is not resumed anymore and the next forced publish starts over.
+ *
+ * Each line holds a record type and its value:
+ * <ul>
+ *     <li>B: Begin of a Publish with 'force' or 'update'</li>
+ *     <li>P: Path planned to be published. A path completed before is planned again if it changed</li>
+ *     <li>C: Timestamp of the file and Path completed separated by a blank</li>
+ * </ul>
+ */
+public class DeployJournal {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char BEGIN = 'B';
+    private static final char PLANNED = 'P';
+    private static final char COMPLETED = 'C';
+    private static final String FORCE = "force";
+    private static final String UPDATE = "update";
+    /** Timestamp of a completed path whose timestamp is unknown **/
+    private static final long UNKNOWN = -1;
+
+    /** Time after the last write after which an interrupted publish is not resumed anymore **/
+    public static final long DEFAULT_EXPIRY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    private final File file;
+    private final long expiryInMillis;
+    private final Set<String> plannedPaths = new HashSet<String>();
+    /** Timestamp of the file when it was published by the completed path **/
+    private final Map<String, Long> completedPaths = new HashMap<String, Long>();
+    private boolean interrupted;
+    private boolean forced;
+    private long lastWritten;
+    private Writer writer;
+
+    /**
+     * Opens the journal with the default expiry
+     *
+     * @param file Journal File which does not need to exist
+     * @throws IOException If the journal could not be read
+     */
+    public DeployJournal(File file) throws IOException {
+        this(file, DEFAULT_EXPIRY_IN_MILLIS);
+    }
+
+    /**
+     * Opens the journal and reads the records of an interrupted publish if there are any
+     *
+     * @param file Journal File which does not need to exist
+     * @param expiryInMillis Time after the last write after which an interrupted publish is not resumed anymore
+     * @throws IOException If the journal could not be read
+     */
+    public DeployJournal(File file, long expiryInMillis) throws IOException {
+        this.file = file;
+        this.expiryInMillis = expiryInMillis;
+        if(file.isFile()) {
+            lastWritten = file.lastModified();
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.length() < 2) {
+                    // A partial last line of a crash is ignored
+                    continue;
+                }
+                String value = line.substring(2);
+                switch(line.charAt(0)) {
+                    case BEGIN:
+                        interrupted = true;
+                        forced = FORCE.equals(value);
+                        break;
+                    case PLANNED:
+                        plannedPaths.add(value);
+                        // Planned again after it changed
+                        completedPaths.remove(value);
+                        break;
+                    case COMPLETED:
+                        int index = value.indexOf(' ');
+                        long timestamp = UNKNOWN;
+                        if(index > 0) {
+                            try {
+                                timestamp = Long.parseLong(value.substring(0, index));
+                                value = value.substring(index + 1);
+                            } catch(NumberFormatException e) {
+                                // No timestamp -> the path is published again
+                            }
+                        }
+                        completedPaths.put(value, timestamp);
+                        break;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /** @return True if there is an interrupted forced publish that can be resumed and did not expire **/
+    public synchronized boolean isResumable() {
+        return interrupted && forced && System.currentTimeMillis() - lastWritten <= expiryInMillis;
+    }
+
+    /** @return Paths completed by the interrupted publish **/
+    public synchronized Set<String> getCompletedPaths() {
+        return Collections.unmodifiableSet(new HashSet<String>(completedPaths.keySet()));
+    }
+
+    /**
+     * @param path Path of the file
+     * @param timestamp Current timestamp of the file
+     * @return True if the path was completed and the file was not changed since
+     */
+    public synchronized boolean isCompleted(String path, long timestamp) {
+        Long completedTimestamp = completedPaths.get(path);
+        return completedTimestamp != null && completedTimestamp != UNKNOWN && completedTimestamp == timestamp;
+    }
+
+    public synchronized int getPlannedCount() {
+        return plannedPaths.size();
+    }
+
+    public synchronized int getCompletedCount() {
+        return completedPaths.size();
+    }
+
+    /** @return Number of planned paths that are not completed yet **/
+    public synchronized int getRemainingCount() {
+        int ret = 0;
+        for(String path : plannedPaths) {
+            if(!completedPaths.containsKey(path)) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Starts a publish and writes its planned paths to the disk
+     *
+     * @param force True if this is a forced publish
+     * @param paths Paths that are going to be published. A completed path in here is planned again
+     * @param resume True if the interrupted publish is continued otherwise a new journal is started
+     * @throws IOException If the journal could not be written
+     */
+    public synchronized void begin(boolean force, Collection<String> paths, boolean resume) throws IOException {
+        closeWriter();
+        if(!resume) {
+            plannedPaths.clear();
+            completedPaths.clear();
+        }
+        File folder = file.getParentFile();
+        if(folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create Journal Folder: " + folder);
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, resume), UTF_8));
+        interrupted = true;
+        forced = force;
+        write(BEGIN, force ? FORCE : UPDATE);
+        for(String path : paths) {
+            boolean replanned = completedPaths.remove(path) != null;
+            if(plannedPaths.add(path) || replanned) {
+                write(PLANNED, path);
+            }
+        }
+        writer.flush();
+        lastWritten = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a completed path. It is written to the disk with the next commit.
+     *
+     * @param path Path of the published file
+     * @param timestamp Timestamp of the file when it was published
+     */
+    public synchronized void completed(String path, long timestamp) throws IOException {
+        if(writer != null && !completedPaths.containsKey(path)) {
+            completedPaths.put(path, timestamp);
+            write(COMPLETED, timestamp + " " + path);
+        }
+    }
+
+    /** Writes all completed paths to the disk **/
+    public synchronized void commit() throws IOException {
+        if(writer != null) {
+            writer.flush();
+            lastWritten = System.currentTimeMillis();
+        }
+    }
+
+    /** Ends a successful publish by deleting the journal **/
+    public synchronized void finish() {
+        closeWriter();
+        plannedPaths.clear();
+        completedPaths.clear();
+        interrupted = false;
+        forced = false;
+        if(file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /** Closes the journal of an unfinished publish and keeps it on the disk **/
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    private void write(char type, String value) throws IOException {
+        writer.write(type);
+        writer.write(' ');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private void closeWriter() {
+        if(writer != null) {
+            try {
+                writer.flush();
+            } catch(IOException e) {
+                // Nothing to be done here -> the completed paths are published again
+            }
+            IOUtils.closeQuietly(writer);
+            writer = null;
+        }
+    }
+}
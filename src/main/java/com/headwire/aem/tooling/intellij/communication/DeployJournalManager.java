@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration.Module;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides the Deploy Journal of each Module and Server so that an interrupted deployment can
+ * be resumed after a restart and the Offline Change Journal of each Server so that changes made
+ * while it was down are deployed when it is connected again.
+ *
+ * The journals are kept in the IDE's System Folder next to the Content Hash Indexes.
+ */
+public class DeployJournalManager
+    extends AbstractProjectComponent
+{
+    private static final String JOURNAL_FOLDER_NAME = "aem-tooling" + File.separator + "deploy-journal";
+    private static final String JOURNAL_FILE_EXTENSION = ".journal";
+    private static final String OFFLINE_FOLDER_NAME = "aem-tooling" + File.separator + "offline-changes";
+
+    private final Logger logger = Logger.getInstance(getClass());
+    private final Map<String, DeployJournal> journals = new HashMap<String, DeployJournal>();
+    private final Map<String, OfflineChangeJournal> offlineJournals = new HashMap<String, OfflineChangeJournal>();
+
+    public DeployJournalManager(@NotNull Project project) {
+        super(project);
+    }
+
+    /**
+     * @param module Module to obtain the journal for
+     * @return The deploy journal of the module and its server or null if it could not be opened
+     */
+    @Nullable
+    public synchronized DeployJournal getDeployJournal(@NotNull Module module) {
+        String key = ContentHashIndexManager.getKey(module);
+        DeployJournal ret = journals.get(key);
+        if(ret == null) {
+            File journalFile = ContentHashIndexManager.getFile(myProject, JOURNAL_FOLDER_NAME, key, JOURNAL_FILE_EXTENSION);
+            try {
+                ret = new DeployJournal(journalFile);
+                journals.put(key, ret);
+            } catch(IOException e) {
+                logger.warn("Failed to open Deploy Journal: " + journalFile, e);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param serverConfiguration Server Configuration to obtain the journal for
+     * @return The journal of the changes made while the server was not connected
+     */
+    @NotNull
+    public synchronized OfflineChangeJournal getOfflineChangeJournal(@NotNull ServerConfiguration serverConfiguration) {
+        String key = serverConfiguration.getName();
+        OfflineChangeJournal ret = offlineJournals.get(key);
+        if(ret == null) {
+            ret = new OfflineChangeJournal(ContentHashIndexManager.getFile(myProject, OFFLINE_FOLDER_NAME, key, JOURNAL_FILE_EXTENSION));
+            offlineJournals.put(key, ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized void projectClosed() {
+        // Unfinished journals stay on the disk so that the deployment can be resumed
+        for(DeployJournal journal : journals.values()) {
+            journal.close();
+        }
+        journals.clear();
+        offlineJournals.clear();
+    }
+}
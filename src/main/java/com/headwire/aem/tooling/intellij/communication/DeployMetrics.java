@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.filter.Filter;
+import org.apache.sling.ide.filter.FilterResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the timings of the Deploy Pipeline. Each Phase keeps the number of calls, the number
+ * of handled items, the total and maximum time and a latency histogram.
+ *
+ * Phases are nested: a publish contains the walk, serialization, execution and reorder and the
+ * serialization contains the filter evaluation.
+ */
+public class DeployMetrics {
+
+    public enum Phase {
+        /** Entire Publish of a Module **/
+        publishModule("Publish Module"),
+        /** Entire Handling of a batch of File Changes **/
+        handleFileChanges("Handle File Changes"),
+        /** Entire Build and Deployment of a Bundle **/
+        publishBundle("Publish Bundle"),
+        /** Walk of the local Content Tree to find changed resources **/
+        walk("Tree Walk"),
+        /** Creation of the Commands which serializes the resources **/
+        serialize("Serialization"),
+        /** Evaluation of the Workspace Filter **/
+        filter("Filter Evaluation"),
+        /** Execution of Commands against the Server **/
+        execute("Network Execute"),
+        /** Reorder of Child Nodes **/
+        reorder("Reorder"),
+        /** Wait for the Maven Build to finish **/
+        buildWait("Maven Build Wait"),
+        /** Update of the Bundle with the classes compiled by the IDE **/
+        deltaBuild("Delta Bundle Build"),
+        /** Check of saved Java Sources for errors before they are compiled **/
+        compileCheck("Compile Error Check"),
+        /** Incremental Compile of the saved Java Sources of a Module **/
+        compile("Incremental Compile");
+
+        private final String title;
+
+        Phase(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    /** Upper Bounds of the Histogram Buckets in milliseconds. The last bucket takes anything above. **/
+    public static final long[] HISTOGRAM_BOUNDS = new long[] { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    public static class PhaseStatistics {
+        private final Phase phase;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+
+        private PhaseStatistics(Phase phase) {
+            this.phase = phase;
+        }
+
+        private void record(long nanos, long itemCount) {
+            count.incrementAndGet();
+            items.addAndGet(itemCount);
+            totalNanos.addAndGet(nanos);
+            long current = maxNanos.get();
+            while(nanos > current && !maxNanos.compareAndSet(current, nanos)) {
+                current = maxNanos.get();
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while(bucket < HISTOGRAM_BOUNDS.length && millis >= HISTOGRAM_BOUNDS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        private void reset() {
+            count.set(0);
+            items.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            for(int i = 0; i < histogram.length(); i++) {
+                histogram.set(i, 0);
+            }
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public double getTotalMillis() {
+            return totalNanos.get() / 1000000.0;
+        }
+
+        public double getAverageMillis() {
+            long calls = count.get();
+            return calls == 0 ? 0 : getTotalMillis() / calls;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1000000.0;
+        }
+
+        /** @return Number of handled items per second over all calls **/
+        public double getItemsPerSecond() {
+            long nanos = totalNanos.get();
+            return nanos == 0 ? 0 : items.get() * 1000000000.0 / nanos;
+        }
+
+        /** @return Number of calls per Histogram Bucket **/
+        public long[] getHistogram() {
+            long[] ret = new long[histogram.length()];
+            for(int i = 0; i < ret.length; i++) {
+                ret[i] = histogram.get(i);
+            }
+            return ret;
+        }
+    }
+
+    private final PhaseStatistics[] statistics;
+
+    public DeployMetrics() {
+        Phase[] phases = Phase.values();
+        statistics = new PhaseStatistics[phases.length];
+        for(Phase phase : phases) {
+            statistics[phase.ordinal()] = new PhaseStatistics(phase);
+        }
+    }
+
+    /** @return Start Time of a measurement which is handed to one of the record methods **/
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /** Records one call of the given Phase that started at the given time **/
+    public void record(Phase phase, long start) {
+        record(phase, start, 1);
+    }
+
+    /** Records one call of the given Phase that started at the given time and handled the given number of items **/
+    public void record(Phase phase, long start, long items) {
+        statistics[phase.ordinal()].record(System.nanoTime() - start, items);
+    }
+
+    public PhaseStatistics getStatistics(Phase phase) {
+        return statistics[phase.ordinal()];
+    }
+
+    public List<PhaseStatistics> getStatistics() {
+        List<PhaseStatistics> ret = new ArrayList<PhaseStatistics>(statistics.length);
+        for(PhaseStatistics phaseStatistics : statistics) {
+            ret.add(phaseStatistics);
+        }
+        return ret;
+    }
+
+    public void reset() {
+        for(PhaseStatistics phaseStatistics : statistics) {
+            phaseStatistics.reset();
+        }
+    }
+
+    /** @return Filter that records the time of each evaluation of the given Filter or null if the Filter is null **/
+    public Filter wrap(final Filter filter) {
+        if(filter == null) {
+            return null;
+        }
+        return new Filter() {
+            @Override
+            public FilterResult filter(String repositoryPath) {
+                long start = start();
+                try {
+                    return filter.filter(repositoryPath);
+                } finally {
+                    record(Phase.filter, start);
+                }
+            }
+        };
+    }
+
+    /** @return All Statistics as JSON Object with one entry per Phase and the Counters of the global Caches **/
+    public String toJson() {
+        return toJson(NodeTypeCache.getInstance(), SerializationDataCache.getInstance());
+    }
+
+    String toJson(NodeTypeCache nodeTypeCache, SerializationDataCache serializationDataCache) {
+        try {
+            JSONObject ret = new JSONObject();
+            JSONArray bounds = new JSONArray();
+            for(long bound : HISTOGRAM_BOUNDS) {
+                bounds.put(bound);
+            }
+            ret.put("histogramBoundsMillis", bounds);
+            JSONArray phases = new JSONArray();
+            for(PhaseStatistics phaseStatistics : statistics) {
+                JSONObject phase = new JSONObject();
+                phase.put("phase", phaseStatistics.getPhase().name());
+                phase.put("title", phaseStatistics.getPhase().getTitle());
+                phase.put("count", phaseStatistics.getCount());
+                phase.put("items", phaseStatistics.getItems());
+                phase.put("totalMillis", phaseStatistics.getTotalMillis());
+                phase.put("averageMillis", phaseStatistics.getAverageMillis());
+                phase.put("maxMillis", phaseStatistics.getMaxMillis());
+                phase.put("itemsPerSecond", phaseStatistics.getItemsPerSecond());
+                JSONArray histogram = new JSONArray();
+                for(long bucket : phaseStatistics.getHistogram()) {
+                    histogram.put(bucket);
+                }
+                phase.put("histogram", histogram);
+                phases.put(phase);
+            }
+            ret.put("phases", phases);
+            // The Caches are shared by all Projects and so are their Counters
+            JSONObject caches = new JSONObject();
+            JSONObject nodeTypes = new JSONObject();
+            nodeTypes.put("hits", nodeTypeCache.getHitCount());
+            nodeTypes.put("misses", nodeTypeCache.getMissCount());
+            caches.put("nodeTypeCache", nodeTypes);
+            JSONObject serializationData = new JSONObject();
+            serializationData.put("hitRate", serializationDataCache.getHitRate());
+            serializationData.put("hits", serializationDataCache.getHitCount());
+            serializationData.put("misses", serializationDataCache.getMissCount());
+            serializationData.put("sizeInBytes", serializationDataCache.getSize());
+            caches.put("serializationDataCache", serializationData);
+            ret.put("globalCaches", caches);
+            return ret.toString(2);
+        } catch(JSONException e) {
+            throw new IllegalStateException("Failed to create JSON of the Deploy Metrics", e);
+        }
+    }
+}
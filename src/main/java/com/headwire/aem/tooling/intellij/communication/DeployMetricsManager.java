@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Holds the Deploy Metrics of a Project so that the Deployment, the Sling Project and
+ * the AEM Console share the same numbers.
+ */
+public class DeployMetricsManager
+    extends AbstractProjectComponent
+{
+    private final DeployMetrics deployMetrics = new DeployMetrics();
+
+    public DeployMetricsManager(@NotNull Project project) {
+        super(project);
+    }
+
+    public DeployMetrics getDeployMetrics() {
+        return deployMetrics;
+    }
+
+    /** @return Deploy Metrics of the given Project or a detached instance if the Project has none **/
+    public static DeployMetrics getDeployMetrics(Project project) {
+        DeployMetricsManager manager = project == null ? null : project.getComponent(DeployMetricsManager.class);
+        return manager != null ? manager.getDeployMetrics() : new DeployMetrics();
+    }
+}
@@ -26,23 +26,43 @@ import com.intellij.openapi.vfs.VirtualFile;
  */
 public class FileChange {
     private VirtualFile file;
+    /** Path of the file when the change happened as a moved or renamed file changes its path later **/
+    private String path;
     private ServerConnectionManager.FileChangeType fileChangeType;
     private ServerConfiguration.Module module;
     private String resourcePath;
+    /** Replay of the Offline Changes this change belongs to **/
+    private OfflineChangeJournal.Replay replay;
 
     public FileChange(VirtualFile file, ServerConnectionManager.FileChangeType fileChangeType) {
         this.file = file;
+        this.path = file.getPath();
         this.fileChangeType = fileChangeType;
     }
 
+    /** Change of a file that does not exist anymore like a file deleted while the server was offline **/
+    public FileChange(String path, ServerConnectionManager.FileChangeType fileChangeType) {
+        this.path = path;
+        this.fileChangeType = fileChangeType;
+    }
+
+    /** @return File of the change or null if the file is gone **/
     public VirtualFile getFile() {
         return file;
     }
 
+    public String getPath() {
+        return path;
+    }
+
     public ServerConnectionManager.FileChangeType getFileChangeType() {
         return fileChangeType;
     }
 
+    public void setFileChangeType(ServerConnectionManager.FileChangeType fileChangeType) {
+        this.fileChangeType = fileChangeType;
+    }
+
     public ServerConfiguration.Module getModule() {
         return module;
     }
@@ -59,6 +79,15 @@ public class FileChange {
         this.resourcePath = resourcePath;
     }
 
+    /** @return Replay of the Offline Changes or null if this change was not recorded while offline **/
+    public OfflineChangeJournal.Replay getReplay() {
+        return replay;
+    }
+
+    public void setReplay(OfflineChangeJournal.Replay replay) {
+        this.replay = replay;
+    }
+
     @Override
     public boolean equals(Object o) {
         if(this == o) {
@@ -70,7 +99,7 @@ public class FileChange {
 
         FileChange fileChange = (FileChange) o;
 
-        if(!file.equals(fileChange.file)) {
+        if(!path.equals(fileChange.path)) {
             return false;
         }
         if(fileChangeType != fileChange.fileChangeType) {
@@ -82,7 +111,7 @@ public class FileChange {
 
     @Override
     public int hashCode() {
-        int result = file.hashCode();
+        int result = path.hashCode();
         result = 31 * result + fileChangeType.hashCode();
         return result;
     }
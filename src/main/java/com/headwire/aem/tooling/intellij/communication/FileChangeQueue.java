@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queue of File Changes that keeps only the net change of each path. A save storm
+ * ends up as a single change and a file that is deleted and created again (safe write)
+ * as a single update.
+ *
+ * The changes are handed out after a quiet period without any new change or when the
+ * oldest change waited for the maximum delay so that a continuous stream of changes
+ * cannot hold back a deployment forever.
+ */
+public class FileChangeQueue {
+
+    /** Pending Changes by the Path of the File in the order of their first change **/
+    private final Map<String, FileChange> pending = new LinkedHashMap<String, FileChange>();
+    private long firstChangeTime;
+    private long lastChangeTime;
+    private long coalescedCount;
+    private boolean stopped;
+
+    /**
+     * Adds a change and merges it with a pending change of the same path
+     *
+     * @param fileChange Change to be added
+     */
+    public synchronized void add(FileChange fileChange) {
+        addAll(Collections.singletonList(fileChange));
+    }
+
+    /**
+     * Adds a batch of changes at once so that the taking thread never sees a partial batch
+     *
+     * @param fileChangeList Changes to be added in their order
+     */
+    public synchronized void addAll(List<FileChange> fileChangeList) {
+        if(fileChangeList.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if(pending.isEmpty()) {
+            firstChangeTime = now;
+        }
+        lastChangeTime = now;
+        for(FileChange fileChange : fileChangeList) {
+            mergeChange(fileChange);
+        }
+        notifyAll();
+    }
+
+    private void mergeChange(FileChange fileChange) {
+        String path = fileChange.getPath();
+        FileChange previous = pending.get(path);
+        if(previous == null) {
+            pending.put(path, fileChange);
+        } else {
+            coalescedCount++;
+            FileChangeType type = merge(previous.getFileChangeType(), fileChange.getFileChangeType());
+            if(type == null) {
+                // Created and deleted again before it was deployed -> nothing to do
+                pending.remove(path);
+            } else {
+                // The newest change carries the current file as a deleted and created again
+                // file is a new Virtual File and the old one is not valid anymore
+                fileChange.setFileChangeType(type);
+                pending.put(path, fileChange);
+            }
+        }
+    }
+
+    /**
+     * Waits for changes and returns them when no change was added for the quiet period or the oldest change
+     * waited for the maximum delay.
+     *
+     * @param quietPeriodInMillis Time without a change before the changes are handed out
+     * @param maximumDelayInMillis Longest time a change is held back
+     * @return The pending changes in the order of their first change. Empty if the queue was stopped
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public synchronized List<FileChange> take(long quietPeriodInMillis, long maximumDelayInMillis) throws InterruptedException {
+        return take(quietPeriodInMillis, maximumDelayInMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Waits for changes like {@link #take(long, long)} but hands out at most the given number of changes. The
+     * remaining changes wait for another Quiet Period so that the batches are spread out.
+     *
+     * @param quietPeriodInMillis Time without a change before the changes are handed out
+     * @param maximumDelayInMillis Longest time a change is held back
+     * @param maximumCount Maximum Number of changes handed out
+     * @return The oldest pending changes in the order of their first change. Empty if the queue was stopped
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public synchronized List<FileChange> take(long quietPeriodInMillis, long maximumDelayInMillis, int maximumCount) throws InterruptedException {
+        while(!stopped && pending.isEmpty()) {
+            wait();
+        }
+        while(!stopped) {
+            long due = Math.min(lastChangeTime + quietPeriodInMillis, firstChangeTime + maximumDelayInMillis);
+            long wait = due - System.currentTimeMillis();
+            if(wait <= 0 || pending.isEmpty()) {
+                break;
+            }
+            wait(wait);
+        }
+        if(stopped || pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if(pending.size() <= maximumCount) {
+            List<FileChange> ret = new ArrayList<FileChange>(pending.values());
+            pending.clear();
+            return ret;
+        }
+        List<FileChange> ret = new ArrayList<FileChange>(maximumCount);
+        Iterator<FileChange> i = pending.values().iterator();
+        while(ret.size() < maximumCount) {
+            ret.add(i.next());
+            i.remove();
+        }
+        // The rest starts over
+        firstChangeTime = lastChangeTime = System.currentTimeMillis();
+        return ret;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /** @return Number of changes that were merged into a pending change **/
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Allows changes to be taken again after a stop **/
+    public synchronized void start() {
+        stopped = false;
+    }
+
+    /** Releases any waiting thread and drops the pending changes **/
+    public synchronized void stop() {
+        stopped = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    /**
+     * @param previous Pending Change Type
+     * @param next New Change Type of the same path
+     * @return Net Change Type or null if the changes cancel each other out
+     */
+    static FileChangeType merge(FileChangeType previous, FileChangeType next) {
+        switch(next) {
+            case CHANGED:
+                // A change of a new file is still a new file
+                return previous == FileChangeType.DELETED ? FileChangeType.CHANGED : previous;
+            case CREATED:
+                // Deleted and created again is an update of the existing resource
+                return previous == FileChangeType.DELETED ? FileChangeType.CHANGED : next;
+            case DELETED:
+                return previous == FileChangeType.CREATED ? null : next;
+            default:
+                return next;
+        }
+    }
+}
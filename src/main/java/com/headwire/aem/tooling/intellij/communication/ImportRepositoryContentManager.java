@@ -120,8 +120,7 @@ public class ImportRepositoryContentManager {
             SerializationKindManager skm;
 
             try {
-                skm = new SerializationKindManager();
-                skm.init(repository);
+                skm = NodeTypeCache.getInstance().getSerializationKindManager(repository);
             } catch(RepositoryException e1) {
                 throw new CoreException("Failed to obtain the Serialization Kind Manager or initialize it", e1);
             }
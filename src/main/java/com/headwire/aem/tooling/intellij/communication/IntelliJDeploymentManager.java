@@ -18,13 +18,11 @@
 
 package com.headwire.aem.tooling.intellij.communication;
 
+import com.headwire.aem.tooling.intellij.action.ProgressHandler;
 import com.headwire.aem.tooling.intellij.config.UnifiedModule;
 import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
 import com.headwire.aem.tooling.intellij.config.ServerConfiguration.Module;
 import com.headwire.aem.tooling.intellij.config.ServerConfigurationManager;
-import com.headwire.aem.tooling.intellij.eclipse.ServerUtil;
-import com.headwire.aem.tooling.intellij.eclipse.stub.IServer;
-import com.headwire.aem.tooling.intellij.eclipse.stub.NullProgressMonitor;
 import com.headwire.aem.tooling.intellij.io.SlingResource4IntelliJ;
 import com.headwire.aem.tooling.intellij.lang.AEMBundle;
 import com.headwire.aem.tooling.intellij.util.ComponentProvider;
@@ -32,6 +30,12 @@ import com.headwire.aem.tooling.intellij.util.Util;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.apache.sling.ide.filter.Filter;
+import org.apache.sling.ide.filter.FilterResult;
+import org.apache.sling.ide.filter.IgnoredResources;
+import org.apache.sling.ide.io.ConnectorException;
 import org.apache.sling.ide.io.NewResourceChangeCommandFactory;
 import org.apache.sling.ide.io.ServiceFactory;
 import org.apache.sling.ide.io.SlingResource;
@@ -39,9 +43,13 @@ import org.apache.sling.ide.serialization.SerializationManager;
 import org.apache.sling.ide.transport.Repository;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.headwire.aem.tooling.intellij.util.Constants.JCR_ROOT_FOLDER_NAME;
 
@@ -52,15 +60,32 @@ public class IntelliJDeploymentManager
     extends AbstractDeploymentManager<Module, Project, VirtualFile>
 {
 
+    private static final Set<String> IGNORED_FILE_NAMES = new HashSet<String>(Arrays.asList(".vlt", ".vltignore"));
+    private static final String VLT_IGNORE_FILE_NAME = ".vltignore";
+    private static final String DIR_FOLDER_EXTENSION = ".dir";
+    private static final String RENDITIONS_FOLDER_NAME = "renditions";
+    private static final String RENDITIONS_ORIGINAL_NAME = "original";
+
     public class IntelliJFileWrapper
         extends FileWrapper
     {
+        private Module module;
+
         public IntelliJFileWrapper(VirtualFile file) {
             super(file);
         }
 
+        /**
+         * @param file Local File
+         * @param module Module of the File which records the Content Hash when it is deployed. Can be null
+         */
+        public IntelliJFileWrapper(VirtualFile file, Module module) {
+            super(file);
+            this.module = module;
+        }
+
         public FileWrapper getParent() {
-            return new IntelliJFileWrapper(getFile().getParent());
+            return new IntelliJFileWrapper(getFile().getParent(), module);
         }
 
         public String getPath() {
@@ -69,6 +94,10 @@ public class IntelliJDeploymentManager
 
         public void setModificationTimestamp() {
             Util.setModificationStamp(getFile());
+            ContentHashIndexManager contentHashIndexManager = getContentHashIndexManager();
+            if(contentHashIndexManager != null) {
+                contentHashIndexManager.markDeployed(module, getFile());
+            }
         }
 
         public long getModificationTimestamp() {
@@ -79,23 +108,137 @@ public class IntelliJDeploymentManager
             return getFile().getTimeStamp();
         }
 
+        public boolean isDeployed() {
+            ContentHashIndexManager contentHashIndexManager = getContentHashIndexManager();
+            return contentHashIndexManager != null ?
+                contentHashIndexManager.isDeployed(module, getFile()) :
+                getModificationTimestamp() > 0;
+        }
+
         @Override
-        public void getChangedResourceList(List<FileWrapper> resourceList) {
+        public void walkChangedResources(boolean force, ChangedResourceVisitor<FileWrapper> visitor) {
             VirtualFile rawResource = getFile();
-            getChangedResourceList(rawResource, resourceList);
+            Filter filter = null;
+            if(module != null) {
+                try {
+                    filter = module.getSlingProject().loadFilter();
+                } catch(ConnectorException e) {
+                    // Without a filter nothing is pruned and the Command Factory reports the issue
+                    ServiceFactory.getPluginLogger().trace("Walk of {0} without Filter: {1}", rawResource, e.getMessage());
+                }
+            }
+            String repositoryPath = "";
+            ContentHashIndexManager contentHashIndexManager = getContentHashIndexManager();
+            if(contentHashIndexManager != null && module != null) {
+                String path = contentHashIndexManager.getRepositoryPath(module, rawResource);
+                if(path != null && !path.equals("/")) {
+                    repositoryPath = PlatformNameFormat.getRepositoryPath(path);
+                }
+            }
+            walkChangedResources(rawResource, repositoryPath, filter, new IgnoredResources(), contentHashIndexManager, force, visitor);
         }
 
-        void getChangedResourceList(VirtualFile resource, List<FileWrapper> resourceList) {
-            if(resource.isDirectory()) {
-                List<VirtualFile> children = Arrays.asList(resource.getChildren());
-                for(VirtualFile child : children) {
-                    getChangedResourceList(child, resourceList);
+        private void walkChangedResources(
+            VirtualFile folder, String repositoryPath, Filter filter, IgnoredResources ignoredResources,
+            ContentHashIndexManager contentHashIndexManager, boolean force, ChangedResourceVisitor<FileWrapper> visitor
+        ) {
+            if(!folder.isDirectory()) {
+                visitFile(folder, contentHashIndexManager, force, visitor);
+                return;
+            }
+            registerIgnoreRules(folder, repositoryPath, ignoredResources);
+            if(Util.getModificationStamp(folder) > 0) {
+                // A deployed folder counts towards the last modification of the module like its files
+                visitor.unchanged(folder.getTimeStamp());
+            }
+            boolean renditions = RENDITIONS_FOLDER_NAME.equals(folder.getName());
+            for(VirtualFile child : folder.getChildren()) {
+                String name = child.getName();
+                if(IGNORED_FILE_NAMES.contains(name)) {
+                    continue;
+                }
+                //AS TODO: Only the originals are deployed as the DAM Workflows create the other renditions
+                if(renditions && !name.startsWith(RENDITIONS_ORIGINAL_NAME)) {
+                    continue;
                 }
+                String childRepositoryPath = repositoryPath + "/" + PlatformNameFormat.getRepositoryName(name);
+                if(ignoredResources.isIgnored(childRepositoryPath)) {
+                    continue;
+                }
+                if(child.isDirectory()) {
+                    // A 'xyz.dir' folder holds the properties of the 'xyz' node
+                    String nodePath = name.endsWith(DIR_FOLDER_EXTENSION) ?
+                        childRepositoryPath.substring(0, childRepositoryPath.length() - DIR_FOLDER_EXTENSION.length()) :
+                        childRepositoryPath;
+                    if(filter != null && filter.filter(nodePath) == FilterResult.DENY) {
+                        continue;
+                    }
+                    walkChangedResources(child, nodePath, filter, ignoredResources, contentHashIndexManager, force, visitor);
+                } else {
+                    visitFile(child, contentHashIndexManager, force, visitor);
+                }
+            }
+        }
+
+        private void visitFile(
+            VirtualFile file, ContentHashIndexManager contentHashIndexManager, boolean force, ChangedResourceVisitor<FileWrapper> visitor
+        ) {
+            boolean modified = force;
+            if(!modified) {
+                modified = contentHashIndexManager != null ?
+                    contentHashIndexManager.isModified(module, file) :
+                    Util.getModificationStamp(file) < file.getTimeStamp();
+            }
+            if(modified) {
+                visitor.changed(new IntelliJFileWrapper(file, module));
             } else {
-                resourceList.add(new IntelliJFileWrapper(resource));
+                visitor.unchanged(file.getTimeStamp());
+            }
+        }
+
+        private void registerIgnoreRules(VirtualFile folder, String repositoryPath, IgnoredResources ignoredResources) {
+            VirtualFile vltIgnore = folder.findChild(VLT_IGNORE_FILE_NAME);
+            if(vltIgnore != null && !vltIgnore.isDirectory()) {
+                InputStream contents = null;
+                try {
+                    contents = vltIgnore.getInputStream();
+                    for(String ignoreLine : IOUtils.readLines(contents)) {
+                        ignoredResources.registerRegExpIgnoreRule(repositoryPath.isEmpty() ? "/" : repositoryPath, ignoreLine);
+                    }
+                } catch(IOException e) {
+                    ServiceFactory.getPluginLogger().trace("Failed to read Ignore File {0}: {1}", vltIgnore, e.getMessage());
+                } finally {
+                    IOUtils.closeQuietly(contents);
+                }
             }
         }
 
+        @Override
+        public byte[] getChildOrderDigest() {
+            return getFile() == null ? null : ContentHashIndexManager.computeChildOrderDigest(getFile());
+        }
+
+        @Override
+        public byte[] getDeployedChildOrderDigest() {
+            ContentHashIndexManager contentHashIndexManager = getContentHashIndexManager();
+            return contentHashIndexManager == null || getFile() == null ?
+                null :
+                contentHashIndexManager.getDeployedChildOrderDigest(module, getFile());
+        }
+
+        @Override
+        public void setDeployedChildOrderDigest(byte[] digest) {
+            ContentHashIndexManager contentHashIndexManager = getContentHashIndexManager();
+            if(contentHashIndexManager != null && getFile() != null) {
+                contentHashIndexManager.setDeployedChildOrderDigest(module, getFile(), digest);
+            }
+        }
+
+        /** @return Content Hash Index Manager if this file has a module otherwise null **/
+        private ContentHashIndexManager getContentHashIndexManager() {
+            return module == null ? null : module.getProject().getComponent(ContentHashIndexManager.class);
+        }
+
         public String toString() {
             return "File Wrapper for: " + getPath();
         }
@@ -104,18 +247,23 @@ public class IntelliJDeploymentManager
     public class IntelliJModuleWrapper
         extends ModuleWrapper
     {
+        private ProgressHandler progressHandler;
+
         public IntelliJModuleWrapper(Module module, Project project) {
             super(module, new ProjectWrapper(project));
         }
 
+        public IntelliJModuleWrapper(Module module, Project project, ProgressHandler progressHandler) {
+            this(module, project);
+            this.progressHandler = progressHandler;
+        }
+
         public String getName() {
             return getModule().getName();
         }
 
         public Repository obtainRepository() {
-            return ServerUtil.getConnectedRepository(
-                new IServer(getModule().getParent()), new NullProgressMonitor(), messageManager
-            );
+            return RepositorySessionPool.obtainRepository(getModule().getProject(), getModule().getParent(), messageManager);
         }
 
         public void updateModuleStatus(SynchronizationStatus synchronizationStatus) {
@@ -165,13 +313,38 @@ public class IntelliJDeploymentManager
         public FileWrapper obtainResourceFile(String resourcePath) {
             Module rawModule = getModule();
             VirtualFile baseFile = rawModule.getProject().getBaseDir();
-            return new IntelliJFileWrapper(baseFile.getFileSystem().findFileByPath(resourcePath));
+            return new IntelliJFileWrapper(baseFile.getFileSystem().findFileByPath(resourcePath), rawModule);
         }
 
         public void setModuleLastModificationTimestamp(long timestamp) {
             Module rawModule = getModule();
             rawModule.setLastModificationTimestamp(timestamp);
         }
+
+        public int getPublishConcurrency() {
+            ServerConfiguration serverConfiguration = getModule().getParent();
+            return serverConfiguration != null ?
+                serverConfiguration.getPublishConcurrency() :
+                ServerConfiguration.DEFAULT_PUBLISH_CONCURRENCY;
+        }
+
+        public int getPublishBatchSize() {
+            ServerConfiguration serverConfiguration = getModule().getParent();
+            return serverConfiguration != null ?
+                serverConfiguration.getPublishBatchSize() :
+                ServerConfiguration.DEFAULT_PUBLISH_BATCH_SIZE;
+        }
+
+        public DeployJournal obtainDeployJournal() {
+            Module rawModule = getModule();
+            DeployJournalManager deployJournalManager = rawModule.getProject().getComponent(DeployJournalManager.class);
+            return deployJournalManager == null ? null : deployJournalManager.getDeployJournal(rawModule);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return progressHandler != null && progressHandler.isMarkedAsCancelled();
+        }
     }
 
     private MessageManager messageManager;
@@ -181,7 +354,8 @@ public class IntelliJDeploymentManager
         super(
             new NewResourceChangeCommandFactory(
                 ComponentProvider.getComponent(project, SerializationManager.class)
-            )
+            ),
+            DeployMetricsManager.getDeployMetrics(project)
         );
         messageManager = ComponentProvider.getComponent(project, MessageManager.class);
         serverConfigurationManager = ComponentProvider.getComponent(project, ServerConfigurationManager.class);
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Tree of Digests of a Content Subtree. A File Node's Digest is based on its size and, if
+ * provided, the digest of its content. A Folder's Digest on the names and digests of its children. Two trees are compared
+ * from the top and only subtrees with a different digest are walked.
+ */
+public class MerkleTree {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+
+    public enum DifferenceType {
+        /** Node only exists locally **/
+        localOnly,
+        /** Node only exists on the Server **/
+        remoteOnly,
+        /** Node exists on both sides but with a different content **/
+        changed
+    }
+
+    public static class Difference {
+        private final String path;
+        private final DifferenceType type;
+
+        public Difference(String path, DifferenceType type) {
+            this.path = path;
+            this.type = type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public DifferenceType getType() {
+            return type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) { return true; }
+            if(!(o instanceof Difference)) { return false; }
+            Difference that = (Difference) o;
+            return path.equals(that.path) && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + type.hashCode();
+        }
+
+        public String toString() {
+            return type + ": " + path;
+        }
+    }
+
+    public static class Node {
+        private final String name;
+        private final boolean file;
+        private final long size;
+        private final byte[] contentDigest;
+        private final Map<String, Node> children;
+        private byte[] digest;
+
+        private Node(String name, boolean file, long size, byte[] contentDigest) {
+            this.name = name;
+            this.file = file;
+            this.size = size;
+            this.contentDigest = contentDigest;
+            this.children = file ? Collections.<String, Node>emptyMap() : new TreeMap<String, Node>();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Collection<Node> getChildren() {
+            return children.values();
+        }
+
+        public Node getChild(String name) {
+            return children.get(name);
+        }
+
+        /** Adds or returns an existing Folder Child **/
+        public Node addFolder(String name) {
+            Node ret = children.get(name);
+            if(ret == null || ret.file) {
+                ret = new Node(name, false, -1, null);
+                children.put(name, ret);
+            }
+            return ret;
+        }
+
+        public Node addFile(String name, long size) {
+            return addFile(name, size, null);
+        }
+
+        /**
+         * @param name Name of the File
+         * @param size Size of the File
+         * @param contentDigest Digest of the File's Content or null if only the size is compared
+         * @return The added File Node
+         */
+        public Node addFile(String name, long size, byte[] contentDigest) {
+            Node ret = new Node(name, true, size, contentDigest);
+            children.put(name, ret);
+            return ret;
+        }
+
+        public byte[] getDigest() {
+            if(digest == null) {
+                MessageDigest messageDigest = createDigest();
+                if(file) {
+                    messageDigest.update((byte) 'F');
+                    messageDigest.update(Long.toString(size).getBytes(UTF_8));
+                    if(contentDigest != null) {
+                        messageDigest.update(contentDigest);
+                    }
+                } else {
+                    messageDigest.update((byte) 'D');
+                    for(Node child : children.values()) {
+                        messageDigest.update(child.name.getBytes(UTF_8));
+                        messageDigest.update((byte) 0);
+                        messageDigest.update(child.getDigest());
+                    }
+                }
+                digest = messageDigest.digest();
+            }
+            return digest;
+        }
+    }
+
+    private final String rootPath;
+    private Node root;
+
+    /**
+     * @param rootPath Repository Path of the Root of this Tree
+     */
+    public MerkleTree(String rootPath) {
+        this.rootPath = rootPath;
+    }
+
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    /** @return Root Node or null if the Root does not exist **/
+    public Node getRoot() {
+        return root;
+    }
+
+    public Node createFolderRoot() {
+        root = new Node(getName(rootPath), false, -1, null);
+        return root;
+    }
+
+    public Node createFileRoot(long size) {
+        return createFileRoot(size, null);
+    }
+
+    public Node createFileRoot(long size, byte[] contentDigest) {
+        root = new Node(getName(rootPath), true, size, contentDigest);
+        return root;
+    }
+
+    /**
+     * @param input Content to digest which is closed afterwards
+     * @return Digest of the Content to be used as Content Digest of a File
+     * @throws IOException If the Content could not be read
+     */
+    public static byte[] digest(InputStream input) throws IOException {
+        try {
+            MessageDigest messageDigest = createDigest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while((length = input.read(buffer)) >= 0) {
+                messageDigest.update(buffer, 0, length);
+            }
+            return messageDigest.digest();
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Compares the two trees of the same root and only descends into subtrees whose digests differ
+     *
+     * @param local Tree of the local Content
+     * @param remote Tree of the Server Content
+     * @return List of Differences which is empty if the trees are the same
+     */
+    public static List<Difference> diff(MerkleTree local, MerkleTree remote) {
+        if(!local.rootPath.equals(remote.rootPath)) {
+            throw new IllegalArgumentException("Cannot compare trees of different roots: " + local.rootPath + " and " + remote.rootPath);
+        }
+        List<Difference> ret = new ArrayList<Difference>();
+        diff(local.root, remote.root, local.rootPath, ret);
+        return ret;
+    }
+
+    private static void diff(Node local, Node remote, String path, List<Difference> differences) {
+        if(local == null && remote == null) {
+            return;
+        } else if(remote == null) {
+            differences.add(new Difference(path, DifferenceType.localOnly));
+        } else if(local == null) {
+            differences.add(new Difference(path, DifferenceType.remoteOnly));
+        } else if(!Arrays.equals(local.getDigest(), remote.getDigest())) {
+            if(local.file || remote.file) {
+                differences.add(new Difference(path, DifferenceType.changed));
+            } else {
+                TreeSet<String> names = new TreeSet<String>(local.children.keySet());
+                names.addAll(remote.children.keySet());
+                String prefix = path.endsWith("/") ? path : path + "/";
+                for(String name : names) {
+                    diff(local.children.get(name), remote.children.get(name), prefix + name, differences);
+                }
+            }
+        }
+    }
+
+    private static String getName(String path) {
+        int index = path.lastIndexOf('/');
+        return index >= 0 ? path.substring(index + 1) : path;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds the Merkle Trees of a Filter Root from the local jcr_root folder and from the Server.
+ *
+ * The comparison has these limits:
+ * - Only nodes that are represented by their own file or folder are part of the tree. Nodes
+ *   serialized inside a .content.xml or a DocView XML file are ignored on both sides as their
+ *   digest cannot be obtained from the Server without reading all their properties. Changed
+ *   properties are therefore not found.
+ * - A file is compared by its size. Only if both sides have the same size and the file is not larger
+ *   than {@link #MAX_CONTENT_DIGEST_SIZE} its content is downloaded and compared, too.
+ * - The Server is only walked where the local content has a folder. A folder that only exists on
+ *   the Server is reported as a whole without reading its children.
+ */
+public class MerkleTreeBuilder {
+
+    private static final Set<String> IGNORED_FILE_NAMES = new HashSet<String>(
+        Arrays.asList(".vlt", ".vltignore", ".content.xml", ".DS_Store", "Thumbs.db")
+    );
+    /** Node Types on the Server that are represented by a folder even if there is none locally **/
+    private static final Set<String> FOLDER_NODE_TYPES = new HashSet<String>(
+        Arrays.asList("nt:folder", "sling:Folder", "sling:OrderedFolder")
+    );
+    private static final String DIR_FOLDER_EXTENSION = ".dir";
+    private static final String DOC_VIEW_ROOT = "<jcr:root";
+    private static final int DOC_VIEW_CHECK_LENGTH = 1024;
+    /** Files up to that size are compared by their content and not only by their size **/
+    public static final long MAX_CONTENT_DIGEST_SIZE = 256 * 1024;
+
+    private MerkleTreeBuilder() {}
+
+    /**
+     * @param jcrRoot Local jcr_root folder
+     * @param filter Workspace Filter of the Module
+     * @param rootPath Repository Path of a Filter Root
+     * @return Merkle Tree of the local Content of the given root
+     * @throws IOException If a file could not be read
+     */
+    public static MerkleTree buildLocalTree(File jcrRoot, WorkspaceFilter filter, String rootPath) throws IOException {
+        MerkleTree ret = new MerkleTree(rootPath);
+        File root = new File(jcrRoot, PlatformNameFormat.getPlatformPath(rootPath));
+        if(root.isDirectory()) {
+            addLocalChildren(ret.createFolderRoot(), root, rootPath, filter);
+        } else if(root.isFile()) {
+            ret.createFileRoot(root.length(), getContentDigest(root));
+        }
+        return ret;
+    }
+
+    private static void addLocalChildren(MerkleTree.Node node, File folder, String path, WorkspaceFilter filter) throws IOException {
+        File[] children = folder.listFiles();
+        if(children == null) {
+            return;
+        }
+        for(File child : children) {
+            String name = child.getName();
+            if(IGNORED_FILE_NAMES.contains(name)) {
+                continue;
+            }
+            if(child.isDirectory() && name.endsWith(DIR_FOLDER_EXTENSION)) {
+                // A 'xyz.dir' folder only carries the properties of the 'xyz' file
+                File file = new File(folder, name.substring(0, name.length() - DIR_FOLDER_EXTENSION.length()));
+                if(file.isFile()) {
+                    continue;
+                }
+            }
+            if(child.isFile() && isDocView(child)) {
+                continue;
+            }
+            String repositoryName = PlatformNameFormat.getRepositoryName(name);
+            String childPath = path + "/" + repositoryName;
+            if(!isIncluded(filter, childPath)) {
+                continue;
+            }
+            if(child.isDirectory()) {
+                addLocalChildren(node.addFolder(repositoryName), child, childPath, filter);
+            } else {
+                node.addFile(repositoryName, child.length(), getContentDigest(child));
+            }
+        }
+    }
+
+    /**
+     * Builds the tree of the Server. Besides files and folders any node is included that exists as folder
+     * locally so that both trees have the same shape if they are in sync. Folders that do not exist locally
+     * are added without their children as they are different anyhow.
+     *
+     * @param session JCR Session
+     * @param filter Workspace Filter of the Module
+     * @param rootPath Repository Path of a Filter Root
+     * @param localTree Tree of the local Content of the same root
+     * @return Merkle Tree of the Server Content of the given root
+     * @throws RepositoryException If the Server content could not be read
+     * @throws IOException If the content of a Server file could not be read
+     */
+    public static MerkleTree buildRemoteTree(Session session, WorkspaceFilter filter, String rootPath, MerkleTree localTree)
+        throws RepositoryException, IOException
+    {
+        MerkleTree ret = new MerkleTree(rootPath);
+        if(session.nodeExists(rootPath)) {
+            Node root = session.getNode(rootPath);
+            if(root.isNodeType("nt:file")) {
+                ret.createFileRoot(getFileSize(root), getContentDigest(root, localTree.getRoot()));
+            } else {
+                addRemoteChildren(ret.createFolderRoot(), root, localTree.getRoot(), filter);
+            }
+        }
+        return ret;
+    }
+
+    private static void addRemoteChildren(MerkleTree.Node node, Node parent, MerkleTree.Node localNode, WorkspaceFilter filter)
+        throws RepositoryException, IOException
+    {
+        NodeIterator i = parent.getNodes();
+        while(i.hasNext()) {
+            Node child = i.nextNode();
+            String name = child.getName();
+            if(!isIncluded(filter, child.getPath())) {
+                continue;
+            }
+            MerkleTree.Node localChild = localNode == null || localNode.isFile() ? null : localNode.getChild(name);
+            if(child.isNodeType("nt:file")) {
+                node.addFile(name, getFileSize(child), getContentDigest(child, localChild));
+            } else if(localChild != null && !localChild.isFile()) {
+                addRemoteChildren(node.addFolder(name), child, localChild, filter);
+            } else if(FOLDER_NODE_TYPES.contains(child.getPrimaryNodeType().getName())) {
+                // Only on the Server so there is no need to read its children
+                node.addFolder(name);
+            }
+        }
+    }
+
+    private static long getFileSize(Node file) throws RepositoryException {
+        long ret = -1;
+        if(file.hasNode("jcr:content")) {
+            Node content = file.getNode("jcr:content");
+            if(content.hasProperty("jcr:data")) {
+                // The length is provided without downloading the binary
+                ret = content.getProperty("jcr:data").getLength();
+            }
+        }
+        return ret;
+    }
+
+    /** @return Digest of the local File's content or null if it is too large to be compared by its content **/
+    private static byte[] getContentDigest(File file) throws IOException {
+        return file.length() <= MAX_CONTENT_DIGEST_SIZE ? MerkleTree.digest(new FileInputStream(file)) : null;
+    }
+
+    /**
+     * The content of a file on the Server is only downloaded if the local file has the same size as otherwise
+     * they are different anyhow.
+     *
+     * @return Digest of the Server File's content or null if it is not compared by its content
+     */
+    private static byte[] getContentDigest(Node file, MerkleTree.Node localFile) throws RepositoryException, IOException {
+        byte[] ret = null;
+        long size = getFileSize(file);
+        if(localFile != null && localFile.isFile() && localFile.getSize() == size && size >= 0 && size <= MAX_CONTENT_DIGEST_SIZE) {
+            Binary binary = file.getNode("jcr:content").getProperty("jcr:data").getBinary();
+            try {
+                ret = MerkleTree.digest(binary.getStream());
+            } finally {
+                binary.dispose();
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isIncluded(WorkspaceFilter filter, String path) {
+        return filter == null || filter.contains(path) || filter.isAncestor(path);
+    }
+
+    /** @return True if the file is a DocView XML file that serializes a node with its children **/
+    static boolean isDocView(File file) throws IOException {
+        if(!file.getName().endsWith(".xml")) {
+            return false;
+        }
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] data = new byte[DOC_VIEW_CHECK_LENGTH];
+            int length = IOUtils.read(input, data);
+            return new String(data, 0, length, "UTF-8").contains(DOC_VIEW_ROOT);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+}
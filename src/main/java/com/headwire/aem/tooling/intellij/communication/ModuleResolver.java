@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration.Module;
+import com.headwire.aem.tooling.intellij.config.UnifiedModule;
+import com.headwire.aem.tooling.intellij.util.PathTrie;
+import com.headwire.aem.tooling.intellij.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.headwire.aem.tooling.intellij.util.Constants.JCR_ROOT_FOLDER_NAME;
+
+/**
+ * Resolves a File Path to the Module it belongs to and the role the enclosing folder plays
+ * in that Module. The roots of all Modules are kept in a Path Trie so that a lookup only
+ * depends on the length of the path.
+ *
+ * A resolver is only valid for the module bindings it was created with.
+ */
+public class ModuleResolver {
+
+    public enum Role {
+        /** Content Folder (jcr_root) of a Content Package **/
+        content,
+        /** META-INF Folder of a Content Package **/
+        metaInf,
+        /** Build Directory of an OSGi Bundle **/
+        build
+    }
+
+    /** Module and Role of a resolved Path **/
+    public static class Resolution {
+        private final Module module;
+        private final Role role;
+        private final String rootPath;
+
+        private Resolution(Module module, Role role, String rootPath) {
+            this.module = module;
+            this.role = role;
+            this.rootPath = rootPath;
+        }
+
+        public Module getModule() {
+            return module;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+
+        /** @return Root Folder of the Module the path is in as provided by the Module **/
+        public String getRootPath() {
+            return rootPath;
+        }
+    }
+
+    private final List<Module> modules;
+    private final List<UnifiedModule> bindings;
+    private final PathTrie<Resolution> trie = new PathTrie<Resolution>();
+
+    public ModuleResolver(List<Module> moduleList) {
+        modules = new ArrayList<Module>(moduleList);
+        bindings = getBindings(moduleList);
+        for(Module module : modules) {
+            UnifiedModule unifiedModule = module.getUnifiedModule();
+            if(unifiedModule == null) {
+                continue;
+            }
+            if(module.isSlingPackage()) {
+                for(String basePath : unifiedModule.getContentDirectoryPaths()) {
+                    if(basePath != null && Util.pathEndsWithFolder(basePath, JCR_ROOT_FOLDER_NAME)) {
+                        add(basePath, new Resolution(module, Role.content, basePath));
+                    }
+                }
+                String metaInfPath = unifiedModule.getMetaInfPath();
+                if(metaInfPath != null) {
+                    add(metaInfPath, new Resolution(module, Role.metaInf, metaInfPath));
+                }
+            } else if(module.isOSGiBundle()) {
+                String buildDirectoryPath = unifiedModule.getBuildDirectoryPath();
+                if(buildDirectoryPath != null) {
+                    add(buildDirectoryPath, new Resolution(module, Role.build, buildDirectoryPath));
+                }
+            }
+        }
+    }
+
+    private void add(String path, Resolution resolution) {
+        // If two Modules share a root the first one wins
+        trie.put(path, resolution);
+    }
+
+    /**
+     * @param filePath Path of a File
+     * @return Resolution of the innermost Module Root containing the file or null if it does not belong to a Module
+     */
+    public Resolution resolve(String filePath) {
+        PathTrie.Entry<Resolution> entry = trie.find(filePath);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * @param moduleList Current List of Modules
+     * @return True if the modules and their bindings are the same as when this resolver was created
+     */
+    public boolean isValidFor(List<Module> moduleList) {
+        if(moduleList.size() != modules.size()) {
+            return false;
+        }
+        for(int i = 0; i < modules.size(); i++) {
+            Module module = moduleList.get(i);
+            if(module != modules.get(i) || module.getUnifiedModule() != bindings.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<UnifiedModule> getBindings(List<Module> moduleList) {
+        List<UnifiedModule> ret = new ArrayList<UnifiedModule>(moduleList.size());
+        for(Module module : moduleList) {
+            ret.add(module.getUnifiedModule());
+        }
+        return ret;
+    }
+}
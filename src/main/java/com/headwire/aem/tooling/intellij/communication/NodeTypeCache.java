@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.serialization.SerializationKindManager;
+import org.apache.sling.ide.transport.Repository;
+import org.apache.sling.ide.transport.RepositoryException;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the Serialization Kind Manager of a Repository. Its initialization walks the entire
+ * Node Type Registry of the Server which is too expensive to be done for each resource.
+ *
+ * An entry expires after a while so that new Node Types on the Server are picked up and it
+ * is dropped when the Repository is connected again. The Node Types of a Repository are only
+ * loaded by one caller at a time and any concurrent caller waits for that load.
+ */
+public class NodeTypeCache {
+
+    /** Time after which the Node Types are loaded again **/
+    public static final long DEFAULT_TIME_TO_LIVE_IN_MILLIS = 10 * 60 * 1000;
+
+    private static final NodeTypeCache INSTANCE = new NodeTypeCache(DEFAULT_TIME_TO_LIVE_IN_MILLIS);
+
+    private static class Entry {
+        private final FutureTask<SerializationKindManager> serializationKindManager;
+        private final long loaded;
+
+        private Entry(FutureTask<SerializationKindManager> serializationKindManager, long loaded) {
+            this.serializationKindManager = serializationKindManager;
+            this.loaded = loaded;
+        }
+    }
+
+    private final long timeToLiveInMillis;
+    /** Entries by Repository which do not keep a Repository alive that is not used anymore **/
+    private final Map<Repository, Entry> entries = new WeakHashMap<Repository, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    NodeTypeCache(long timeToLiveInMillis) {
+        this.timeToLiveInMillis = timeToLiveInMillis;
+    }
+
+    /** @return Cache shared by the Deployment and the Import of all Projects of the IDE **/
+    public static NodeTypeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param repository Repository to obtain the Node Types from
+     * @return Initialized Serialization Kind Manager of the Repository
+     * @throws RepositoryException If the Node Types could not be obtained
+     */
+    public SerializationKindManager getSerializationKindManager(final Repository repository) throws RepositoryException {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean load = false;
+        synchronized(entries) {
+            entry = entries.get(repository);
+            if(entry != null && (!entry.serializationKindManager.isDone() || now - entry.loaded < timeToLiveInMillis)) {
+                // Loaded or being loaded by another caller which we wait for
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                entry = new Entry(
+                    new FutureTask<SerializationKindManager>(
+                        new Callable<SerializationKindManager>() {
+                            @Override
+                            public SerializationKindManager call() throws Exception {
+                                SerializationKindManager ret = new SerializationKindManager();
+                                ret.init(repository);
+                                return ret;
+                            }
+                        }
+                    ),
+                    now
+                );
+                entries.put(repository, entry);
+                load = true;
+            }
+        }
+        if(load) {
+            // Loaded outside of the lock so that other Repositories do not wait
+            entry.serializationKindManager.run();
+        }
+        try {
+            return entry.serializationKindManager.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for the Node Types", e);
+        } catch(ExecutionException e) {
+            // A failed load is not kept so that the next caller tries again
+            synchronized(entries) {
+                if(entries.get(repository) == entry) {
+                    entries.remove(repository);
+                }
+            }
+            Throwable cause = e.getCause();
+            if(cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+    }
+
+    /** Drops the Node Types of the given Repository like after a reconnect **/
+    public void invalidate(Repository repository) {
+        synchronized(entries) {
+            entries.remove(repository);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of the File Changes made while the Server of a Configuration was not connected.
+ * Each change is appended as a line with its type and path. When the journal grows past a
+ * threshold it is compacted to the net change of each path. When the Server is connected again
+ * the net changes are replayed.
+ *
+ * The replayed changes stay in the journal until all of them were handled. Then they are removed
+ * and the ones that failed are written back so that they are replayed with the next connection.
+ * Changes recorded during a replay are kept as they are.
+ */
+public class OfflineChangeJournal {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Size of the journal after which it is compacted **/
+    public static final long DEFAULT_COMPACTION_SIZE_IN_BYTES = 256 * 1024;
+
+    /**
+     * Replay of the changes recorded up to its start. Each replayed change must be reported as
+     * completed and when the last one is the replayed part is removed from the journal.
+     */
+    public class Replay {
+        private final long length;
+        private final Map<String, FileChangeType> changes;
+        private final List<FileChange> failed = new ArrayList<FileChange>();
+        private int remaining;
+        private boolean abandoned;
+
+        private Replay(long length, Map<String, FileChangeType> changes) {
+            this.length = length;
+            this.changes = changes;
+        }
+
+        /** @return Net Change Type by Path in the order of their first change **/
+        public Map<String, FileChangeType> getChanges() {
+            return changes;
+        }
+
+        /**
+         * Starts the replay of the given number of changes. If there are none the replay is finished right away.
+         *
+         * @param count Number of changes that are replayed and are going to be reported
+         */
+        public void start(int count) throws IOException {
+            boolean finished;
+            synchronized(this) {
+                remaining = count;
+                finished = count == 0;
+            }
+            if(finished) {
+                finishReplay(this);
+            }
+        }
+
+        /**
+         * Reports a handled change of this replay
+         *
+         * @param fileChange Replayed Change
+         * @param success False if the change could not be published and must be replayed again
+         */
+        public void completed(FileChange fileChange, boolean success) throws IOException {
+            boolean finished;
+            synchronized(this) {
+                if(!success) {
+                    failed.add(fileChange);
+                }
+                finished = --remaining == 0;
+            }
+            if(finished) {
+                finishReplay(this);
+            }
+        }
+    }
+
+    private final File file;
+    private final long compactionSizeInBytes;
+    /** Size of the journal after the last compaction **/
+    private long compactedLength;
+    private Replay activeReplay;
+
+    public OfflineChangeJournal(File file) {
+        this(file, DEFAULT_COMPACTION_SIZE_IN_BYTES);
+    }
+
+    /**
+     * @param file Journal File which does not need to exist
+     * @param compactionSizeInBytes Size of the journal after which it is compacted
+     */
+    public OfflineChangeJournal(File file, long compactionSizeInBytes) {
+        this.file = file;
+        this.compactionSizeInBytes = compactionSizeInBytes;
+    }
+
+    /**
+     * Appends the given changes to the journal on the disk
+     *
+     * @param fileChangeList Changes in the order they happened
+     * @throws IOException If the journal could not be written
+     */
+    public synchronized void append(List<FileChange> fileChangeList) throws IOException {
+        if(fileChangeList.isEmpty()) {
+            return;
+        }
+        File folder = file.getParentFile();
+        if(folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create Journal Folder: " + folder);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+        try {
+            for(FileChange fileChange : fileChangeList) {
+                write(writer, fileChange.getFileChangeType(), fileChange.getPath());
+            }
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        // Compact again only once the journal doubled so that a large net change is not rewritten each time
+        if(file.length() > Math.max(compactionSizeInBytes, 2 * compactedLength)) {
+            compact();
+        }
+    }
+
+    /** Rewrites the journal with the net change of each path **/
+    synchronized void compact() throws IOException {
+        if(activeReplay != null) {
+            // The replay relies on the journal as it was -> it is replayed again with the next connection
+            activeReplay.abandoned = true;
+            activeReplay = null;
+        }
+        Map<String, FileChangeType> changes = load();
+        File compacted = new File(file.getPath() + ".compacted");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(compacted), UTF_8);
+        try {
+            for(Map.Entry<String, FileChangeType> entry : changes.entrySet()) {
+                write(writer, entry.getValue(), entry.getKey());
+            }
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        replaceFile(compacted);
+        compactedLength = file.length();
+    }
+
+    /**
+     * Reads the journal and merges the changes of each path into its net change
+     *
+     * @return Net Change Type by Path in the order of their first change. Paths whose changes cancel each other out are left out
+     * @throws IOException If the journal could not be read
+     */
+    public synchronized Map<String, FileChangeType> load() throws IOException {
+        Map<String, FileChangeType> ret = new LinkedHashMap<String, FileChangeType>();
+        if(!file.isFile()) {
+            return ret;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                int index = line.indexOf(' ');
+                if(index <= 0) {
+                    // A partial last line of a crash is ignored
+                    continue;
+                }
+                FileChangeType type;
+                try {
+                    type = FileChangeType.valueOf(line.substring(0, index));
+                } catch(IllegalArgumentException e) {
+                    continue;
+                }
+                String path = line.substring(index + 1);
+                FileChangeType previous = ret.get(path);
+                FileChangeType merged = previous == null ? type : FileChangeQueue.merge(previous, type);
+                if(merged == null) {
+                    ret.remove(path);
+                } else {
+                    ret.put(path, merged);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return ret;
+    }
+
+    /** @return True if there are recorded changes **/
+    public synchronized boolean hasChanges() {
+        return file.isFile() && file.length() > 0;
+    }
+
+    /**
+     * Starts a replay of the recorded changes. A replay that is still active is abandoned and its changes
+     * are part of this one.
+     *
+     * @return Replay of the net changes recorded so far
+     * @throws IOException If the journal could not be read
+     */
+    public synchronized Replay startReplay() throws IOException {
+        if(activeReplay != null) {
+            activeReplay.abandoned = true;
+        }
+        long length = file.isFile() ? file.length() : 0;
+        activeReplay = new Replay(length, load());
+        return activeReplay;
+    }
+
+    /** Removes the replayed part of the journal and writes back the failed changes in front of the ones recorded since **/
+    private synchronized void finishReplay(Replay replay) throws IOException {
+        if(replay.abandoned || replay != activeReplay) {
+            return;
+        }
+        activeReplay = null;
+        File remaining = new File(file.getPath() + ".remaining");
+        OutputStream output = new FileOutputStream(remaining);
+        try {
+            Writer writer = new OutputStreamWriter(output, UTF_8);
+            for(FileChange fileChange : replay.failed) {
+                write(writer, fileChange.getFileChangeType(), fileChange.getPath());
+            }
+            writer.flush();
+            if(file.isFile()) {
+                InputStream input = new FileInputStream(file);
+                try {
+                    IOUtils.skipFully(input, Math.min(replay.length, file.length()));
+                    IOUtils.copy(input, output);
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+        if(remaining.length() == 0) {
+            clear();
+            if(!remaining.delete()) {
+                remaining.deleteOnExit();
+            }
+        } else {
+            replaceFile(remaining);
+        }
+    }
+
+    /** Removes all recorded changes **/
+    public synchronized void clear() {
+        if(file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+        compactedLength = 0;
+    }
+
+    private void replaceFile(File replacement) throws IOException {
+        if(file.exists() && !file.delete()) {
+            throw new IOException("Could not replace Journal: " + file);
+        }
+        if(!replacement.renameTo(file)) {
+            throw new IOException("Could not rename " + replacement + " to Journal: " + file);
+        }
+    }
+
+    private static void write(Writer writer, FileChangeType type, String path) throws IOException {
+        writer.write(type.name());
+        writer.write(' ');
+        writer.write(path);
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.io.ConnectorException;
+import org.apache.sling.ide.serialization.SerializationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes Publish Jobs on a bounded pool of Workers while honoring the
+ * Parent / Child relationship of the Paths they are registered with.
+ *
+ * A Job is only started after the Jobs of the nearest registered Ancestors of
+ * its Paths have finished successfully. Jobs in unrelated Subtrees are executed
+ * concurrently. Jobs registered with the same Path (a 'xyz.dir' folder is treated
+ * like 'xyz') are executed in the order they were added.
+ *
+ * The first failure stops the scheduling of any further Jobs and is rethrown
+ * on the calling Thread once all running Jobs are finished.
+ */
+public class PublishScheduler {
+
+    /** A unit of work handled by the Scheduler **/
+    public interface Job {
+        void execute() throws ConnectorException, SerializationException, IOException;
+    }
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final String name;
+    private final int concurrency;
+    private final List<Node> nodeList = new ArrayList<Node>();
+    private final Map<String, Node> lastNodeByPath = new HashMap<String, Node>();
+
+    private final Object lock = new Object();
+    private int running;
+    private int completed;
+    private Throwable failure;
+
+    public PublishScheduler(String name, int concurrency) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Adds a Job that depends on the Job of its nearest registered Ancestor.
+     * Ancestors must be added before their Descendants.
+     *
+     * @param path File Path of the Resource the Job is publishing. Separator must be '/'
+     * @param job Job to be executed
+     */
+    public void add(String path, Job job) {
+        add(Collections.singletonList(path), job);
+    }
+
+    /**
+     * Adds a Job that publishes multiple Resources. It depends on the Jobs of
+     * the nearest registered Ancestors of all the given Paths.
+     * Ancestors must be added before their Descendants.
+     *
+     * @param pathList File Paths of the Resources the Job is publishing. Separator must be '/'
+     * @param job Job to be executed
+     */
+    public void add(Collection<String> pathList, Job job) {
+        Node node = new Node(job);
+        Set<Node> parents = new LinkedHashSet<Node>();
+        List<String> keyList = new ArrayList<String>(pathList.size());
+        for(String path : pathList) {
+            String key = normalize(path);
+            keyList.add(key);
+            Node parent = findNode(key);
+            if(parent != null) {
+                parents.add(parent);
+            }
+        }
+        for(Node parent : parents) {
+            parent.childList.add(node);
+        }
+        node.pending = parents.size();
+        for(String key : keyList) {
+            lastNodeByPath.put(key, node);
+        }
+        nodeList.add(node);
+    }
+
+    /**
+     * Adds a Job that does not depend on any other Job
+     *
+     * @param job Job to be executed
+     */
+    public void addIndependent(Job job) {
+        nodeList.add(new Node(job));
+    }
+
+    public int size() {
+        return nodeList.size();
+    }
+
+    /**
+     * Executes all registered Jobs and waits until they are done
+     *
+     * @throws ConnectorException If a Job failed with it or the calling Thread was interrupted
+     * @throws SerializationException If a Job failed with it
+     * @throws IOException If a Job failed with it
+     */
+    public void execute() throws ConnectorException, SerializationException, IOException {
+        if(nodeList.isEmpty()) {
+            return;
+        }
+        if(concurrency == 1) {
+            // No need for Workers -> run it on the calling thread in registration order which is parent first
+            for(Node node : nodeList) {
+                node.job.execute();
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(concurrency, nodeList.size()),
+            new WorkerThreadFactory(name)
+        );
+        try {
+            synchronized(lock) {
+                for(Node node : nodeList) {
+                    if(node.pending == 0) {
+                        submit(executor, node);
+                    }
+                }
+                // Wait until all are done or after a failure until the running Jobs are finished
+                while(completed < nodeList.size() && (failure == null || running > 0)) {
+                    lock.wait();
+                }
+            }
+        } catch(InterruptedException e) {
+            synchronized(lock) {
+                if(failure == null) {
+                    failure = new ConnectorException("Publish was interrupted", e);
+                }
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        Throwable error;
+        synchronized(lock) {
+            error = failure;
+        }
+        if(error instanceof ConnectorException) {
+            throw (ConnectorException) error;
+        } else if(error instanceof SerializationException) {
+            throw (SerializationException) error;
+        } else if(error instanceof IOException) {
+            throw (IOException) error;
+        } else if(error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if(error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    /** Must be called while holding the lock **/
+    private void submit(final ExecutorService executor, final Node node) {
+        running++;
+        try {
+            executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        Throwable error = null;
+                        try {
+                            node.job.execute();
+                        } catch(Throwable t) {
+                            error = t;
+                        }
+                        synchronized(lock) {
+                            running--;
+                            completed++;
+                            if(error != null && failure == null) {
+                                failure = error;
+                            }
+                            if(failure == null) {
+                                for(Node child : node.childList) {
+                                    if(--child.pending == 0) {
+                                        submit(executor, child);
+                                    }
+                                }
+                            }
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            );
+        } catch(RejectedExecutionException e) {
+            // Executor was shut down because the calling thread gave up
+            running--;
+            lock.notifyAll();
+        }
+    }
+
+    private Node findNode(String key) {
+        Node ret = lastNodeByPath.get(key);
+        String ancestor = key;
+        int index;
+        while(ret == null && (index = ancestor.lastIndexOf('/')) > 0) {
+            ancestor = ancestor.substring(0, index);
+            ret = lastNodeByPath.get(ancestor);
+        }
+        return ret;
+    }
+
+    static String normalize(String path) {
+        if(path == null) {
+            return null;
+        }
+        String ret = path.replace('\\', '/');
+        if(ret.endsWith("/") && ret.length() > 1) {
+            ret = ret.substring(0, ret.length() - 1);
+        }
+        // A 'xyz.dir' folder carries the properties of the 'xyz' node and so it is treated as the same path
+        return ret.replaceAll("([^/])\\.dir(?=/|$)", "$1");
+    }
+
+    private static class Node {
+        private final Job job;
+        private final List<Node> childList = new ArrayList<Node>();
+        /** Number of Jobs that need to finish before this one can start **/
+        private int pending;
+
+        private Node(Job job) {
+            this.job = job;
+        }
+    }
+
+    private static class WorkerThreadFactory
+        implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private WorkerThreadFactory(String name) {
+            prefix = "AEM Publish Worker (" + name + ")-" + POOL_COUNTER.incrementAndGet() + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread ret = new Thread(runnable, prefix + counter.incrementAndGet());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.transport.Repository;
+import org.apache.sling.ide.transport.RepositoryInfo;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the paths of the resources that are known to exist on a Repository because
+ * we published them. It outlives a single publish so that the parents of a changed
+ * file are not sent again with every save.
+ *
+ * The paths of a Repository are dropped when we delete them or when the connection
+ * is established again as the Server could have been changed in the meantime.
+ */
+public class RemotePathCache {
+
+    private final ConcurrentMap<String, Set<String>> knownPaths = new ConcurrentHashMap<String, Set<String>>();
+
+    /** @return True if the resource of the given path was published to the Repository before **/
+    public boolean isKnown(Repository repository, String path) {
+        Set<String> paths = knownPaths.get(getRepositoryKey(repository));
+        return paths != null && paths.contains(path);
+    }
+
+    /** Records that the resource of the given path exists on the Repository **/
+    public void markKnown(Repository repository, String path) {
+        String key = getRepositoryKey(repository);
+        Set<String> paths = knownPaths.get(key);
+        if(paths == null) {
+            Set<String> newPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            paths = knownPaths.putIfAbsent(key, newPaths);
+            if(paths == null) {
+                paths = newPaths;
+            }
+        }
+        paths.add(path);
+    }
+
+    /** Drops the given path only as it is not certain anymore that it exists on the Repository **/
+    public void forget(Repository repository, String path) {
+        Set<String> paths = knownPaths.get(getRepositoryKey(repository));
+        if(paths != null) {
+            paths.remove(path);
+        }
+    }
+
+    /** Drops the given path and all its descendants as they are going to be removed from the Repository **/
+    public void invalidate(Repository repository, String path) {
+        Set<String> paths = knownPaths.get(getRepositoryKey(repository));
+        if(paths != null) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            Iterator<String> i = paths.iterator();
+            while(i.hasNext()) {
+                String knownPath = i.next();
+                if(knownPath.equals(path) || knownPath.startsWith(prefix)) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /** Drops all paths of the given Repository **/
+    public void clear(Repository repository) {
+        knownPaths.remove(getRepositoryKey(repository));
+    }
+
+    /** Drops all paths of all Repositories **/
+    public void clear() {
+        knownPaths.clear();
+    }
+
+    private static String getRepositoryKey(Repository repository) {
+        // Each connection obtains a new Repository instance so the Server's URL and User is used
+        RepositoryInfo repositoryInfo = repository == null ? null : repository.getRepositoryInfo();
+        return repositoryInfo == null ?
+            String.valueOf(repository) :
+            repositoryInfo.getUrl() + "|" + repositoryInfo.getUsername();
+    }
+}
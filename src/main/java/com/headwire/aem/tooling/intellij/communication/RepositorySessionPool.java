@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
+import com.headwire.aem.tooling.intellij.eclipse.ServerUtil;
+import com.headwire.aem.tooling.intellij.eclipse.stub.IServer;
+import com.headwire.aem.tooling.intellij.eclipse.stub.NullProgressMonitor;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.apache.sling.ide.eclipse.core.internal.Activator;
+import org.apache.sling.ide.impl.vlt.VltRepository;
+import org.apache.sling.ide.transport.Repository;
+import org.apache.sling.ide.transport.RepositoryInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one warm Repository Session per Server Configuration so that the automatic and the explicit
+ * deployments do not set up a connection for each change.
+ *
+ * Each Session owns its Repository instead of using the connected one of the Repository Factory which
+ * is shared with other users. So a Session can be checked, dropped and connected again without affecting
+ * anybody else. A Session that was idle for a while is checked before it is handed out and recently used
+ * Sessions are checked in the background at a low rate. A Session that failed its check, was invalidated or
+ * whose connection settings changed is connected again with the current credentials.
+ *
+ * The JCR client underneath is shared by the Server Address in the Sling IDE's Repository Utils and is kept.
+ * As each command logs in with the credentials of the Session a reconnect still authenticates again.
+ */
+public class RepositorySessionPool
+    extends AbstractProjectComponent
+{
+    /** A Session idle for longer than that is checked before it is handed out **/
+    public static final long LIVENESS_CHECK_AFTER_IDLE_IN_MILLIS = 30 * 1000;
+    /** Interval of the Keep Alive Check **/
+    public static final long KEEP_ALIVE_INTERVAL_IN_SECONDS = 5 * 60;
+    /** Sessions not used for that long are not kept alive anymore **/
+    public static final long KEEP_ALIVE_WINDOW_IN_MILLIS = 15 * 60 * 1000;
+
+    private static class Session {
+        private String fingerprint;
+        private VltRepository repository;
+        private volatile long lastUsed;
+        private volatile long lastChecked;
+        private volatile boolean stale;
+    }
+
+    private final Logger logger = Logger.getInstance(getClass());
+    /** Sessions by the Name of the Server Configuration **/
+    private final Map<String, Session> sessions = new HashMap<String, Session>();
+    private ScheduledExecutorService keepAlive;
+
+    public RepositorySessionPool(@NotNull Project project) {
+        super(project);
+    }
+
+    /**
+     * @return Repository of the given Configuration from the Session Pool of the Project or a newly
+     *         looked up one if the Project has no Pool
+     */
+    @Nullable
+    public static Repository obtainRepository(@Nullable Project project, @NotNull ServerConfiguration serverConfiguration, @NotNull MessageManager messageManager) {
+        RepositorySessionPool pool = project == null ? null : project.getComponent(RepositorySessionPool.class);
+        if(pool != null) {
+            return pool.obtainRepository(serverConfiguration, messageManager);
+        } else {
+            return ServerUtil.getConnectedRepository(new IServer(serverConfiguration), new NullProgressMonitor(), messageManager);
+        }
+    }
+
+    @Override
+    public void projectOpened() {
+        if(keepAlive == null) {
+            keepAlive = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread ret = new Thread(runnable, "AEM Repository Keep Alive");
+                        ret.setDaemon(true);
+                        return ret;
+                    }
+                }
+            );
+            keepAlive.scheduleWithFixedDelay(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        keepAlive();
+                    }
+                },
+                KEEP_ALIVE_INTERVAL_IN_SECONDS, KEEP_ALIVE_INTERVAL_IN_SECONDS, TimeUnit.SECONDS
+            );
+        }
+    }
+
+    @Override
+    public void projectClosed() {
+        if(keepAlive != null) {
+            keepAlive.shutdownNow();
+            keepAlive = null;
+        }
+        List<Session> sessionList;
+        synchronized(sessions) {
+            sessionList = new ArrayList<Session>(sessions.values());
+            sessions.clear();
+        }
+        for(Session session : sessionList) {
+            synchronized(session) {
+                drop(session);
+            }
+        }
+    }
+
+    /**
+     * Hands out the Repository of the Configuration's Session. A new Session is only set up if there is none yet,
+     * if it failed its last check, if it was invalidated or if the connection settings were changed.
+     *
+     * @param serverConfiguration Server Configuration to connect to
+     * @param messageManager Message Manager to report connection problems
+     * @return Repository or null if the Server is not connected or the connection failed which was then reported
+     */
+    @Nullable
+    public Repository obtainRepository(@NotNull ServerConfiguration serverConfiguration, @NotNull MessageManager messageManager) {
+        IServer server = new IServer(serverConfiguration);
+        if(server.getServerState() != IServer.STATE_STARTED) {
+            // Let the Server Util report it
+            return ServerUtil.getConnectedRepository(server, new NullProgressMonitor(), messageManager);
+        }
+        Session session;
+        synchronized(sessions) {
+            session = sessions.get(serverConfiguration.getName());
+            if(session == null) {
+                session = new Session();
+                sessions.put(serverConfiguration.getName(), session);
+            }
+        }
+        synchronized(session) {
+            long now = System.currentTimeMillis();
+            if(session.repository != null && !session.stale && getFingerprint(serverConfiguration).equals(session.fingerprint)) {
+                if(now - Math.max(session.lastUsed, session.lastChecked) < LIVENESS_CHECK_AFTER_IDLE_IN_MILLIS || isAlive(session)) {
+                    session.lastUsed = now;
+                    return session.repository;
+                }
+            }
+            return connect(session, server, messageManager);
+        }
+    }
+
+    /** Marks the Session of the given Configuration as stale so that the next request connects again **/
+    public void invalidate(@NotNull ServerConfiguration serverConfiguration) {
+        Session session;
+        synchronized(sessions) {
+            session = sessions.get(serverConfiguration.getName());
+        }
+        if(session != null) {
+            session.stale = true;
+        }
+    }
+
+    /** Must be called while holding the lock of the Session **/
+    private Repository connect(Session session, IServer server, MessageManager messageManager) {
+        ServerConfiguration serverConfiguration = server.getServerConfiguration();
+        if(session.repository != null) {
+            messageManager.sendDebugNotification("debug.repository.session.reconnect", serverConfiguration.getName());
+        }
+        drop(session);
+        try {
+            // Obtained again so that the current credentials are used
+            RepositoryInfo repositoryInfo = ServerUtil.getRepositoryInfo(server, new NullProgressMonitor());
+            VltRepository repository = new VltRepository(repositoryInfo, Activator.getDefault().getEventAdmin());
+            repository.connect();
+            session.repository = repository;
+            session.fingerprint = getFingerprint(serverConfiguration);
+            session.stale = false;
+            session.lastUsed = session.lastChecked = System.currentTimeMillis();
+        } catch(URISyntaxException e) {
+            messageManager.showAlertWithArguments(NotificationType.ERROR, "deploy.connection.configuration.bad.url", serverConfiguration.getName());
+        } catch(RuntimeException e) {
+            messageManager.showAlertWithArguments(NotificationType.ERROR, "deploy.connection.unexpected.problem", serverConfiguration.getName(), e.getMessage());
+        }
+        return session.repository;
+    }
+
+    /** Must be called while holding the lock of the Session. Only the Session's own Repository is disconnected **/
+    private void drop(Session session) {
+        if(session.repository != null) {
+            NodeTypeCache.getInstance().invalidate(session.repository);
+            session.repository.disconnected();
+            session.repository = null;
+        }
+    }
+
+    /** Checks the Sessions that were used lately so that they stay warm and a broken one is found before it is used **/
+    private void keepAlive() {
+        List<Session> sessionList;
+        synchronized(sessions) {
+            sessionList = new ArrayList<Session>(sessions.values());
+        }
+        long now = System.currentTimeMillis();
+        for(Session session : sessionList) {
+            if(now - session.lastUsed > KEEP_ALIVE_WINDOW_IN_MILLIS) {
+                continue;
+            }
+            synchronized(session) {
+                if(session.repository != null && !session.stale) {
+                    isAlive(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of the Session. A failed check, which includes a failed login,
+     * marks the Session as stale.
+     */
+    private boolean isAlive(Session session) {
+        boolean ret;
+        try {
+            ret = session.repository.newListChildrenNodeCommand("/").execute().isSuccess();
+        } catch(RuntimeException e) {
+            logger.debug("Repository Session check failed", e);
+            ret = false;
+        }
+        session.lastChecked = System.currentTimeMillis();
+        session.stale = !ret;
+        return ret;
+    }
+
+    /** @return Fingerprint of the Connection Settings of a Configuration to detect changes **/
+    private static String getFingerprint(ServerConfiguration serverConfiguration) {
+        return serverConfiguration.getHost() + ":" + serverConfiguration.getConnectionPort() +
+            serverConfiguration.getContextPath() + "|" + serverConfiguration.getUserName() +
+            "|" + new String(serverConfiguration.getPassword());
+    }
+}
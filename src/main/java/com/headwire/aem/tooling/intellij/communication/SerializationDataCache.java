@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.transport.ResourceProxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the parsed Serialization Data (.content.xml) of a file. A single deployment reads the same file
+ * for the file itself, for each covered child and for the reordering of its children.
+ *
+ * An entry is only valid for the Modification Stamp it was read with. The least recently used entries are
+ * evicted when the total size of the cached XML exceeds the limit. As the callers modify the returned data
+ * (normalizing the children) a copy is handed out and stored.
+ */
+public class SerializationDataCache {
+
+    /** Maximum total Size of the cached XML files **/
+    public static final long DEFAULT_MAXIMUM_SIZE_IN_BYTES = 8 * 1024 * 1024;
+
+    private static final SerializationDataCache INSTANCE = new SerializationDataCache(DEFAULT_MAXIMUM_SIZE_IN_BYTES);
+
+    private static class Entry {
+        private final long modificationStamp;
+        private final ResourceProxy resourceProxy;
+        private final long size;
+
+        private Entry(long modificationStamp, ResourceProxy resourceProxy, long size) {
+            this.modificationStamp = modificationStamp;
+            this.resourceProxy = resourceProxy;
+            this.size = size;
+        }
+    }
+
+    private final long maximumSizeInBytes;
+    /** Entries by File Key in the order of their last access **/
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long size;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SerializationDataCache(long maximumSizeInBytes) {
+        this.maximumSizeInBytes = maximumSizeInBytes;
+    }
+
+    /** @return Cache shared by all Modules of all Projects of the IDE **/
+    public static SerializationDataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param key Key of the File like the Virtual File Id
+     * @param modificationStamp Current Modification Stamp of the File
+     * @return Copy of the cached Serialization Data or null if there is none for this Modification Stamp
+     */
+    public ResourceProxy get(Object key, long modificationStamp) {
+        Entry entry;
+        synchronized(entries) {
+            entry = entries.get(key);
+            if(entry != null && entry.modificationStamp != modificationStamp) {
+                entries.remove(key);
+                size -= entry.size;
+                entry = null;
+            }
+        }
+        if(entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(entry.resourceProxy);
+    }
+
+    /**
+     * Adds the Serialization Data of a File. A copy is stored so that the given one can be modified afterwards.
+     *
+     * @param key Key of the File like the Virtual File Id
+     * @param modificationStamp Modification Stamp of the File when it was read
+     * @param resourceProxy Parsed Serialization Data
+     * @param sizeInBytes Size of the XML file which is used as a measure of the retained memory
+     */
+    public void put(Object key, long modificationStamp, ResourceProxy resourceProxy, long sizeInBytes) {
+        if(sizeInBytes > maximumSizeInBytes) {
+            // Would evict everything else and still not fit
+            return;
+        }
+        Entry entry = new Entry(modificationStamp, copy(resourceProxy), sizeInBytes);
+        synchronized(entries) {
+            Entry old = entries.put(key, entry);
+            if(old != null) {
+                size -= old.size;
+            }
+            size += sizeInBytes;
+            Iterator<Entry> i = entries.values().iterator();
+            while(size > maximumSizeInBytes && i.hasNext()) {
+                Entry eldest = i.next();
+                i.remove();
+                size -= eldest.size;
+            }
+        }
+    }
+
+    public void invalidate(Object key) {
+        synchronized(entries) {
+            Entry entry = entries.remove(key);
+            if(entry != null) {
+                size -= entry.size;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized(entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /** @return Total Size of the cached XML files **/
+    public long getSize() {
+        synchronized(entries) {
+            return size;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return Hit Rate between 0 and 1 or 0 if there was no lookup yet **/
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /** Deep Copy of the Resource and its Children. Multi Value Properties are copied as well **/
+    static ResourceProxy copy(ResourceProxy resourceProxy) {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>(resourceProxy.getProperties());
+        for(Map.Entry<String, Object> property : properties.entrySet()) {
+            if(property.getValue() instanceof Object[]) {
+                property.setValue(((Object[]) property.getValue()).clone());
+            }
+        }
+        ResourceProxy ret = new ResourceProxy(resourceProxy.getPath(), properties);
+        for(ResourceProxy child : resourceProxy.getChildren()) {
+            ret.addChild(copy(child));
+        }
+        return ret;
+    }
+}
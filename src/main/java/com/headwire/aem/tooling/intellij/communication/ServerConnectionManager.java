@@ -35,7 +35,9 @@ import com.headwire.aem.tooling.intellij.eclipse.stub.NullProgressMonitor;
 
 import com.headwire.aem.tooling.intellij.explorer.RunExecutionMonitor;
 import com.headwire.aem.tooling.intellij.explorer.SlingServerTreeSelectionHandler;
+import com.headwire.aem.tooling.intellij.io.SlingProject4IntelliJ;
 import com.headwire.aem.tooling.intellij.util.BundleDataUtil;
+import com.headwire.aem.tooling.intellij.config.general.AEMPluginConfiguration;
 import com.headwire.aem.tooling.intellij.util.ComponentProvider;
 import com.headwire.aem.tooling.intellij.util.Util;
 import com.intellij.execution.ExecutionManager;
@@ -63,7 +65,9 @@ import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompileStatusNotification;
 import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowId;
@@ -72,10 +76,16 @@ import org.apache.commons.io.IOUtils;
 import org.apache.sling.ide.artifacts.EmbeddedArtifact;
 import org.apache.sling.ide.artifacts.EmbeddedArtifactLocator;
 import org.apache.sling.ide.eclipse.core.internal.Activator;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
 import org.apache.sling.ide.io.ConnectorException;
 import org.apache.sling.ide.osgi.OsgiClient;
 import org.apache.sling.ide.osgi.OsgiClientException;
 import org.apache.sling.ide.serialization.SerializationException;
+import org.apache.sling.ide.serialization.SerializationManager;
+import org.apache.sling.ide.jcr.RepositoryUtils;
 import org.apache.sling.ide.transport.Command;
 import org.apache.sling.ide.transport.Repository;
 import org.apache.sling.ide.transport.RepositoryException;
@@ -93,6 +103,7 @@ import org.jetbrains.idea.maven.utils.MavenDataKeys;
 import org.jetbrains.idea.maven.utils.actions.MavenActionUtil;
 import org.osgi.framework.Version;
 
+import javax.jcr.Session;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -100,8 +111,8 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -135,20 +146,76 @@ public class ServerConnectionManager
         ServerConfiguration.ServerStatus.running
     );
 
+    private final Logger logger = Logger.getInstance(getClass());
     private SlingServerTreeSelectionHandler selectionHandler;
     private MessageManager messageManager;
     private ServerConfigurationManager serverConfigurationManager;
     private IntelliJDeploymentManager deploymentManager;
     private ModuleManager moduleManager;
+    private ContentHashIndexManager contentHashIndexManager;
+    private DeployJournalManager deployJournalManager;
+    private DeployMetrics deployMetrics;
+    private ModuleResolver moduleResolver;
+    private ChangeDispatcher<Module, FileChange> changeDispatcher;
+    private final AdaptiveDeployScheduler deployScheduler = new AdaptiveDeployScheduler();
 
     private static boolean firstRun = true;
+    /** Number of Modules whose File Changes are published at the same time **/
+    private static final int CHANGE_DISPATCH_CONCURRENCY = 4;
+    /** Number of waiting File Changes of a Module after which the Module is resynced instead **/
+    private static final int CHANGE_QUEUE_HIGH_WATER_MARK = 500;
 
     public ServerConnectionManager(@NotNull Project project) {
         super(project);
         messageManager = ComponentProvider.getComponent(myProject, MessageManager.class);
         serverConfigurationManager = ComponentProvider.getComponent(myProject, ServerConfigurationManager.class);
         deploymentManager = new IntelliJDeploymentManager(project);
+        deployMetrics = deploymentManager.getDeployMetrics();
         moduleManager = ComponentProvider.getComponent(myProject, ModuleManager.class);
+        contentHashIndexManager = ComponentProvider.getComponent(myProject, ContentHashIndexManager.class);
+        deployJournalManager = ComponentProvider.getComponent(myProject, DeployJournalManager.class);
+        changeDispatcher = new ChangeDispatcher<Module, FileChange>(
+            project.getName(),
+            CHANGE_DISPATCH_CONCURRENCY,
+            CHANGE_QUEUE_HIGH_WATER_MARK,
+            new ChangeDispatcher.Handler<Module, FileChange>() {
+                @Override
+                public void handle(Module module, List<FileChange> fileChangeList) {
+                    publishFileChanges(module, fileChangeList);
+                }
+
+                @Override
+                public void resync(Module module, List<FileChange> dropped) {
+                    resyncModule(module, dropped);
+                }
+
+                @Override
+                public void dropped(Module module, List<FileChange> dropped) {
+                    keepDroppedChanges(module, dropped);
+                }
+
+                @Override
+                public boolean isKeptOnOverflow(FileChange fileChange) {
+                    // A resync only publishes what is there locally -> deletions must be kept
+                    return fileChange.getFileChangeType() == FileChangeType.DELETED;
+                }
+            }
+        );
+    }
+
+    @Override
+    public void projectClosed() {
+        changeDispatcher.shutdown();
+    }
+
+    /** @return Scheduler that picks the Quiet Period and Batch Size of the automatic deployment **/
+    public AdaptiveDeployScheduler getDeployScheduler() {
+        return deployScheduler;
+    }
+
+    /** @return Number of File Changes handed over for deployment but not deployed yet **/
+    public int getPendingChangeCount() {
+        return changeDispatcher.getPendingCount();
     }
 
     public void init(@NotNull SlingServerTreeSelectionHandler slingServerTreeSelectionHandler) {
@@ -275,7 +342,15 @@ public class ServerConnectionManager
                         } else if(module.isSlingPackage()) {
                             long lastModificationTimestamp = getLastModificationTimestamp(module);
                             long moduleModificationTimestamp = module.getLastModificationTimestamp();
-                            if(lastModificationTimestamp > moduleModificationTimestamp) {
+                            boolean outdated = lastModificationTimestamp > moduleModificationTimestamp;
+                            if(module.getParent().isCompareContentWithServer()) {
+                                List<MerkleTree.Difference> differences = compareContentWithServer(module);
+                                if(differences != null && !differences.isEmpty()) {
+                                    markDifferencesForDeployment(module, differences);
+                                    outdated = true;
+                                }
+                            }
+                            if(outdated) {
                                 updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.outdated);
                                 ret = false;
                             } else {
@@ -303,6 +378,83 @@ public class ServerConnectionManager
         return ret;
     }
 
+    /**
+     * Compares the Merkle Tree of each Filter Root of the Module with the one of the Server.
+     * Only the subtrees with a different digest are walked.
+     *
+     * @param module Content Module to compare
+     * @return List of Differences or null if the comparison could not be done
+     */
+    private List<MerkleTree.Difference> compareContentWithServer(@NotNull Module module) {
+        List<MerkleTree.Difference> ret = null;
+        String contentPath = findContentResource(module, null);
+        VirtualFile filterFile = null;
+        try {
+            if(module.getSlingProject() instanceof SlingProject4IntelliJ) {
+                ((SlingProject4IntelliJ) module.getSlingProject()).loadFilter();
+            }
+            filterFile = module.getFilterFile();
+        } catch(ConnectorException e) {
+            // Handled below as missing filter
+        }
+        if(contentPath == null || filterFile == null) {
+            messageManager.sendDebugNotification("debug.compare.content.no.filter", module.getName());
+            return ret;
+        }
+        Session session = null;
+        try {
+            DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+            filter.load(new File(filterFile.getPath()));
+            RepositoryInfo repositoryInfo = ServerUtil.getRepositoryInfo(new IServer(module.getParent()), new NullProgressMonitor());
+            session = RepositoryUtils.getRepository(repositoryInfo).login(RepositoryUtils.getCredentials(repositoryInfo));
+            File jcrRoot = new File(contentPath);
+            ret = new ArrayList<MerkleTree.Difference>();
+            for(PathFilterSet filterSet : filter.getFilterSets()) {
+                MerkleTree localTree = MerkleTreeBuilder.buildLocalTree(jcrRoot, filter, filterSet.getRoot());
+                MerkleTree remoteTree = MerkleTreeBuilder.buildRemoteTree(session, filter, filterSet.getRoot(), localTree);
+                ret.addAll(MerkleTree.diff(localTree, remoteTree));
+            }
+            messageManager.sendDebugNotification("debug.compare.content.done", module.getName(), ret.size());
+        } catch(ConfigurationException e) {
+            messageManager.sendErrorNotification("compare.content.failed", module.getName(), e.getMessage());
+            ret = null;
+        } catch(URISyntaxException e) {
+            messageManager.sendErrorNotification("compare.content.failed", module.getName(), e.getMessage());
+            ret = null;
+        } catch(javax.jcr.RepositoryException e) {
+            messageManager.sendErrorNotification("compare.content.failed", module.getName(), e.getMessage());
+            ret = null;
+        } catch(IOException e) {
+            messageManager.sendErrorNotification("compare.content.failed", module.getName(), e.getMessage());
+            ret = null;
+        } finally {
+            if(session != null) {
+                session.logout();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Resets the local files of the differing subtrees so that the next deployment pushes them again.
+     * Nodes that only exist on the Server are reported but not removed.
+     */
+    private void markDifferencesForDeployment(@NotNull Module module, @NotNull List<MerkleTree.Difference> differences) {
+        String contentPath = findContentResource(module, null);
+        LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
+        for(MerkleTree.Difference difference : differences) {
+            messageManager.sendDebugNotification("debug.compare.content.difference", module.getName(), difference.getType(), difference.getPath());
+            if(difference.getType() != MerkleTree.DifferenceType.remoteOnly) {
+                File file = new File(contentPath, PlatformNameFormat.getPlatformPath(difference.getPath()));
+                VirtualFile virtualFile = localFileSystem.findFileByIoFile(file);
+                if(virtualFile != null) {
+                    Util.resetModificationStamp(virtualFile, true);
+                    contentHashIndexManager.markRemoved(module, virtualFile);
+                }
+            }
+        }
+    }
+
     private String checkBundleVersion(String version) {
         String ret = "";
         // Versions need to be in this format n.n.n(-|_)aaaaa where n is a number and a are alphanumeric characters
@@ -433,6 +585,9 @@ public class ServerConnectionManager
                     messageManager.sendInfoNotification("remote.repository.connected.sling.repository", success);
                     if(success) {
                         serverConfiguration.setServerStatus(ServerConfiguration.ServerStatus.connected);
+                        // The Server could have changed while we were not connected
+                        deploymentManager.getRemotePathCache().clear(repository);
+                        NodeTypeCache.getInstance().invalidate(repository);
                         RepositoryInfo repositoryInfo = ServerUtil.getRepositoryInfo(
                             new IServer(serverConfiguration), new NullProgressMonitor()
                         );
@@ -518,15 +673,24 @@ public class ServerConnectionManager
         progressHandlerSubTask.next("Check Binding of Parent Module: " + module.getParent());
         checkBinding(module.getParent(), progressHandler);
         progressHandlerSubTask.next("Deploy Module to Server: " + module.getName());
+        // The Filter is checked once for the entire deployment instead of for each resource
+        module.setFilterValidated(false);
         if(module.isPartOfBuild()) {
             if(module.isOSGiBundle()) {
                 publishBundle(dataContext, module);
             } else if(module.isSlingPackage()) {
-                //AS TODO: Add the synchronization of the entire module
-                deploymentManager.publishModule(
-                    deploymentManager.new IntelliJModuleWrapper(module, myProject),
-                    force
-                );
+                // Forced Deploys and Initial Syncs are installed as Content Package if possible
+                boolean installed = false;
+                if(module.getParent().isDeployContentAsPackage() && (force || module.getLastModificationTimestamp() <= 0)) {
+                    installed = deployModuleAsContentPackage(module);
+                }
+                if(!installed) {
+                    //AS TODO: Add the synchronization of the entire module
+                    deploymentManager.publishModule(
+                        deploymentManager.new IntelliJModuleWrapper(module, myProject, progressHandler),
+                        force
+                    );
+                }
             } else {
                 messageManager.sendDebugNotification("debug.module.not.supported.package", module.getName());
                 updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.unsupported);
@@ -537,6 +701,86 @@ public class ServerConnectionManager
         }
     }
 
+    /**
+     * Builds a Content Package from the Module's jcr_root and filter.xml and streams it to the
+     * Package Manager of the Server which installs it in one operation.
+     *
+     * @param module Content Module to be deployed
+     * @return True if the package was installed. False if the Server does not support it or the
+     *         installation failed in which case the Module needs to be published resource by resource
+     */
+    private boolean deployModuleAsContentPackage(@NotNull Module module) {
+        ServerConfiguration serverConfiguration = module.getParent();
+        List<String> contentPathList = findContentResources(module);
+        VirtualFile filterFile = null;
+        try {
+            if(module.getSlingProject() instanceof SlingProject4IntelliJ) {
+                ((SlingProject4IntelliJ) module.getSlingProject()).loadFilter();
+            }
+            filterFile = module.getFilterFile();
+        } catch(ConnectorException e) {
+            // Without a Filter the package cannot be built and the Module is published Resource by Resource
+            filterFile = null;
+        }
+        if(contentPathList.isEmpty() || filterFile == null) {
+            messageManager.sendDebugNotification("debug.deploy.module.as.package.no.filter", module.getName());
+            return false;
+        }
+        List<File> contentRootList = new ArrayList<File>();
+        for(String contentPath : contentPathList) {
+            contentRootList.add(new File(contentPath));
+        }
+        ContentPackageBuilder builder = new ContentPackageBuilder(
+            ContentPackageBuilder.DEFAULT_GROUP,
+            module.getName() + "-ide-sync",
+            // A stable version makes each deployment replace the package of the last one
+            module.getVersion(),
+            new File(filterFile.getPath()),
+            contentRootList
+        );
+        final List<File> uploadedFileList = new ArrayList<File>();
+        messageManager.sendInfoNotification("deploy.module.as.package.prepare", module.getName());
+        updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.updating);
+        try {
+            RepositoryInfo repositoryInfo = ServerUtil.getRepositoryInfo(new IServer(serverConfiguration), new NullProgressMonitor());
+            ContentPackageInstaller.Status status = new ContentPackageInstaller().install(
+                repositoryInfo,
+                builder,
+                new ContentPackageBuilder.Listener() {
+                    @Override
+                    public void fileAdded(File file) {
+                        uploadedFileList.add(file);
+                    }
+                }
+            );
+            if(status == ContentPackageInstaller.Status.notSupported) {
+                messageManager.sendInfoNotification("deploy.module.as.package.not.supported", module.getName());
+                return false;
+            }
+        } catch(URISyntaxException e) {
+            messageManager.sendErrorNotification("deploy.module.as.package.failed", module.getName(), e.getMessage());
+            return false;
+        } catch(IOException e) {
+            messageManager.sendErrorNotification("deploy.module.as.package.failed", module.getName(), e.getMessage());
+            return false;
+        }
+        // Mark all uploaded files as deployed so that they are not published again
+        long lastModificationTimestamp = -1;
+        LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
+        for(File file : uploadedFileList) {
+            VirtualFile virtualFile = localFileSystem.findFileByIoFile(file);
+            if(virtualFile != null) {
+                Util.setModificationStamp(virtualFile);
+                contentHashIndexManager.markDeployed(module, virtualFile);
+                lastModificationTimestamp = Math.max(lastModificationTimestamp, virtualFile.getTimeStamp());
+            }
+        }
+        module.setLastModificationTimestamp(lastModificationTimestamp);
+        updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.upToDate);
+        messageManager.sendInfoNotification("deploy.module.as.package.success", module.getName(), uploadedFileList.size());
+        return true;
+    }
+
     public void connectInDebugMode(RunManagerEx runManager) {
         ServerConfiguration serverConfiguration = selectionHandler.getCurrentConfiguration();
         // Create Remote Connection to Server using the IntelliJ Run / Debug Connection
@@ -567,6 +811,7 @@ public class ServerConnectionManager
             BundleStatus status = checkAndUpdateSupportBundle(false);
             if(status != BundleStatus.failed) {
                 checkModules(osgiClient);
+                replayOfflineChanges();
             }
         }
     }
@@ -591,6 +836,10 @@ public class ServerConnectionManager
         }
         if(serverConfiguration != null) {
             serverConfiguration.setServerStatus(ServerConfiguration.ServerStatus.disconnected);
+            RepositorySessionPool repositorySessionPool = myProject.getComponent(RepositorySessionPool.class);
+            if(repositorySessionPool != null) {
+                repositorySessionPool.invalidate(serverConfiguration);
+            }
         }
     }
 
@@ -647,11 +896,15 @@ public class ServerConnectionManager
         // Check if this is a OSGi Bundle
         final UnifiedModule unifiedModule = module.getUnifiedModule();
         if(unifiedModule.isOSGiBundle()) {
+            long publishStart = deployMetrics.start();
             try {
                 updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.updating);
                 boolean localBuildDoneSuccessfully = true;
                 //AS TODO: This should be isBuildLocally instead as we can now build both with Maven or Locally if Facet is specified
-                if(module.getParent().isBuildWithMaven() && module.getUnifiedModule().isMavenBased()) {
+                if(module.getParent().isBuildWithMaven() && module.getUnifiedModule().isMavenBased() && buildDeltaBundle(dataContext, module)) {
+                    // Only the changed classes were replaced in the Bundle of the last Maven Build -> no Maven round trip needed
+                    localBuildDoneSuccessfully = true;
+                } else if(module.getParent().isBuildWithMaven() && module.getUnifiedModule().isMavenBased()) {
                     localBuildDoneSuccessfully = false;
                     List<String> goals = MavenDataKeys.MAVEN_GOALS.getData(dataContext);
                     if (goals == null) {
@@ -703,7 +956,10 @@ public class ServerConnectionManager
                             messageManager.sendDebugNotification("debug.maven.build.failed.unexpected", e);
                         }
                         // Now we can wait for the process to end
-                        switch(RunExecutionMonitor.getInstance(myProject).waitFor()) {
+                        long buildWaitStart = deployMetrics.start();
+                        RunExecutionMonitor.WaitState waitState = RunExecutionMonitor.getInstance(myProject).waitFor();
+                        deployMetrics.record(DeployMetrics.Phase.buildWait, buildWaitStart);
+                        switch(waitState) {
                             case done:
                                 messageManager.sendInfoNotification("deploy.module.maven.done");
                                 localBuildDoneSuccessfully = true;
@@ -735,7 +991,9 @@ public class ServerConnectionManager
                             );
                         }
                     };
+                    long buildWaitStart = deployMetrics.start();
                     runAndWait(runner);
+                    deployMetrics.record(DeployMetrics.Phase.buildWait, buildWaitStart);
                     localBuildDoneSuccessfully = runner.getResponse().get();
                 }
                 if(localBuildDoneSuccessfully) {
@@ -797,12 +1055,61 @@ public class ServerConnectionManager
                 updateModuleStatus(module, ServerConfiguration.SynchronizationStatus.failed);
             } finally {
                 IOUtils.closeQuietly(contents);
+                deployMetrics.record(DeployMetrics.Phase.publishBundle, publishStart);
             }
         } else {
             messageManager.sendNotification("deploy.module.unsupported.maven.packaging", NotificationType.WARNING);
         }
     }
 
+    /**
+     * Updates the Bundle of the last Maven Build with the classes the IDE compiled since then. This is only done
+     * if the incremental builds are enabled as otherwise the compiler output is not up to date.
+     *
+     * @return True if the Bundle is up to date and can be installed. False if a full Maven Build is needed
+     */
+    private boolean buildDeltaBundle(@NotNull DataContext dataContext, @NotNull Module module) {
+        // Explicitly provided Maven Goals are always executed
+        List<String> goals = MavenDataKeys.MAVEN_GOALS.getData(dataContext);
+        if(goals != null && !goals.isEmpty()) {
+            return false;
+        }
+        AEMPluginConfiguration pluginConfiguration = ComponentProvider.getComponent(myProject, AEMPluginConfiguration.class);
+        if(pluginConfiguration == null || !pluginConfiguration.isIncrementalBuilds()) {
+            return false;
+        }
+        UnifiedModule unifiedModule = module.getUnifiedModule();
+        String outputDirectoryPath = unifiedModule.getOutputDirectoryPath();
+        if(outputDirectoryPath == null) {
+            return false;
+        }
+        // These files define the Manifest and the Dependencies of the Bundle
+        File moduleDirectory = new File(unifiedModule.getModuleDirectory());
+        List<File> buildFiles = Arrays.asList(
+            new File(moduleDirectory, "pom.xml"), new File(moduleDirectory, "bnd.bnd"), new File(moduleDirectory, "osgi.bnd")
+        );
+        BundleDeltaBuilder builder = new BundleDeltaBuilder(
+            new File(unifiedModule.getBuildDirectoryPath(), unifiedModule.getBuildFileName()),
+            new File(outputDirectoryPath),
+            buildFiles
+        );
+        long start = deployMetrics.start();
+        try {
+            BundleDeltaBuilder.Result result = builder.build();
+            if(result.isFullBuildNeeded()) {
+                messageManager.sendInfoNotification("deploy.module.delta.full.build", module.getName(), result.getFullBuildReason());
+                return false;
+            }
+            messageManager.sendInfoNotification("deploy.module.delta", module.getName(), result.getReplaced(), result.getAdded());
+            return true;
+        } catch(IOException e) {
+            messageManager.sendDebugNotification("debug.deploy.module.delta.failed", module.getName(), e.getMessage());
+            return false;
+        } finally {
+            deployMetrics.record(DeployMetrics.Phase.deltaBuild, start);
+        }
+    }
+
     public enum FileChangeType {CHANGED, CREATED, DELETED, MOVED, COPIED};
 
     public long getLastModificationTimestamp(Module module) {
@@ -876,62 +1183,230 @@ public class ServerConnectionManager
         }
     }
 
+    /**
+     * Resolves the Module of each change and hands the changes of the Content Modules to the Change Dispatcher.
+     * This returns right away and the changes of different Modules are published concurrently.
+     *
+     * @param fileChangeList File Changes in the order they happened
+     */
     public void handleFileChanges(List<FileChange> fileChangeList) {
-        Map<String, Module> resourcePathToModuleMap = new HashMap<String, Module>();
+        Map<Module, List<FileChange>> changesByModule = new LinkedHashMap<Module, List<FileChange>>();
+        ModuleResolver resolver = obtainModuleResolver();
         for(FileChange fileChange: fileChangeList) {
-            String filePath = fileChange.getFile().getPath();
-            // First go over the map to see if we already found the module
-            boolean found = false;
-            for(Map.Entry<String, Module> entry: resourcePathToModuleMap.entrySet()) {
-                Module module = entry.getValue();
-                String path = entry.getKey();
-                if(filePath.startsWith(path)) {
+            String filePath = fileChange.getPath();
+            ModuleResolver.Resolution resolution = resolver.resolve(filePath);
+            if(resolution == null) {
+                continue;
+            }
+            Module module = resolution.getModule();
+            switch(resolution.getRole()) {
+                case content:
+                    // This file belongs to this module so we are good to publish it
                     fileChange.setModule(module);
-                    fileChange.setResourcePath(path);
-                    found = true;
+                    fileChange.setResourcePath(resolution.getRootPath());
+                    List<FileChange> moduleChangeList = changesByModule.get(module);
+                    if(moduleChangeList == null) {
+                        moduleChangeList = new ArrayList<FileChange>();
+                        changesByModule.put(module, moduleChangeList);
+                    }
+                    moduleChangeList.add(fileChange);
                     break;
-                }
-            }
-            if(!found) {
-                // If not found we loop over the modules and see if one is
-                List<Module> moduleList = selectionHandler.getModuleDescriptorListOfCurrentConfiguration();
-                for(Module module: moduleList) {
-                    if(module.isSlingPackage()) {
-                        String contentPath = findContentResource(module, filePath);
-                        if(contentPath != null) {
-                            // This file belongs to this module so we are good to publish it
-                            fileChange.setModule(module);
-                            fileChange.setResourcePath(contentPath);
-                            resourcePathToModuleMap.put(contentPath, module);
-                            break;
-                        }
-                    } else if(module.isOSGiBundle()) {
-                        // Here we are not interested in a source file but rather in the Artifact. If it is the artifact then
-                        // we mark the module as outdated
-                        UnifiedModule unifiedModule = module.getUnifiedModule();
-                        if(filePath.startsWith(unifiedModule.getBuildDirectoryPath())) {
-                            // Check if it is the build file
-                            String fileName = fileChange.getFile().getName();
-                            String buildFileName = unifiedModule.getBuildFileName();
-                            if(fileName.equals(buildFileName)) {
-                                messageManager.sendInfoNotification("server.update.file.change.prepare", filePath, fileChange.getFileChangeType());
-                                module.setStatus(ServerConfiguration.SynchronizationStatus.outdated);
-                            }
-                        }
+                case build:
+                    // Here we are not interested in a source file but rather in the Artifact. If it is the artifact then
+                    // we mark the module as outdated
+                    String fileName = fileChange.getFile().getName();
+                    String buildFileName = module.getUnifiedModule().getBuildFileName();
+                    if(fileName.equals(buildFileName)) {
+                        messageManager.sendInfoNotification("server.update.file.change.prepare", filePath, fileChange.getFileChangeType());
+                        module.setStatus(ServerConfiguration.SynchronizationStatus.outdated);
                     }
+                    break;
+            }
+        }
+        // The automatic deployment is only done when connected otherwise the changes are recorded for later
+        if(!changesByModule.isEmpty()) {
+            if(isConnectionInUse()) {
+                dispatchFileChanges(changesByModule);
+            } else {
+                recordOfflineChanges(changesByModule);
+            }
+        }
+    }
+
+    /**
+     * Forces the Modules using the given filter.xml to check their Filter again before it is used the next time.
+     * Modules without a valid Filter File are included as the file could have just been created or renamed.
+     *
+     * @param filterFilePath Path of the changed filter.xml
+     */
+    public void invalidateFilters(@NotNull String filterFilePath) {
+        for(ServerConfiguration serverConfiguration : serverConfigurationManager.getServerConfigurations()) {
+            for(Module module : serverConfiguration.getModuleList()) {
+                VirtualFile filterFile = module.getFilterFile();
+                if(filterFile == null || !filterFile.isValid() || filterFile.getPath().equals(filterFilePath)) {
+                    module.setFilterValidated(false);
                 }
             }
         }
-        // The automatic deployment is only done when connected
-        if(!resourcePathToModuleMap.isEmpty() && isConnectionInUse()) {
-            Module module = resourcePathToModuleMap.values().iterator().next();
-            Repository repository =  ServerUtil.getConnectedRepository(
-                new IServer(module.getParent()), new NullProgressMonitor(), messageManager
-            );
+    }
+
+    private void dispatchFileChanges(Map<Module, List<FileChange>> changesByModule) {
+        for(Map.Entry<Module, List<FileChange>> entry : changesByModule.entrySet()) {
+            changeDispatcher.dispatch(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void recordOfflineChanges(Map<Module, List<FileChange>> changesByModule) {
+        List<FileChange> fileChangeList = new ArrayList<FileChange>();
+        for(List<FileChange> moduleChangeList : changesByModule.values()) {
+            fileChangeList.addAll(moduleChangeList);
+        }
+        recordOfflineChanges(selectionHandler.getCurrentConfiguration(), fileChangeList);
+    }
+
+    private void recordOfflineChanges(ServerConfiguration serverConfiguration, List<FileChange> fileChangeList) {
+        if(serverConfiguration == null || deployJournalManager == null || fileChangeList.isEmpty()) {
+            return;
+        }
+        try {
+            deployJournalManager.getOfflineChangeJournal(serverConfiguration).append(fileChangeList);
+            messageManager.sendDebugNotification("debug.offline.changes.recorded", fileChangeList.size(), serverConfiguration.getName());
+        } catch(IOException e) {
+            messageManager.sendDebugNotification("debug.offline.changes.not.recorded", serverConfiguration.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes the changes made while the Server of the current Configuration was not connected. The recorded changes
+     * are merged into their net change per path and dispatched as one batch per Module. They are only removed from the
+     * journal once all of them were handled and the failed ones are kept for the next connection.
+     */
+    public void replayOfflineChanges() {
+        ServerConfiguration serverConfiguration = selectionHandler.getCurrentConfiguration();
+        if(serverConfiguration == null || deployJournalManager == null) {
+            return;
+        }
+        OfflineChangeJournal journal = deployJournalManager.getOfflineChangeJournal(serverConfiguration);
+        if(!journal.hasChanges()) {
+            return;
+        }
+        OfflineChangeJournal.Replay replay;
+        try {
+            replay = journal.startReplay();
+        } catch(IOException e) {
+            messageManager.sendDebugNotification("debug.offline.changes.not.recorded", serverConfiguration.getName(), e.getMessage());
+            return;
+        }
+        Map<String, FileChangeType> changes = replay.getChanges();
+        int count = 0;
+        LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
+        ModuleResolver resolver = obtainModuleResolver();
+        Map<Module, List<FileChange>> changesByModule = new LinkedHashMap<Module, List<FileChange>>();
+        for(Map.Entry<String, FileChangeType> entry : changes.entrySet()) {
+            String path = entry.getKey();
+            ModuleResolver.Resolution resolution = resolver.resolve(path);
+            if(resolution == null || resolution.getRole() != ModuleResolver.Role.content) {
+                continue;
+            }
+            VirtualFile file = localFileSystem.refreshAndFindFileByPath(path);
+            FileChange fileChange;
+            if(file != null) {
+                // A file that is there is published with its current content
+                fileChange = new FileChange(file, entry.getValue() == FileChangeType.DELETED ? FileChangeType.CHANGED : entry.getValue());
+            } else if(entry.getValue() == FileChangeType.DELETED) {
+                fileChange = new FileChange(path, FileChangeType.DELETED);
+            } else {
+                // Changed and then removed without a recorded delete -> nothing to publish
+                continue;
+            }
+            Module module = resolution.getModule();
+            fileChange.setModule(module);
+            fileChange.setResourcePath(resolution.getRootPath());
+            fileChange.setReplay(replay);
+            List<FileChange> moduleChangeList = changesByModule.get(module);
+            if(moduleChangeList == null) {
+                moduleChangeList = new ArrayList<FileChange>();
+                changesByModule.put(module, moduleChangeList);
+            }
+            moduleChangeList.add(fileChange);
+            count++;
+        }
+        try {
+            replay.start(count);
+        } catch(IOException e) {
+            messageManager.sendDebugNotification("debug.offline.changes.not.recorded", serverConfiguration.getName(), e.getMessage());
+        }
+        messageManager.sendInfoNotification("server.update.offline.changes.replay", count, serverConfiguration.getName());
+        dispatchFileChanges(changesByModule);
+    }
+
+    /** Reports a handled change to the Replay of the Offline Changes it belongs to **/
+    private void completeReplay(FileChange fileChange, boolean success) {
+        OfflineChangeJournal.Replay replay = fileChange.getReplay();
+        if(replay != null) {
+            try {
+                replay.completed(fileChange, success);
+            } catch(IOException e) {
+                logger.warn("Failed to update the Offline Change Journal", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the resource of a file that is gone already. The repository path is derived from the path of the file
+     * inside the content root.
+     *
+     * @return Delete Command or null if the file only held properties of a resource that still exists
+     */
+    private Command<?> removeMissingFileCommand(Repository repository, FileChange fileChange) {
+        String basePath = fileChange.getResourcePath().replace("\\", "/");
+        if(!fileChange.getPath().startsWith(basePath)) {
+            return null;
+        }
+        String relativePath = fileChange.getPath().substring(basePath.length());
+        SerializationManager serializationManager = ComponentProvider.getComponent(myProject, SerializationManager.class);
+        if(serializationManager == null) {
+            return null;
+        }
+        if(serializationManager.isSerializationFile(relativePath)) {
+            String resourcePath = serializationManager.getBaseResourcePath(relativePath);
+            if(new File(basePath + resourcePath).exists()) {
+                // Only the properties of the resource are gone which is not handled here
+                return null;
+            }
+            relativePath = resourcePath;
+        }
+        return repository.newDeleteNodeCommand(serializationManager.getRepositoryPath(relativePath));
+    }
+
+    /**
+     * Publishes the changes of a Module one after the other. This is called by the Change Dispatcher which
+     * handles one Module at a time on a Worker so that the changes of a path are applied in order.
+     */
+    private void publishFileChanges(Module module, List<FileChange> fileChangeList) {
+        long start = deployMetrics.start();
+        // The Filter is checked once for the entire batch instead of for each resource
+        module.setFilterValidated(false);
+        boolean published = false;
+        try {
+            Repository repository = RepositorySessionPool.obtainRepository(myProject, module.getParent(), messageManager);
             if(repository != null) {
+                published = true;
                 for(FileChange fileChange : fileChangeList) {
+                    boolean success = false;
                     try {
                         VirtualFile file = fileChange.getFile();
+                        if(file == null) {
+                            // File was deleted while the server was offline
+                            Command<?> command = removeMissingFileCommand(repository, fileChange);
+                            if(command != null) {
+                                deploymentManager.getRemotePathCache().invalidate(repository, fileChange.getPath());
+                                deploymentManager.execute(command);
+                                messageManager.sendInfoNotification("server.update.file.change.success", fileChange.getPath());
+                            }
+                            success = true;
+                            continue;
+                        }
                         String path = file.getPath();
                         FileChangeType type = fileChange.getFileChangeType();
                         String basePath = fileChange.getResourcePath();
@@ -945,6 +1420,9 @@ public class ServerConnectionManager
                             case MOVED:
                                 // Reset the Modification Timestamp to enforce a push to the server for moves and renames
                                 Util.resetModificationStamp(file, true);
+                                if(type == FileChangeType.MOVED) {
+                                    contentHashIndexManager.markRemoved(currentModule, file);
+                                }
                                 command = deploymentManager.addFileCommand(
                                     repository,
                                     deploymentManager.new IntelliJModuleWrapper(currentModule, myProject),
@@ -953,6 +1431,9 @@ public class ServerConnectionManager
                                 );
                                 break;
                             case DELETED:
+                                contentHashIndexManager.markRemoved(currentModule, file);
+                                // Drop it before the delete so that a failed delete is re-created by the next change
+                                deploymentManager.getRemotePathCache().invalidate(repository, path);
                                 command = deploymentManager.removeFileCommand(
                                     repository,
                                     deploymentManager.new IntelliJModuleWrapper(currentModule, myProject),
@@ -975,20 +1456,110 @@ public class ServerConnectionManager
                             deploymentManager.execute(command);
                             // Add a property that can be used later to avoid a re-sync if not needed
                             Util.setModificationStamp(file);
+                            if(type != FileChangeType.DELETED) {
+                                contentHashIndexManager.markDeployed(currentModule, file);
+                                deploymentManager.getRemotePathCache().markKnown(repository, path);
+                            }
                             messageManager.sendInfoNotification("server.update.file.change.success", path);
                         } else {
                             messageManager.sendInfoNotification("server.update.file.change.failed", path, currentModule);
                         }
+                        success = true;
                     } catch(ConnectorException e) {
-                        e.printStackTrace();
+                        reportFileChangeFailure(repository, fileChange, e);
                     } catch(SerializationException e) {
-                        e.printStackTrace();
+                        reportFileChangeFailure(repository, fileChange, e);
                     } catch(IOException e) {
-                        e.printStackTrace();
+                        reportFileChangeFailure(repository, fileChange, e);
+                    } catch(RuntimeException e) {
+                        // An invalid file or a lost connection must not drop the rest of the batch
+                        reportFileChangeFailure(repository, fileChange, e);
+                    } finally {
+                        completeReplay(fileChange, success);
                     }
                 }
+            } else {
+                for(FileChange fileChange : fileChangeList) {
+                    // Replayed changes are kept for the next connection
+                    completeReplay(fileChange, false);
+                }
+            }
+        } finally {
+            deployMetrics.record(DeployMetrics.Phase.handleFileChanges, start, fileChangeList.size());
+            if(published) {
+                deployScheduler.recordLatency(fileChangeList.size(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Reports a change that could not be published and marks its Module as outdated so that it is synced again.
+     * The Parents of the file are not taken as existing on the Server anymore.
+     */
+    private void reportFileChangeFailure(Repository repository, FileChange fileChange, Exception e) {
+        logger.warn("Failed to publish File Change: " + fileChange.getPath(), e);
+        VirtualFile file = fileChange.getFile();
+        if(file != null && file.isValid() && fileChange.getResourcePath() != null) {
+            deploymentManager.invalidateParents(
+                repository, fileChange.getResourcePath().replace("\\", "/"), deploymentManager.new IntelliJFileWrapper(file)
+            );
+        }
+        Module module = fileChange.getModule();
+        messageManager.sendInfoNotification("server.update.file.change.failed", fileChange.getPath(), module);
+        if(module != null) {
+            module.setStatus(ServerConfiguration.SynchronizationStatus.outdated);
+        }
+    }
+
+    /**
+     * Publishes all changed resources of a Module after too many File Changes came in. The incremental publish
+     * compares the content hashes and timestamps and saves the resources in batches. If the Server is not
+     * connected anymore the dropped changes are kept for the next connection instead.
+     */
+    private void resyncModule(Module module, List<FileChange> dropped) {
+        if(!isConnectionInUse()) {
+            keepDroppedChanges(module, dropped);
+            return;
+        }
+        messageManager.sendInfoNotification("server.update.module.resync", module.getName(), dropped.size());
+        boolean success = false;
+        try {
+            success = deploymentManager.publishModule(
+                deploymentManager.new IntelliJModuleWrapper(module, myProject),
+                false
+            );
+        } finally {
+            // The resync covers the dropped changes and so it also completes the replayed ones among them
+            for(FileChange fileChange : dropped) {
+                completeReplay(fileChange, success);
+            }
+        }
+    }
+
+    /**
+     * Keeps the changes that were dropped without being published. Replayed Offline Changes are still in their
+     * journal and stay there. All others are recorded as Offline Changes so that they are published on the
+     * next connection.
+     */
+    private void keepDroppedChanges(Module module, List<FileChange> dropped) {
+        List<FileChange> fileChangeList = new ArrayList<FileChange>();
+        for(FileChange fileChange : dropped) {
+            if(fileChange.getReplay() != null) {
+                completeReplay(fileChange, false);
+            } else {
+                fileChangeList.add(fileChange);
             }
         }
+        recordOfflineChanges(module.getParent(), fileChangeList);
+    }
+
+    /** @return Module Resolver of the current Modules which is only rebuilt when the Modules or their bindings changed **/
+    private synchronized ModuleResolver obtainModuleResolver() {
+        List<Module> moduleList = selectionHandler.getModuleDescriptorListOfCurrentConfiguration();
+        if(moduleResolver == null || !moduleResolver.isValidFor(moduleList)) {
+            moduleResolver = new ModuleResolver(moduleList);
+        }
+        return moduleResolver;
     }
 
     public String findContentResource(Module module, String filePath) {
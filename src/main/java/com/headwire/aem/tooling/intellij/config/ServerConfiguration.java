@@ -57,6 +57,12 @@ public class ServerConfiguration
     @Deprecated //AS TODO: Remove later as soon as the Cancel Build Action is implemented
     public static final int DEFAULT_MAVEN_BUILD_TIME_OUT_IN_SECONDS = 0;
     public static final LogFilter DEFAULT_LOG_FILTER = LogFilter.error;
+    public static final int DEFAULT_PUBLISH_CONCURRENCY = 4;
+    public static final int MAXIMUM_PUBLISH_CONCURRENCY = 32;
+    /** Batch Size of 0 means that all Resources of a Folder are published in one Batch **/
+    public static final int DEFAULT_PUBLISH_BATCH_SIZE = 25;
+    public static final boolean DEFAULT_DEPLOY_CONTENT_AS_PACKAGE = true;
+    public static final boolean DEFAULT_COMPARE_CONTENT_WITH_SERVER = false;
 
     protected static final String COMPONENT_NAME = "ServerConfiguration";
 
@@ -137,6 +143,10 @@ public class ServerConfiguration
     @Deprecated //AS TODO: Remove later as soon as the Cancel Build Action is implemented
     private int mavenBuildTimeoutInSeconds = DEFAULT_MAVEN_BUILD_TIME_OUT_IN_SECONDS;
     private LogFilter logFilter = DEFAULT_LOG_FILTER;
+    private int publishConcurrency = DEFAULT_PUBLISH_CONCURRENCY;
+    private int publishBatchSize = DEFAULT_PUBLISH_BATCH_SIZE;
+    private boolean deployContentAsPackage = DEFAULT_DEPLOY_CONTENT_AS_PACKAGE;
+    private boolean compareContentWithServer = DEFAULT_COMPARE_CONTENT_WITH_SERVER;
 
     // Don't store Server Status as it is reset when the Configuration is loaded again
     //AS TODO: Not sure about this -> Check if that works
@@ -173,6 +183,10 @@ public class ServerConfiguration
         stopConnectionTimeout = source.stopConnectionTimeout;
         publishType = source.publishType;
         installationType = source.installationType;
+        publishConcurrency = source.publishConcurrency;
+        publishBatchSize = source.publishBatchSize;
+        deployContentAsPackage = source.deployContentAsPackage;
+        compareContentWithServer = source.compareContentWithServer;
         serverStatus = source.serverStatus;
         if(source.configurationChangeListener != null) {
             configurationChangeListener = source.configurationChangeListener;
@@ -357,6 +371,45 @@ public class ServerConfiguration
             DEFAULT_MAVEN_BUILD_TIME_OUT_IN_SECONDS;
     }
 
+    /** @return Number of Workers used to build and publish the Content Resources of a Module concurrently **/
+    public int getPublishConcurrency() {
+        return publishConcurrency;
+    }
+
+    public void setPublishConcurrency(int publishConcurrency) {
+        this.publishConcurrency = publishConcurrency > 0 ?
+            Math.min(publishConcurrency, MAXIMUM_PUBLISH_CONCURRENCY) :
+            DEFAULT_PUBLISH_CONCURRENCY;
+    }
+
+    /** @return Number of Commands committed with a single save. 1 means no batching, 0 means one batch per folder **/
+    public int getPublishBatchSize() {
+        return publishBatchSize;
+    }
+
+    public void setPublishBatchSize(int publishBatchSize) {
+        this.publishBatchSize = publishBatchSize >= 0 ?
+            publishBatchSize :
+            DEFAULT_PUBLISH_BATCH_SIZE;
+    }
+
+    /** @return True if forced deploys and initial syncs install the Content Modules as Content Package **/
+    public boolean isDeployContentAsPackage() {
+        return deployContentAsPackage;
+    }
+
+    public void setDeployContentAsPackage(boolean deployContentAsPackage) {
+        this.deployContentAsPackage = deployContentAsPackage;
+    }
+
+    public boolean isCompareContentWithServer() {
+        return compareContentWithServer;
+    }
+
+    public void setCompareContentWithServer(boolean compareContentWithServer) {
+        this.compareContentWithServer = compareContentWithServer;
+    }
+
     public boolean isBooted() {
         return booted;
     }
@@ -462,6 +515,7 @@ public class ServerConfiguration
         private transient VirtualFile metaInfFolder;
         private transient VirtualFile filterFile;
         private transient Filter filter;
+        private transient volatile boolean filterValidated;
 
         public Module(@NotNull ServerConfiguration parent, @NotNull String moduleName, boolean partOfBuild, long lastModificationTimestamp) {
             this.parent = parent;
@@ -567,6 +621,19 @@ public class ServerConfiguration
             this.filter = filter;
         }
 
+        /** @return True if the cached Filter was checked against its filter.xml since the last invalidation **/
+        public boolean isFilterValidated() {
+            return filterValidated;
+        }
+
+        /**
+         * Marks the cached Filter as checked so that it is used as is until the next change batch
+         * or a change of the filter.xml invalidates it
+         */
+        public void setFilterValidated(boolean filterValidated) {
+            this.filterValidated = filterValidated;
+        }
+
         public boolean isIgnoreSymbolicNameMismatch() {
             return ignoreSymbolicNameMismatch;
         }
@@ -72,6 +72,10 @@ public class ServerConfigurationManager
     public static final String STOP_CONNECTION_TIMEOUT = "stopConnectionTimeout";
     public static final String PUBLISH_TYPE = "publishType";
     public static final String INSTALLATION_TYPE = "installationType";
+    public static final String PUBLISH_CONCURRENCY = "publishConcurrency";
+    public static final String PUBLISH_BATCH_SIZE = "publishBatchSize";
+    public static final String DEPLOY_CONTENT_AS_PACKAGE = "deployContentAsPackage";
+    public static final String COMPARE_CONTENT_WITH_SERVER = "compareContentWithServer";
     //AS TODO: 'default' is just here to be backwards compatible -> delete later
     public static final String DEFAULT = "default";
     public static final String DEFAULT_CONFIGURATION = "defaultConfiguration";
@@ -248,6 +252,10 @@ public class ServerConfigurationManager
             childNode.setAttribute(BUILD_WITH_MAVEN, serverConfiguration.isBuildWithMaven() + "");
             childNode.setAttribute(BUILD_WITH_MAVEN_TIMEOUT_IN_SECONDS, serverConfiguration.getMavenBuildTimeoutInSeconds() + "");
             childNode.setAttribute(LOG_FILTER, serverConfiguration.getLogFilter() + "");
+            childNode.setAttribute(PUBLISH_CONCURRENCY, serverConfiguration.getPublishConcurrency() + "");
+            childNode.setAttribute(PUBLISH_BATCH_SIZE, serverConfiguration.getPublishBatchSize() + "");
+            childNode.setAttribute(DEPLOY_CONTENT_AS_PACKAGE, serverConfiguration.isDeployContentAsPackage() + "");
+            childNode.setAttribute(COMPARE_CONTENT_WITH_SERVER, serverConfiguration.isCompareContentWithServer() + "");
             int j = 0;
             for(ServerConfiguration.Module module: serverConfiguration.getModuleList()) {
                 Element moduleChildNode = new Element("sscm-" + j++);
@@ -305,6 +313,10 @@ public class ServerConfigurationManager
             serverConfiguration.setBuildWithMaven(new Boolean(child.getAttributeValue(BUILD_WITH_MAVEN, "true")));
             serverConfiguration.setMavenBuildTimeoutInSeconds(new Integer(child.getAttributeValue(BUILD_WITH_MAVEN_TIMEOUT_IN_SECONDS, ServerConfiguration.DEFAULT_MAVEN_BUILD_TIME_OUT_IN_SECONDS + "")));
             serverConfiguration.setLogFilter(Util.convertToEnum(child.getAttributeValue(LOG_FILTER), ServerConfiguration.DEFAULT_LOG_FILTER));
+            serverConfiguration.setPublishConcurrency(Util.convertToInt(child.getAttributeValue(PUBLISH_CONCURRENCY), -1));
+            serverConfiguration.setPublishBatchSize(Util.convertToInt(child.getAttributeValue(PUBLISH_BATCH_SIZE), -1));
+            serverConfiguration.setDeployContentAsPackage(new Boolean(child.getAttributeValue(DEPLOY_CONTENT_AS_PACKAGE, ServerConfiguration.DEFAULT_DEPLOY_CONTENT_AS_PACKAGE + "")));
+            serverConfiguration.setCompareContentWithServer(new Boolean(child.getAttributeValue(COMPARE_CONTENT_WITH_SERVER, ServerConfiguration.DEFAULT_COMPARE_CONTENT_WITH_SERVER + "")));
             for(Element element: child.getChildren()) {
                 try {
                     String moduleName = element.getAttributeValue(MODULE_NAME, "");
@@ -97,6 +97,9 @@ public interface UnifiedModule {
     /** @return Name of the Build Directory Path including extension **/
     public String getBuildDirectoryPath();
 
+    /** @return Path of the Folder the classes are compiled into or null if not known **/
+    public String getOutputDirectoryPath();
+
     /** @return Root Directory Path of the Module **/
     public String getModuleDirectory();
 
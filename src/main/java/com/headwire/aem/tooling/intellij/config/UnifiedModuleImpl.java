@@ -243,6 +243,15 @@ public class UnifiedModuleImpl
         }
     }
 
+    @Override
+    public String getOutputDirectoryPath() {
+        if(mavenProject != null) {
+            return mavenProject.getOutputDirectory();
+        } else {
+            return CompilerPaths.getModuleOutputPath(module, false);
+        }
+    }
+
     @Override
     public String getModuleDirectory() {
         if(mavenProject != null) {
@@ -47,9 +47,15 @@ public class AEMPluginConfiguration
 
     public static final String COMPONENT_NAME = "AEM Plugin Configuration";
     public static final String DISPLAY_NAME = "AEM Plugin";
+    public static final int DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS = 50;
+    public static final int DEFAULT_MINIMUM_BATCH_SIZE = 10;
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 1000;
 
     private boolean incrementalBuilds = true;
     private int deployDelayInSeconds = -1;
+    private int minimumQuietPeriodInMillis = DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS;
+    private int minimumBatchSize = DEFAULT_MINIMUM_BATCH_SIZE;
+    private int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
     private String lastUsedServerConfiguration = "";
     private boolean listenToFileSystemEvents = true;
 
@@ -79,6 +85,30 @@ public class AEMPluginConfiguration
         this.deployDelayInSeconds = deployDelayInSeconds;
     }
 
+    public int getMinimumQuietPeriodInMillis() {
+        return minimumQuietPeriodInMillis;
+    }
+
+    public void setMinimumQuietPeriodInMillis(int minimumQuietPeriodInMillis) {
+        this.minimumQuietPeriodInMillis = minimumQuietPeriodInMillis;
+    }
+
+    public int getMinimumBatchSize() {
+        return minimumBatchSize;
+    }
+
+    public void setMinimumBatchSize(int minimumBatchSize) {
+        this.minimumBatchSize = minimumBatchSize;
+    }
+
+    public int getMaximumBatchSize() {
+        return maximumBatchSize;
+    }
+
+    public void setMaximumBatchSize(int maximumBatchSize) {
+        this.maximumBatchSize = maximumBatchSize;
+    }
+
     public String getLastUsedServerConfiguration() {
         return lastUsedServerConfiguration;
     }
@@ -147,6 +177,9 @@ public class AEMPluginConfiguration
             "deployDelayInSeconds",
             String.valueOf(incrementalBuilds ? deployDelayInSeconds : -1)
         );
+        aemNode.setAttribute("minimumQuietPeriodInMillis", String.valueOf(minimumQuietPeriodInMillis));
+        aemNode.setAttribute("minimumBatchSize", String.valueOf(minimumBatchSize));
+        aemNode.setAttribute("maximumBatchSize", String.valueOf(maximumBatchSize));
         aemNode.setAttribute("lastUsedServerConfiguration", lastUsedServerConfiguration);
         aemNode.setAttribute("listenToFileSystemEvents", listenToFileSystemEvents + "");
         root.addContent(aemNode);
@@ -163,10 +196,20 @@ public class AEMPluginConfiguration
             } catch(NumberFormatException e) {
                 deployDelayInSeconds = -1;
             }
+            minimumQuietPeriodInMillis = obtainInteger(aemNode, "minimumQuietPeriodInMillis", DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS);
+            minimumBatchSize = obtainInteger(aemNode, "minimumBatchSize", DEFAULT_MINIMUM_BATCH_SIZE);
+            maximumBatchSize = obtainInteger(aemNode, "maximumBatchSize", DEFAULT_MAXIMUM_BATCH_SIZE);
             lastUsedServerConfiguration = aemNode.getAttributeValue("lastUsedServerConfiguration", "");
             listenToFileSystemEvents = aemNode.getAttributeValue("listenToFileSystemEvents", "false").equals("true");
         }
     }
-}
 
+    private static int obtainInteger(Element node, String name, int defaultValue) {
+        try {
+            return Integer.parseInt(node.getAttributeValue(name, defaultValue + ""));
+        } catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
 
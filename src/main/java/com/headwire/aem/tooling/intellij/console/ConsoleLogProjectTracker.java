@@ -80,6 +80,7 @@ public class ConsoleLogProjectTracker
 
     public void initDefaultContent() {
         createNewContent(DEFAULT_CATEGORY);
+        ConsoleLogToolWindowFactory.createMetricsContent(myProject, ConsoleLog.getLogWindow(myProject));
 
         for(Notification notification : myInitial) {
             doPrintNotification(notification, ObjectUtils.assertNotNull(getConsole(notification)));
@@ -95,6 +95,17 @@ public class ConsoleLogToolWindowFactory
         contentManager.setSelectedContent(content);
     }
 
+    static void createMetricsContent(Project project, ToolWindow toolWindow) {
+        ContentManager contentManager = toolWindow.getContentManager();
+        Content generalContent = contentManager.getContent(0);
+        if (generalContent != null && contentManager.getContentCount() == 1) {
+            generalContent.setDisplayName("General");
+        }
+        // Added without selecting it so that the log stays in front
+        Content content = ContentFactory.SERVICE.getInstance().createContent(new DeployMetricsPanel(project), DeployMetricsPanel.TITLE, false);
+        contentManager.addContent(content);
+    }
+
     private static ActionToolbar createToolbar(Project project, Editor editor, ConsoleLogConsole console) {
         DefaultActionGroup group = new DefaultActionGroup();
         group.add(new EditNotificationSettings(project));
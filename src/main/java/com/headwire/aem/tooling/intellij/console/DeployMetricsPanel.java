@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.console;
+
+import com.headwire.aem.tooling.intellij.communication.DeployMetrics;
+import com.headwire.aem.tooling.intellij.communication.DeployMetricsManager;
+import com.headwire.aem.tooling.intellij.communication.MessageManager;
+import com.headwire.aem.tooling.intellij.communication.NodeTypeCache;
+import com.headwire.aem.tooling.intellij.communication.SerializationDataCache;
+import com.headwire.aem.tooling.intellij.util.ComponentProvider;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionPlaces;
+import com.intellij.openapi.actionSystem.ActionToolbar;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.AncestorListenerAdapter;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.table.JBTable;
+
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import javax.swing.event.AncestorEvent;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+
+/**
+ * AEM Console Tab showing the Deploy Metrics. The table is refreshed while the tab is shown
+ * and the metrics can be exported as JSON.
+ */
+public class DeployMetricsPanel
+    extends SimpleToolWindowPanel
+{
+    public static final String TITLE = "Deploy Metrics";
+    private static final int REFRESH_INTERVAL_IN_MILLIS = 2000;
+    private static final String[] COLUMN_NAMES = new String[] {
+        "Phase", "Calls", "Items", "Total (ms)", "Average (ms)", "Max (ms)", "Items / s", "Latency Histogram (ms)"
+    };
+
+    private final Project project;
+    private final DeployMetrics deployMetrics;
+    private final MetricsTableModel tableModel = new MetricsTableModel();
+    private final JBLabel cacheLabel = new JBLabel();
+    private final Timer refreshTimer;
+
+    public DeployMetricsPanel(Project project) {
+        super(false, true);
+        this.project = project;
+        this.deployMetrics = DeployMetricsManager.getDeployMetrics(project);
+
+        JBTable table = new JBTable(tableModel);
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(ScrollPaneFactory.createScrollPane(table), BorderLayout.CENTER);
+        content.add(cacheLabel, BorderLayout.SOUTH);
+        setContent(content);
+
+        DefaultActionGroup group = new DefaultActionGroup();
+        group.add(new RefreshAction());
+        group.add(new ResetAction());
+        group.add(new ExportAction());
+        ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar(ActionPlaces.UNKNOWN, group, false);
+        toolbar.setTargetComponent(table);
+        setToolbar(toolbar.getComponent());
+
+        refreshTimer = new Timer(
+            REFRESH_INTERVAL_IN_MILLIS,
+            new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    refresh();
+                }
+            }
+        );
+        // Only refresh when the Tab is visible
+        addAncestorListener(new AncestorListenerAdapter() {
+            @Override
+            public void ancestorAdded(AncestorEvent event) {
+                refresh();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void ancestorRemoved(AncestorEvent event) {
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    private void refresh() {
+        tableModel.fireTableDataChanged();
+        NodeTypeCache nodeTypeCache = NodeTypeCache.getInstance();
+        SerializationDataCache serializationDataCache = SerializationDataCache.getInstance();
+        cacheLabel.setText(
+            "Global Caches of all Projects -> Node Type Cache: " + nodeTypeCache.getHitCount() + " Hits, " + nodeTypeCache.getMissCount() + " Misses" +
+            String.format(
+                " | Serialization Data Cache: %.0f%% Hit Rate (%d Hits, %d Misses, %d KB)",
+                serializationDataCache.getHitRate() * 100, serializationDataCache.getHitCount(),
+                serializationDataCache.getMissCount(), serializationDataCache.getSize() / 1024
+            )
+        );
+    }
+
+    private static String formatMillis(double millis) {
+        return String.format("%.1f", millis);
+    }
+
+    private static String formatHistogram(long[] histogram) {
+        StringBuilder ret = new StringBuilder();
+        for(int i = 0; i < histogram.length; i++) {
+            if(histogram[i] > 0) {
+                if(ret.length() > 0) {
+                    ret.append(", ");
+                }
+                ret.append(
+                    i < DeployMetrics.HISTOGRAM_BOUNDS.length ?
+                        "<" + DeployMetrics.HISTOGRAM_BOUNDS[i] :
+                        ">=" + DeployMetrics.HISTOGRAM_BOUNDS[DeployMetrics.HISTOGRAM_BOUNDS.length - 1]
+                ).append(": ").append(histogram[i]);
+            }
+        }
+        return ret.toString();
+    }
+
+    private class MetricsTableModel
+        extends AbstractTableModel
+    {
+        @Override
+        public int getRowCount() {
+            return DeployMetrics.Phase.values().length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            DeployMetrics.PhaseStatistics phaseStatistics = deployMetrics.getStatistics(DeployMetrics.Phase.values()[rowIndex]);
+            switch(columnIndex) {
+                case 0:
+                    return phaseStatistics.getPhase().getTitle();
+                case 1:
+                    return phaseStatistics.getCount();
+                case 2:
+                    return phaseStatistics.getItems();
+                case 3:
+                    return formatMillis(phaseStatistics.getTotalMillis());
+                case 4:
+                    return formatMillis(phaseStatistics.getAverageMillis());
+                case 5:
+                    return formatMillis(phaseStatistics.getMaxMillis());
+                case 6:
+                    return formatMillis(phaseStatistics.getItemsPerSecond());
+                default:
+                    return formatHistogram(phaseStatistics.getHistogram());
+            }
+        }
+    }
+
+    private class RefreshAction extends DumbAwareAction {
+        public RefreshAction() {
+            super("Refresh", "Refresh the Deploy Metrics", AllIcons.Actions.Refresh);
+        }
+
+        @Override
+        public void actionPerformed(AnActionEvent e) {
+            refresh();
+        }
+    }
+
+    private class ResetAction extends DumbAwareAction {
+        public ResetAction() {
+            super("Reset", "Reset the Deploy Metrics of this Project", AllIcons.Actions.GC);
+        }
+
+        @Override
+        public void actionPerformed(AnActionEvent e) {
+            // The Counters of the global Caches are not reset as other Projects use them, too
+            deployMetrics.reset();
+            refresh();
+        }
+    }
+
+    private class ExportAction extends DumbAwareAction {
+        public ExportAction() {
+            super("Export", "Export the Deploy Metrics as JSON", AllIcons.Actions.Export);
+        }
+
+        @Override
+        public void actionPerformed(AnActionEvent e) {
+            FileSaverDescriptor descriptor = new FileSaverDescriptor(TITLE, "Export the Deploy Metrics as JSON File", "json");
+            VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project)
+                .save(project.getBaseDir(), "deploy-metrics.json");
+            if(target != null) {
+                try {
+                    FileUtil.writeToFile(target.getFile(), deployMetrics.toJson());
+                } catch(IOException ex) {
+                    MessageManager messageManager = ComponentProvider.getComponent(project, MessageManager.class);
+                    if(messageManager != null) {
+                        messageManager.showAlertWithArguments("deploy.metrics.export.failed", target.getFile().getPath(), ex.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.console;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+
+/**
+ * Shows the Quiet Period and Batch Size the automatic deployment currently uses in the Status Bar.
+ */
+public class DeploySchedulerStatusWidget
+    implements StatusBarWidget, StatusBarWidget.TextPresentation
+{
+    public static final String WIDGET_ID = "AEM.Deploy.Scheduler";
+
+    private StatusBar statusBar;
+    private volatile String text = "AEM Deploy: -";
+    private volatile String tooltip = "AEM Deploy: no changes deployed yet";
+
+    /**
+     * Updates the shown values. Can be called from any Thread.
+     *
+     * @param quietPeriodInMillis Current Quiet Period
+     * @param batchSize Current Batch Size
+     * @param latencyInMillis Average latency of a command or a negative number if not known yet
+     */
+    public void update(long quietPeriodInMillis, int batchSize, double latencyInMillis) {
+        tooltip = "AEM Deploy: Quiet Period " + quietPeriodInMillis + "ms, Batch Size " + batchSize +
+            (latencyInMillis < 0 ? "" : String.format(", Latency %.1fms per Change", latencyInMillis));
+        String newText = "AEM Deploy: " + quietPeriodInMillis + "ms / " + batchSize;
+        if(newText.equals(text)) {
+            return;
+        }
+        text = newText;
+        ApplicationManager.getApplication().invokeLater(
+            new Runnable() {
+                @Override
+                public void run() {
+                    if(statusBar != null) {
+                        statusBar.updateWidget(WIDGET_ID);
+                    }
+                }
+            }
+        );
+    }
+
+    @NotNull
+    @Override
+    public String ID() {
+        return WIDGET_ID;
+    }
+
+    @Nullable
+    @Override
+    public WidgetPresentation getPresentation(@NotNull PlatformType type) {
+        return this;
+    }
+
+    @Override
+    public void install(@NotNull StatusBar statusBar) {
+        this.statusBar = statusBar;
+    }
+
+    @Override
+    public void dispose() {
+        statusBar = null;
+    }
+
+    @NotNull
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @NotNull
+    @Override
+    public String getMaxPossibleText() {
+        return "AEM Deploy: 00000ms / 0000";
+    }
+
+    @Override
+    public float getAlignment() {
+        return Component.CENTER_ALIGNMENT;
+    }
+
+    @Nullable
+    @Override
+    public String getTooltipText() {
+        return tooltip;
+    }
+
+    @Nullable
+    @Override
+    public Consumer<MouseEvent> getClickConsumer() {
+        return null;
+    }
+}
@@ -29,6 +29,7 @@ import com.headwire.aem.tooling.intellij.eclipse.stub.IResource;
 import com.headwire.aem.tooling.intellij.eclipse.stub.IStatus;
 import com.headwire.aem.tooling.intellij.eclipse.stub.Status;
 import com.headwire.aem.tooling.intellij.eclipse.wrapper.ResourcesPlugin;
+import com.headwire.aem.tooling.intellij.io.CompiledFilter;
 import com.headwire.aem.tooling.intellij.util.Util;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.apache.commons.io.IOUtils;
@@ -86,6 +87,10 @@ public class ProjectUtil {
         // then we just return this one. If the filter is outdated then we just reload if the cache file
         // and if there is not file then we search for it. At the end we place both the file and filter in the cache.
         Filter filter = module.getFilter();
+        if(filter != null && module.isFilterValidated()) {
+            // Already checked in this batch and the filter.xml was not changed since
+            return filter;
+        }
         VirtualFile filterFile = module.getFilterFile();
         if(filter != null) {
             if(Util.isOutdated(module.getFilterFile())) {
@@ -124,11 +129,10 @@ public class ProjectUtil {
             }
         }
         if(filter == null && filterFile != null) {
-            FilterLocator filterLocator = Activator.getDefault().getFilterLocator();
             InputStream contents = null;
             try {
                 contents = filterFile.getInputStream();
-                filter = filterLocator.loadFilter(contents);
+                filter = CompiledFilter.load(contents);
                 module.setFilter(filter);
                 Util.setModificationStamp(filterFile);
             } catch (IOException e) {
@@ -140,6 +144,7 @@ public class ProjectUtil {
                 IOUtils.closeQuietly(contents);
             }
         }
+        module.setFilterValidated(filter != null);
         return filter;
     }
 
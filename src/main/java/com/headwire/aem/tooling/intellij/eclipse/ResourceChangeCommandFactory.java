@@ -18,7 +18,11 @@
 
 package com.headwire.aem.tooling.intellij.eclipse;
 
+import com.headwire.aem.tooling.intellij.communication.ContentCoverageIndex;
+import com.headwire.aem.tooling.intellij.communication.ContentCoverageIndexManager;
 import com.headwire.aem.tooling.intellij.communication.MessageManager;
+import com.headwire.aem.tooling.intellij.communication.NodeTypeCache;
+import com.headwire.aem.tooling.intellij.communication.SerializationDataCache;
 import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
 import com.headwire.aem.tooling.intellij.eclipse.stub.CoreException;
 import com.headwire.aem.tooling.intellij.eclipse.stub.IFile;
@@ -31,6 +35,7 @@ import com.headwire.aem.tooling.intellij.eclipse.stub.ResourceUtil;
 import com.headwire.aem.tooling.intellij.eclipse.stub.Status;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import org.apache.commons.io.IOUtils;
 import org.apache.sling.ide.eclipse.core.internal.Activator;
 import org.apache.sling.ide.filter.Filter;
@@ -48,6 +53,7 @@ import org.apache.sling.ide.transport.RepositoryException;
 import org.apache.sling.ide.transport.ResourceProxy;
 import org.apache.sling.ide.util.PathUtil;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -180,13 +186,11 @@ public class ResourceChangeCommandFactory {
         ResourceProxy resourceProxy = null;
 
         if (serializationManager.isSerializationFile(resource.getLocation().toOSString())) {
-            InputStream contents = null;
             try {
                 IFile file = (IFile) resource;
-                contents = file.getContents();
                 String resourceLocation = file.getFullPath().makeRelativeTo(syncDirectory.getFullPath())
                     .toPortableString();
-                resourceProxy = serializationManager.readSerializationData(resourceLocation, contents);
+                resourceProxy = readSerializationData(file, resourceLocation);
                 normaliseResourceChildren(file, resourceProxy, syncDirectory, repository);
 
 
@@ -216,8 +220,6 @@ public class ResourceChangeCommandFactory {
 //                    + resource.getFullPath(), e);
 //                StatusManager.getManager().handle(s, StatusManager.LOG | StatusManager.SHOW);
                 return null;
-            } finally {
-                IOUtils.closeQuietly(contents);
             }
         } else {
             //AS TODO: Start the handling of .content.xml sub folder content. This can happen when there are images etc
@@ -397,6 +399,23 @@ public class ResourceChangeCommandFactory {
         Logger logger = Activator.getDefault().getPluginLogger();
         logger.trace("Found plain nt:folder candidate at {0}, trying to find a covering resource for it",
             changedResource.getProjectRelativePath());
+        ContentCoverageIndex coverageIndex = getCoverageIndex(changedResource, syncDirectory);
+        if(coverageIndex != null) {
+            // The index knows the nearest serialization file which is the only one that can cover the resource
+            String coveringFilePath = coverageIndex.getCoveringSerializationFile(changedResource.getLocation().toPortableString());
+            if(coveringFilePath == null) {
+                logger.trace("No serialization data found above {0} in the coverage index", resourceLocation);
+                return null;
+            }
+            IPath parentSerializationFilePath = Path.fromOSString(coveringFilePath).makeRelativeTo(
+                syncDirectory.getLocation());
+            IFile possibleSerializationFile = syncDirectory.getFile(parentSerializationFilePath);
+            if(possibleSerializationFile.exists()) {
+                return getCoveredSerializationData(possibleSerializationFile, parentSerializationFilePath, resourceLocation);
+            }
+            // The index is behind the file system so we look for ourselves
+            logger.trace("Indexed serialization data file {0} does not exist anymore", coveringFilePath);
+        }
         // don't use isRoot() to prevent infinite loop when the final path is '//'
         while (serializationFilePath.segmentCount() != 0) {
             serializationFilePath = serializationFilePath.removeLastSegments(1);
@@ -425,61 +444,104 @@ public class ResourceChangeCommandFactory {
                     continue;
                 }
 
-                InputStream contents = possibleSerializationFile.getContents();
-                ResourceProxy serializationData;
-                try {
-                    serializationData = serializationManager.readSerializationData(
-                        parentSerializationFilePath.toPortableString(), contents);
-                } finally {
-                    IOUtils.closeQuietly(contents);
-                }
-
-                //AS TODO: This does not work if there is a a missing .xontent.xml file for each parent folder outside
-                //AS TODO: of the filter path as they. I am not sure whey this must called covers()
-                //AS TODO: This is not an easy fix as the node fails to be created as the ItemDefinitionProviderImpl.getQNodeDefinition()
-                //AS TODO: isn't able to find the node definition.
-                String repositoryPath = serializationManager.getRepositoryPath(resourceLocation);
-                String potentialPath = serializationData.getPath();
-                boolean covered = serializationData.covers(repositoryPath);
-
-                logger.trace(
-                    "Found possible serialization data at {0}. Resource :{1} ; our resource: {2}. Covered: {3}",
-                    parentSerializationFilePath, potentialPath, repositoryPath, covered);
-                // note what we don't need to normalize the children here since this resource's data is covered by
-                // another resource
-                if (covered) {
-                    return serializationData.getChild(repositoryPath);
-                }
-
-                break;
+                return getCoveredSerializationData(possibleSerializationFile, parentSerializationFilePath, resourceLocation);
             }
         }
 
         return null;
     }
 
+    /**
+     * @param serializationFile the serialization file of a parent folder
+     * @param serializationFilePath the serialization file path relative to the sync directory
+     * @param resourceLocation the resource location relative to the sync directory
+     * @return the serialization data of the resource if it is covered by the given file or null if not
+     * @throws IOException
+     */
+    private ResourceProxy getCoveredSerializationData(IFile serializationFile, IPath serializationFilePath,
+                                                      String resourceLocation) throws IOException {
+        ResourceProxy serializationData = readSerializationData(
+            serializationFile, serializationFilePath.toPortableString());
+
+        //AS TODO: This does not work if there is a a missing .xontent.xml file for each parent folder outside
+        //AS TODO: of the filter path as they. I am not sure whey this must called covers()
+        //AS TODO: This is not an easy fix as the node fails to be created as the ItemDefinitionProviderImpl.getQNodeDefinition()
+        //AS TODO: isn't able to find the node definition.
+        String repositoryPath = serializationManager.getRepositoryPath(resourceLocation);
+        String potentialPath = serializationData.getPath();
+        boolean covered = serializationData.covers(repositoryPath);
+
+        Activator.getDefault().getPluginLogger().trace(
+            "Found possible serialization data at {0}. Resource :{1} ; our resource: {2}. Covered: {3}",
+            serializationFilePath, potentialPath, repositoryPath, covered);
+        // note what we don't need to normalize the children here since this resource's data is covered by
+        // another resource
+        return covered ? serializationData.getChild(repositoryPath) : null;
+    }
+
+    /** @return the coverage index of the sync directory or null if the sync directory is not a virtual file **/
+    private ContentCoverageIndex getCoverageIndex(IResource resource, IFolder syncDirectory) {
+        ContentCoverageIndex ret = null;
+        VirtualFile syncDirectoryFile = syncDirectory.getVirtualFile();
+        ServerConfiguration.Module module = resource.getModule();
+        if(syncDirectoryFile != null && module != null && module.getProject() != null) {
+            ContentCoverageIndexManager coverageIndexManager = module.getProject().getComponent(ContentCoverageIndexManager.class);
+            if(coverageIndexManager != null) {
+                ret = coverageIndexManager.getCoverageIndex(syncDirectoryFile);
+            }
+        }
+        return ret;
+    }
+
     private ResourceProxy buildResourceProxy(String resourceLocation, IResource serializationResource,
                                              IFolder syncDirectory, String fallbackPrimaryType, Repository repository) throws CoreException, IOException {
         if (serializationResource instanceof IFile) {
             IFile serializationFile = (IFile) serializationResource;
-            InputStream contents = null;
-            try {
-                contents = serializationFile.getContents();
-                String serializationFilePath = serializationResource.getFullPath()
-                    .makeRelativeTo(syncDirectory.getFullPath()).toPortableString();
-                ResourceProxy resourceProxy = serializationManager.readSerializationData(serializationFilePath, contents);
-                normaliseResourceChildren(serializationFile, resourceProxy, syncDirectory, repository);
+            String serializationFilePath = serializationResource.getFullPath()
+                .makeRelativeTo(syncDirectory.getFullPath()).toPortableString();
+            ResourceProxy resourceProxy = readSerializationData(serializationFile, serializationFilePath);
+            normaliseResourceChildren(serializationFile, resourceProxy, syncDirectory, repository);
 
-                return resourceProxy;
-            } finally {
-                IOUtils.closeQuietly(contents);
-            }
+            return resourceProxy;
         }
 
         return new ResourceProxy(serializationManager.getRepositoryPath(resourceLocation), Collections.singletonMap(
             Repository.JCR_PRIMARY_TYPE, (Object) fallbackPrimaryType));
     }
 
+    /**
+     * Reads the Serialization Data of the given file. The parsed data is cached for the Modification Stamp
+     * of the file as it is read multiple times during a deployment.
+     *
+     * @param serializationFile the file which contains the serialization data
+     * @param serializationFilePath the file path relative to the sync directory
+     * @return the parsed serialization data which the caller may modify
+     * @throws IOException
+     */
+    private ResourceProxy readSerializationData(IFile serializationFile, String serializationFilePath) throws IOException {
+        VirtualFile virtualFile = serializationFile.getVirtualFile();
+        if(virtualFile == null) {
+            InputStream contents = serializationFile.getContents();
+            try {
+                return serializationManager.readSerializationData(serializationFilePath, contents);
+            } finally {
+                IOUtils.closeQuietly(contents);
+            }
+        }
+        SerializationDataCache cache = SerializationDataCache.getInstance();
+        Object key = virtualFile instanceof VirtualFileWithId ? ((VirtualFileWithId) virtualFile).getId() : virtualFile.getPath();
+        long modificationStamp = virtualFile.getModificationStamp();
+        ResourceProxy ret = cache.get(key, modificationStamp);
+        if(ret == null) {
+            byte[] contents = virtualFile.contentsToByteArray();
+            ret = serializationManager.readSerializationData(serializationFilePath, new ByteArrayInputStream(contents));
+            if(ret != null) {
+                cache.put(key, modificationStamp, ret, contents.length);
+            }
+        }
+        return ret;
+    }
+
     /**
      * Normalises the of the specified <tt>resourceProxy</tt> by comparing the serialization data and the filesystem
      * data
@@ -495,8 +557,7 @@ public class ResourceChangeCommandFactory {
 
         // TODO - this logic should be moved to the serializationManager
         try {
-            SerializationKindManager skm = new SerializationKindManager();
-            skm.init(repository);
+            SerializationKindManager skm = NodeTypeCache.getInstance().getSerializationKindManager(repository);
 
             String primaryType = (String) resourceProxy.getProperties().get(Repository.JCR_PRIMARY_TYPE);
             List<String> mixinTypesList = getMixinTypes(resourceProxy);
@@ -18,6 +18,7 @@
 
 package com.headwire.aem.tooling.intellij.io;
 
+import com.headwire.aem.tooling.intellij.communication.DeployMetricsManager;
 import com.headwire.aem.tooling.intellij.config.UnifiedModule;
 import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
 import com.headwire.aem.tooling.intellij.util.Util;
@@ -26,9 +27,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileSystem;
 import com.intellij.openapi.diagnostic.Logger;
 import org.apache.commons.io.IOUtils;
-import org.apache.sling.ide.eclipse.core.internal.Activator;
 import org.apache.sling.ide.filter.Filter;
-import org.apache.sling.ide.filter.FilterLocator;
 import org.apache.sling.ide.io.ConnectorException;
 import org.apache.sling.ide.io.SlingProject;
 import org.apache.sling.ide.io.SlingResource;
@@ -51,6 +50,9 @@ public class SlingProject4IntelliJ
 
     private ServerConfiguration.Module module;
     private SlingResource syncDirectory;
+    /** Last Filter of the Module and its timed Wrapper so that all callers get the same instance **/
+    private Filter wrappedFilter;
+    private Filter timedFilter;
 
     public SlingProject4IntelliJ(ServerConfiguration.Module module) {
         logger.debug("Getting Started, Module: " + module);
@@ -92,6 +94,10 @@ public class SlingProject4IntelliJ
         // then we just return this one. If the filter is outdated then we just reload if the cache file
         // and if there is not file then we search for it. At the end we place both the file and filter in the cache.
         Filter filter = module.getFilter();
+        if(filter != null && module.isFilterValidated()) {
+            // Already checked in this batch and the filter.xml was not changed since
+            return wrap(filter);
+        }
         VirtualFile filterFile = module.getFilterFile();
         if(filter != null) {
             if(Util.isOutdated(module.getFilterFile())) {
@@ -134,12 +140,11 @@ public class SlingProject4IntelliJ
             }
         }
         if(filter == null && filterFile != null) {
-            FilterLocator filterLocator = Activator.getDefault().getFilterLocator();
             InputStream contents = null;
             try {
                 contents = filterFile.getInputStream();
                 logger.debug("Filter File Content: '" + contents + "'");
-                filter = filterLocator.loadFilter(contents);
+                filter = CompiledFilter.load(contents);
                 module.setFilter(filter);
                 Util.setModificationStamp(filterFile);
             } catch (IOException e) {
@@ -153,7 +158,17 @@ public class SlingProject4IntelliJ
                 IOUtils.closeQuietly(contents);
             }
         }
-        return filter;
+        module.setFilterValidated(filter != null);
+        return wrap(filter);
+    }
+
+    /** The filter is cached in the module so it is only wrapped on the way out to time its evaluations **/
+    private synchronized Filter wrap(Filter filter) {
+        if(filter != wrappedFilter) {
+            wrappedFilter = filter;
+            timedFilter = DeployMetricsManager.getDeployMetrics(module.getProject()).wrap(filter);
+        }
+        return timedFilter;
     }
 
     private VirtualFile findFileOrFolder(VirtualFile rootFile, String name, boolean isFolder) {
@@ -18,6 +18,8 @@
 
 package com.headwire.aem.tooling.intellij.io;
 
+import com.headwire.aem.tooling.intellij.communication.ContentHashIndexManager;
+import com.headwire.aem.tooling.intellij.config.ServerConfiguration;
 import com.headwire.aem.tooling.intellij.util.Util;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.apache.sling.ide.filter.Filter;
@@ -73,9 +75,23 @@ public class SlingResource4IntelliJ
     public boolean isModified() {
         boolean ret = true;
         if(file != null) {
-            Long modificationTimestamp = Util.getModificationStamp(file);
-            Long fileModificationTimestamp = file.getTimeStamp();
-            ret = modificationTimestamp < fileModificationTimestamp;
+            ContentHashIndexManager contentHashIndexManager = null;
+            ServerConfiguration.Module module = null;
+            if(project instanceof SlingProject4IntelliJ) {
+                module = ((SlingProject4IntelliJ) project).getModule();
+            }
+            if(module != null && module.getProject() != null) {
+                // Only a Project Component so there is no need to fall back to the Application
+                contentHashIndexManager = module.getProject().getComponent(ContentHashIndexManager.class);
+            }
+            if(contentHashIndexManager != null) {
+                // The Content Hash decides so that a new timestamp with the same content is not deployed again
+                ret = contentHashIndexManager.isModified(module, file);
+            } else {
+                Long modificationTimestamp = Util.getModificationStamp(file);
+                Long fileModificationTimestamp = file.getTimeStamp();
+                ret = modificationTimestamp < fileModificationTimestamp;
+            }
         }
         return ret;
     }
@@ -32,6 +32,9 @@ public class AEMPluginConfigurationDialog {
     private JSpinner deployDelay;
     private JLabel deployDelayLabel;
     private JCheckBox listenToFileSystemEvents;
+    private JSpinner minimumQuietPeriod;
+    private JSpinner minimumBatchSize;
+    private JSpinner maximumBatchSize;
 
     public AEMPluginConfigurationDialog() {
     }
@@ -44,18 +47,27 @@ public class AEMPluginConfigurationDialog {
         incrementalBuild.setSelected(data.isIncrementalBuilds());
         deployDelay.setValue(data.getDeployDelayInSeconds());
         listenToFileSystemEvents.setSelected(data.isListenToFileSystemEvents());
+        minimumQuietPeriod.setValue(data.getMinimumQuietPeriodInMillis());
+        minimumBatchSize.setValue(data.getMinimumBatchSize());
+        maximumBatchSize.setValue(data.getMaximumBatchSize());
     }
 
     public void getData(AEMPluginConfiguration data) {
         data.setIncrementalBuilds(incrementalBuild.isSelected());
         data.setDeployDelayInSeconds(UIUtil.obtainInteger(deployDelay, -1));
         data.setListenToFileSystemEvents(listenToFileSystemEvents.isSelected());
+        data.setMinimumQuietPeriodInMillis(UIUtil.obtainInteger(minimumQuietPeriod, AEMPluginConfiguration.DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS));
+        data.setMinimumBatchSize(UIUtil.obtainInteger(minimumBatchSize, AEMPluginConfiguration.DEFAULT_MINIMUM_BATCH_SIZE));
+        data.setMaximumBatchSize(UIUtil.obtainInteger(maximumBatchSize, AEMPluginConfiguration.DEFAULT_MAXIMUM_BATCH_SIZE));
     }
 
     public boolean isModified(AEMPluginConfiguration data) {
         return incrementalBuild.isSelected() != data.isIncrementalBuilds() ||
             listenToFileSystemEvents.isSelected() != data.isListenToFileSystemEvents() ||
-            UIUtil.obtainInteger(deployDelay, -1) != data.getDeployDelayInSeconds() ;
+            UIUtil.obtainInteger(deployDelay, -1) != data.getDeployDelayInSeconds() ||
+            UIUtil.obtainInteger(minimumQuietPeriod, AEMPluginConfiguration.DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS) != data.getMinimumQuietPeriodInMillis() ||
+            UIUtil.obtainInteger(minimumBatchSize, AEMPluginConfiguration.DEFAULT_MINIMUM_BATCH_SIZE) != data.getMinimumBatchSize() ||
+            UIUtil.obtainInteger(maximumBatchSize, AEMPluginConfiguration.DEFAULT_MAXIMUM_BATCH_SIZE) != data.getMaximumBatchSize() ;
     }
 
 }
@@ -48,6 +48,8 @@ public class ServerConfigurationDialog
     private JTextField connectionContextPath;
     private JSpinner stopConnectionTimeout;
     private JSpinner startConnectionTimeout;
+    private JSpinner publishConcurrency;
+    private JSpinner publishBatchSize;
     private JRadioButton neverAutomaticallyPublishContentRadioButton;
     private JRadioButton automaticallyPublishOnChangeRadioButton;
     private JRadioButton automaticallyPublishOnBuildRadioButton;
@@ -59,6 +61,8 @@ public class ServerConfigurationDialog
     private JCheckBox buildWithMaven;
     private JCheckBox defaultDebugConfiguration;
     private JCheckBox defaultRunConfiguration;
+    private JCheckBox deployContentAsPackage;
+    private JCheckBox compareContentWithServer;
     @Deprecated //AS TODO: Remove later as soon as the Cancel Build Action is implemented
     private JTextField mavenBuildTimeoutInSeconds;
 
@@ -148,6 +152,10 @@ public class ServerConfigurationDialog
                     automaticallyPublishOnBuildRadioButton.isSelected() ? ServerConfiguration.PublishType.automaticallyOnBuild :
                         null;
         ret.setPublishType(publishType);
+        ret.setPublishConcurrency(UIUtil.obtainInteger(publishConcurrency, -1));
+        ret.setPublishBatchSize(UIUtil.obtainInteger(publishBatchSize, -1));
+        ret.setDeployContentAsPackage(deployContentAsPackage.isSelected());
+        ret.setCompareContentWithServer(compareContentWithServer.isSelected());
         ServerConfiguration.InstallationType installationType =
             installBundlesViaBundleRadioButton.isSelected() ? ServerConfiguration.InstallationType.installViaBundleUpload :
                 installBundlesDirectlyFromRadioButton.isSelected() ? ServerConfiguration.InstallationType.installViaBundleUpload :
@@ -179,6 +187,10 @@ public class ServerConfigurationDialog
             connectionContextPath.setText(serverConfiguration.getContextPath());
             startConnectionTimeout.setValue(serverConfiguration.getStartConnectionTimeoutInSeconds());
             stopConnectionTimeout.setValue(serverConfiguration.getStopConnectionTimeoutInSeconds());
+            publishConcurrency.setValue(serverConfiguration.getPublishConcurrency());
+            publishBatchSize.setValue(serverConfiguration.getPublishBatchSize());
+            deployContentAsPackage.setSelected(serverConfiguration.isDeployContentAsPackage());
+            compareContentWithServer.setSelected(serverConfiguration.isCompareContentWithServer());
             switch(serverConfiguration.getPublishType()) {
                 case never:
                     neverAutomaticallyPublishContentRadioButton.setSelected(true);
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prefix Tree of File Paths split into their folders. It finds the value of the longest
+ * registered path that contains a given path in the length of that path independent of the
+ * number of registered paths.
+ *
+ * Forward and backward slashes are both handled as separator.
+ */
+public class PathTrie<V> {
+
+    /** Registered Path with its Value **/
+    public static class Entry<V> {
+        private final String path;
+        private final V value;
+
+        private Entry(String path, V value) {
+            this.path = path;
+            this.value = value;
+        }
+
+        /** @return Path as it was registered **/
+        public String getPath() {
+            return path;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+    private static class Node<V> {
+        private Map<String, Node<V>> children;
+        private Entry<V> entry;
+
+        private Node<V> getChild(String name) {
+            return children == null ? null : children.get(name);
+        }
+
+        private Node<V> obtainChild(String name) {
+            if(children == null) {
+                children = new HashMap<String, Node<V>>();
+            }
+            Node<V> ret = children.get(name);
+            if(ret == null) {
+                ret = new Node<V>();
+                children.put(name, ret);
+            }
+            return ret;
+        }
+    }
+
+    private final Node<V> root = new Node<V>();
+    private int size;
+
+    /**
+     * Registers a value for a path and anything below it
+     *
+     * @param path Path to register
+     * @param value Value of the path
+     * @return False if the path was already registered in which case the first value is kept
+     */
+    public boolean put(String path, V value) {
+        Node<V> node = root;
+        int start = 0;
+        while(start < path.length()) {
+            int end = nextSeparator(path, start);
+            if(end > start) {
+                node = node.obtainChild(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        if(node.entry != null) {
+            return false;
+        }
+        node.entry = new Entry<V>(path, value);
+        size++;
+        return true;
+    }
+
+    /**
+     * @param path Path to look up
+     * @return Entry of the longest registered path that is the given path or one of its parents. Null if there is none
+     */
+    public Entry<V> find(String path) {
+        Node<V> node = root;
+        Entry<V> ret = root.entry;
+        int start = 0;
+        while(start < path.length()) {
+            int end = nextSeparator(path, start);
+            if(end > start) {
+                node = node.getChild(path.substring(start, end));
+                if(node == null) {
+                    break;
+                }
+                if(node.entry != null) {
+                    ret = node.entry;
+                }
+            }
+            start = end + 1;
+        }
+        return ret;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int nextSeparator(String path, int start) {
+        for(int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if(c == '/' || c == '\\') {
+                return i;
+            }
+        }
+        return path.length();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveDeploySchedulerTest {
+
+    private static final long MAXIMUM_DELAY = 5000;
+
+    @Test
+    public void testFastAndSlowServer() throws Exception {
+        AdaptiveDeployScheduler scheduler = new AdaptiveDeployScheduler();
+        assertEquals("Wrong Quiet Period without Measurement", AdaptiveDeployScheduler.DEFAULT_QUIET_PERIOD_IN_MILLIS, scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY));
+
+        // Local Server: 2ms per Command
+        scheduler.recordLatency(10, TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals("Fast Server must get the shortest Quiet Period", AdaptiveDeployScheduler.DEFAULT_MINIMUM_QUIET_PERIOD_IN_MILLIS, scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY));
+        assertEquals("Fast Server must get the largest Batch", AdaptiveDeployScheduler.DEFAULT_MAXIMUM_BATCH_SIZE, scheduler.getBatchSize());
+
+        // Shared Server: 250ms per Command
+        scheduler = new AdaptiveDeployScheduler();
+        scheduler.recordLatency(4, TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals("Wrong Quiet Period of slow Server", 1250, scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY));
+        assertEquals("Wrong Batch Size of slow Server", 20, scheduler.getBatchSize());
+        assertEquals("Quiet Period must not exceed the Maximum Delay", 1000, scheduler.getQuietPeriodInMillis(1000));
+    }
+
+    @Test
+    public void testUserBounds() throws Exception {
+        AdaptiveDeployScheduler scheduler = new AdaptiveDeployScheduler();
+        scheduler.setBounds(200, 50, 100);
+        assertEquals("Wrong Batch Size without Measurement", 100, scheduler.getBatchSize());
+
+        // Local Server: 2ms per Command
+        scheduler.recordLatency(10, TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals("Quiet Period must not go below the user's Minimum", 200, scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY));
+        assertEquals("Batch Size must not exceed the user's Maximum", 100, scheduler.getBatchSize());
+
+        // Shared Server: 250ms per Command
+        scheduler = new AdaptiveDeployScheduler();
+        scheduler.setBounds(200, 50, 100);
+        scheduler.recordLatency(4, TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals("Batch Size must not go below the user's Minimum", 50, scheduler.getBatchSize());
+
+        // Invalid Bounds fall back to the Defaults and the Maximum is never below the Minimum
+        scheduler.setBounds(-1, 0, 5);
+        assertEquals("Wrong Batch Size with a Maximum below the Default Minimum", AdaptiveDeployScheduler.DEFAULT_MINIMUM_BATCH_SIZE, scheduler.getBatchSize());
+        scheduler.setBounds(-1, 0, 0);
+        assertEquals("Wrong Batch Size with the Default Bounds", 20, scheduler.getBatchSize());
+    }
+
+    @Test
+    public void testBacklogStretchesQuietPeriod() throws Exception {
+        AdaptiveDeployScheduler scheduler = new AdaptiveDeployScheduler();
+        scheduler.recordLatency(1, TimeUnit.MILLISECONDS.toNanos(250));
+        long quietPeriod = scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY);
+        for(int i = 0; i < 20; i++) {
+            scheduler.recordQueueDepth(100);
+        }
+        long stretched = scheduler.getQuietPeriodInMillis(MAXIMUM_DELAY);
+        assertTrue("Backlog did not stretch the Quiet Period: " + stretched, stretched > quietPeriod);
+        assertEquals("Stretched Quiet Period must not exceed the Maximum Delay", MAXIMUM_DELAY, stretched);
+    }
+}
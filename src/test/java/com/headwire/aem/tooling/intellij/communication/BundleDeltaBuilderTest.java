@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BundleDeltaBuilderTest {
+
+    private static final long BUILD_TIME = 1500000000000L;
+
+    private File folder;
+    private File bundle;
+    private File classes;
+    private File pom;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("bundle-delta", "");
+        folder.delete();
+        classes = new File(folder, "classes");
+        bundle = new File(folder, "test.jar");
+        pom = new File(folder, "pom.xml");
+        writeFile(pom, "pom", BUILD_TIME - 1000);
+        writeFile(new File(classes, "com/test/A.class"), "A1", BUILD_TIME - 1000);
+        writeFile(new File(classes, "com/test/B.class"), "B1", BUILD_TIME - 1000);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle));
+        try {
+            writeEntry(out, BundleDeltaBuilder.MANIFEST_PATH, "Bundle-SymbolicName: test");
+            writeEntry(out, "com/test/A.class", "A1");
+            writeEntry(out, "com/test/B.class", "B1");
+            writeEntry(out, "META-INF/maven/pom.properties", "version=1");
+        } finally {
+            out.close();
+        }
+        bundle.setLastModified(BUILD_TIME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testDelta() throws Exception {
+        writeFile(new File(classes, "com/test/A.class"), "A2", BUILD_TIME + 1000);
+        writeFile(new File(classes, "com/test/test.properties"), "test=1", BUILD_TIME + 1000);
+
+        BundleDeltaBuilder.Result result = new BundleDeltaBuilder(bundle, classes, Collections.singletonList(pom)).build();
+        assertNull("Unexpected full Build: " + result.getFullBuildReason(), result.getFullBuildReason());
+        assertEquals("Wrong Number of replaced Classes", 1, result.getReplaced());
+        assertEquals("Wrong Number of added Resources", 1, result.getAdded());
+
+        ZipFile zipFile = new ZipFile(bundle);
+        try {
+            assertEquals("Manifest was changed", "Bundle-SymbolicName: test", readEntry(zipFile, BundleDeltaBuilder.MANIFEST_PATH));
+            assertEquals("Class was not replaced", "A2", readEntry(zipFile, "com/test/A.class"));
+            assertEquals("Unchanged Class was changed", "B1", readEntry(zipFile, "com/test/B.class"));
+            assertEquals("Resource was not added", "test=1", readEntry(zipFile, "com/test/test.properties"));
+            assertEquals("Maven Metadata was dropped", "version=1", readEntry(zipFile, "META-INF/maven/pom.properties"));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void testFullBuildNeeded() throws Exception {
+        writeFile(new File(classes, "com/test/other/D.class"), "D1", BUILD_TIME + 1000);
+        BundleDeltaBuilder.Result result = new BundleDeltaBuilder(bundle, classes, Collections.singletonList(pom)).build();
+        assertTrue("New Package must need a full Build", result.isFullBuildNeeded());
+        assertFalse("Bundle was changed", result.isChanged());
+        assertEquals("Bundle was written", BUILD_TIME, bundle.lastModified());
+
+        new File(classes, "com/test/other/D.class").delete();
+        writeFile(new File(classes, "com/test/C.class"), "C1", BUILD_TIME + 1000);
+        result = new BundleDeltaBuilder(bundle, classes, Collections.singletonList(pom)).build();
+        assertTrue("New Class in an existing Package must need a full Build", result.isFullBuildNeeded());
+        assertEquals("Bundle was written", BUILD_TIME, bundle.lastModified());
+
+        new File(classes, "com/test/C.class").delete();
+        new File(classes, "com/test/B.class").delete();
+        result = new BundleDeltaBuilder(bundle, classes, Collections.singletonList(pom)).build();
+        assertTrue("Removed Class must need a full Build", result.isFullBuildNeeded());
+        assertEquals("Bundle was written", BUILD_TIME, bundle.lastModified());
+
+        writeFile(new File(classes, "com/test/B.class"), "B1", BUILD_TIME - 1000);
+        pom.setLastModified(BUILD_TIME + 1000);
+        result = new BundleDeltaBuilder(bundle, classes, Arrays.asList(pom)).build();
+        assertTrue("Changed POM must need a full Build", result.isFullBuildNeeded());
+    }
+
+    private static void writeFile(File file, String content, long timestamp) throws IOException {
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+        file.setLastModified(timestamp);
+    }
+
+    private static void writeEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes("UTF-8"));
+        out.closeEntry();
+    }
+
+    private static String readEntry(ZipFile zipFile, String name) throws IOException {
+        InputStream in = zipFile.getInputStream(zipFile.getEntry(name));
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeDispatcherTest {
+
+    @Test
+    public void testKeysDoNotWaitOnEachOther() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch otherHandled = new CountDownLatch(1);
+        final CountDownLatch allHandled = new CountDownLatch(5);
+        final List<String> handledA = Collections.synchronizedList(new ArrayList<String>());
+        ChangeDispatcher<String, String> dispatcher = new ChangeDispatcher<String, String>(
+            "test", 2, 100,
+            new ChangeDispatcher.Handler<String, String>() {
+                @Override
+                public void handle(String key, List<String> items) {
+                    if("a".equals(key)) {
+                        try {
+                            // The first batch of 'a' is held back until 'b' was handled
+                            blocked.await(5, TimeUnit.SECONDS);
+                        } catch(InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        handledA.addAll(items);
+                    } else {
+                        otherHandled.countDown();
+                    }
+                    for(int i = 0; i < items.size(); i++) {
+                        allHandled.countDown();
+                    }
+                }
+
+                @Override
+                public void resync(String key, List<String> dropped) {
+                    throw new IllegalStateException("Unexpected Resync of: " + key);
+                }
+
+                @Override
+                public void dropped(String key, List<String> dropped) {
+                }
+
+                @Override
+                public boolean isKeptOnOverflow(String item) {
+                    return false;
+                }
+            }
+        );
+        try {
+            dispatcher.dispatch("a", Arrays.asList("/a/1", "/a/2"));
+            dispatcher.dispatch("a", Arrays.asList("/a/3", "/a/4"));
+            dispatcher.dispatch("b", Collections.singletonList("/b/1"));
+            assertTrue("Key 'b' waited for key 'a'", otherHandled.await(5, TimeUnit.SECONDS));
+            blocked.countDown();
+            assertTrue("Not all Items were handled", allHandled.await(5, TimeUnit.SECONDS));
+            assertEquals("Items of a Key not handled in order", Arrays.asList("/a/1", "/a/2", "/a/3", "/a/4"), handledA);
+            assertEquals("Items are still pending", 0, dispatcher.getPendingCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testOverflowResyncs() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch resynced = new CountDownLatch(1);
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger droppedCount = new AtomicInteger();
+        ChangeDispatcher<String, String> dispatcher = new ChangeDispatcher<String, String>(
+            "test", 1, 3,
+            new ChangeDispatcher.Handler<String, String>() {
+                @Override
+                public void handle(String key, List<String> items) {
+                    started.countDown();
+                    try {
+                        blocked.await(5, TimeUnit.SECONDS);
+                    } catch(InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    handled.addAll(items);
+                }
+
+                @Override
+                public void resync(String key, List<String> dropped) {
+                    droppedCount.set(dropped.size());
+                    resynced.countDown();
+                }
+
+                @Override
+                public void dropped(String key, List<String> dropped) {
+                }
+
+                @Override
+                public boolean isKeptOnOverflow(String item) {
+                    return item.startsWith("delete:");
+                }
+            }
+        );
+        try {
+            dispatcher.dispatch("a", Collections.singletonList("/a/0"));
+            assertTrue("First Item was not handled", started.await(5, TimeUnit.SECONDS));
+            // The Worker is busy -> these pile up beyond the high-water mark
+            dispatcher.dispatch("a", Arrays.asList("/a/1", "delete:/a/2", "/a/3"));
+            dispatcher.dispatch("a", Arrays.asList("/a/4", "/a/5"));
+            assertEquals("Only the kept Items must be waiting", 1, dispatcher.getPendingCount());
+            blocked.countDown();
+            assertTrue("Key was not resynced", resynced.await(5, TimeUnit.SECONDS));
+            assertEquals("Kept Item not handled before the Resync", Arrays.asList("/a/0", "delete:/a/2"), handled);
+            assertEquals("Wrong Number of dropped Items", 4, droppedCount.get());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testOverflowCompletesReplay() throws Exception {
+        File folder = File.createTempFile("change-dispatcher", "");
+        folder.delete();
+        try {
+            OfflineChangeJournal journal = new OfflineChangeJournal(new File(folder, "test.journal"));
+            List<FileChange> offlineChanges = new ArrayList<FileChange>();
+            for(int i = 0; i < 10; i++) {
+                offlineChanges.add(new FileChange("/apps/test/file" + i + ".html", FileChangeType.CHANGED));
+            }
+            offlineChanges.add(new FileChange("/apps/test/removed.html", FileChangeType.DELETED));
+            journal.append(offlineChanges);
+
+            OfflineChangeJournal.Replay replay = journal.startReplay();
+            List<FileChange> replayed = new ArrayList<FileChange>();
+            for(Map.Entry<String, FileChangeType> entry : replay.getChanges().entrySet()) {
+                FileChange fileChange = new FileChange(entry.getKey(), entry.getValue());
+                fileChange.setReplay(replay);
+                replayed.add(fileChange);
+            }
+            replay.start(replayed.size());
+
+            final CountDownLatch resynced = new CountDownLatch(1);
+            final AtomicInteger handledCount = new AtomicInteger();
+            ChangeDispatcher<String, FileChange> dispatcher = new ChangeDispatcher<String, FileChange>(
+                "test", 1, 5,
+                new ChangeDispatcher.Handler<String, FileChange>() {
+                    @Override
+                    public void handle(String key, List<FileChange> items) {
+                        for(FileChange item : items) {
+                            handledCount.incrementAndGet();
+                            complete(item, true);
+                        }
+                    }
+
+                    @Override
+                    public void resync(String key, List<FileChange> dropped) {
+                        for(FileChange item : dropped) {
+                            complete(item, true);
+                        }
+                        resynced.countDown();
+                    }
+
+                    @Override
+                    public void dropped(String key, List<FileChange> dropped) {
+                        for(FileChange item : dropped) {
+                            complete(item, false);
+                        }
+                    }
+
+                    @Override
+                    public boolean isKeptOnOverflow(FileChange item) {
+                        return item.getFileChangeType() == FileChangeType.DELETED;
+                    }
+                }
+            );
+            try {
+                // More Items than the high-water mark -> all but the deletion are dropped in favor of a resync
+                dispatcher.dispatch("a", replayed);
+                assertTrue("Key was not resynced", resynced.await(5, TimeUnit.SECONDS));
+                assertEquals("Only the Deletion must be handled", 1, handledCount.get());
+                assertFalse("Replayed Changes were not removed from the Journal", journal.hasChanges());
+            } finally {
+                dispatcher.shutdown();
+            }
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testShutdownReportsDropped() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> dropped = Collections.synchronizedList(new ArrayList<String>());
+        ChangeDispatcher<String, String> dispatcher = new ChangeDispatcher<String, String>(
+            "test", 1, 100,
+            new ChangeDispatcher.Handler<String, String>() {
+                @Override
+                public void handle(String key, List<String> items) {
+                    started.countDown();
+                    try {
+                        blocked.await(5, TimeUnit.SECONDS);
+                    } catch(InterruptedException e) {
+                        // Interrupted by the shutdown
+                    }
+                }
+
+                @Override
+                public void resync(String key, List<String> items) {
+                    throw new IllegalStateException("Unexpected Resync of: " + key);
+                }
+
+                @Override
+                public void dropped(String key, List<String> items) {
+                    dropped.addAll(items);
+                }
+
+                @Override
+                public boolean isKeptOnOverflow(String item) {
+                    return false;
+                }
+            }
+        );
+        dispatcher.dispatch("a", Collections.singletonList("/a/0"));
+        assertTrue("First Item was not handled", started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("a", Arrays.asList("/a/1", "/a/2"));
+        dispatcher.shutdown();
+        assertEquals("Pending Items were not reported as dropped", Arrays.asList("/a/1", "/a/2"), dropped);
+    }
+
+    private static void complete(FileChange fileChange, boolean success) {
+        try {
+            fileChange.getReplay().completed(fileChange, success);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
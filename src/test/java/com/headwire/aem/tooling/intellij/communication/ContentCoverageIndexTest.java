@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentCoverageIndexTest {
+
+    private static final String ROOT = "/project/ui.apps/src/main/content/jcr_root";
+
+    @Test
+    public void testNearestSerializationFile() throws Exception {
+        ContentCoverageIndex index = new ContentCoverageIndex(ROOT, ".content.xml");
+        index.addSerializationFile(ROOT + "/apps/test/.content.xml");
+        index.addSerializationFile(ROOT + "/apps/test/components/page/.content.xml");
+        index.addSerializationFile("/somewhere/else/.content.xml");
+        assertEquals("Wrong Number of indexed Files", 2, index.size());
+
+        assertEquals(
+            "Nearest Serialization File not found",
+            ROOT + "/apps/test/components/page/.content.xml",
+            index.getCoveringSerializationFile(ROOT + "/apps/test/components/page/cq:dialog")
+        );
+        assertEquals(
+            "Serialization File of a Parent not found",
+            ROOT + "/apps/test/.content.xml",
+            index.getCoveringSerializationFile(ROOT + "/apps/test/components/other")
+        );
+        assertNull("Folder above all Serialization Files is covered", index.getCoveringSerializationFile(ROOT + "/apps"));
+        assertNull("Folder outside of the Sync Directory is covered", index.getCoveringSerializationFile("/somewhere/else/folder"));
+    }
+
+    @Test
+    public void testUpdates() throws Exception {
+        ContentCoverageIndex index = new ContentCoverageIndex(ROOT, ".content.xml");
+        index.addSerializationFile(ROOT + "/apps/test/.content.xml");
+        String folder = ROOT + "/apps/test/components/page/cq:dialog";
+        assertEquals("Wrong covering File", ROOT + "/apps/test/.content.xml", index.getCoveringSerializationFile(folder));
+
+        index.addSerializationFile(ROOT + "/apps/test/components/page/.content.xml");
+        assertEquals("Added File not used", ROOT + "/apps/test/components/page/.content.xml", index.getCoveringSerializationFile(folder));
+
+        index.removeSerializationFile(ROOT + "/apps/test/components/page/.content.xml");
+        assertEquals("Removed File still used", ROOT + "/apps/test/.content.xml", index.getCoveringSerializationFile(folder));
+
+        index.addSerializationFile(ROOT + "/apps/test/components/page/.content.xml");
+        index.removeFolder(ROOT + "/apps/test");
+        assertNull("Files of a removed Folder still used", index.getCoveringSerializationFile(folder));
+        assertEquals("Files of a removed Folder still indexed", 0, index.size());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContentHashIndexTest {
+
+    private File folder;
+    private File indexFile;
+
+    @Before
+    public void setup() throws IOException {
+        folder = File.createTempFile("content-hash", "");
+        folder.delete();
+        folder.mkdirs();
+        indexFile = new File(folder, "index/test.idx");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testChangeDetection() throws Exception {
+        File file = createFile("a.html", "<p>Hello</p>");
+        ContentHashIndex index = new ContentHashIndex(indexFile);
+        assertFalse("Unknown File must not be unchanged", index.isUnchanged("/apps/a.html", file));
+        index.update("/apps/a.html", file);
+        assertTrue("Recorded File must be unchanged", index.isUnchanged("/apps/a.html", file));
+
+        // Same Content with a new Timestamp like after a checkout
+        FileUtils.writeStringToFile(file, "<p>Hello</p>", "UTF-8");
+        file.setLastModified(file.lastModified() + 10000);
+        assertTrue("Timestamp Change with the same Content must be unchanged", index.isUnchanged("/apps/a.html", file));
+
+        FileUtils.writeStringToFile(file, "<p>Hello World</p>", "UTF-8");
+        assertFalse("Content Change was not detected", index.isUnchanged("/apps/a.html", file));
+        index.close();
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File first = createFile("first.txt", "first");
+        File second = createFile("second.txt", "second");
+        File third = createFile("third.txt", "third");
+        ContentHashIndex index = new ContentHashIndex(indexFile);
+        index.update("/content/first.txt", first);
+        index.update("/content/folder/second.txt", second);
+        index.update("/etc/third.txt", third);
+        index.remove("/content/folder");
+        index.close();
+
+        index = new ContentHashIndex(indexFile);
+        assertEquals("Wrong Number of Entries after reopening", 2, index.size());
+        assertTrue("First File was lost", index.isUnchanged("/content/first.txt", first));
+        assertFalse("Removed File is still there", index.contains("/content/folder/second.txt"));
+        assertTrue("Third File was lost", index.isUnchanged("/etc/third.txt", third));
+        // Entries added after the compaction must be found again as well
+        index.update("/content/folder/second.txt", second);
+        index.close();
+
+        index = new ContentHashIndex(indexFile);
+        assertEquals("Wrong Number of Entries after reopening again", 3, index.size());
+        assertTrue("Second File was lost", index.isUnchanged("/content/folder/second.txt", second));
+        index.clear();
+        index.close();
+
+        index = new ContentHashIndex(indexFile);
+        assertEquals("Index was not cleared", 0, index.size());
+        index.close();
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        byte[] digest = ContentHashIndex.computeHash(createFile("order.txt", "a\nb\nc"));
+        ContentHashIndex index = new ContentHashIndex(indexFile);
+        assertNull("Unknown Digest must be null", index.getDigest("order:/apps/test"));
+        index.putDigest("order:/apps/test", digest);
+        index.close();
+        index = new ContentHashIndex(indexFile);
+        assertArrayEquals("Digest was not persisted", digest, index.getDigest("order:/apps/test"));
+        index.remove("order:/apps");
+        assertNull("Digest was not removed with its parent", index.getDigest("order:/apps/test"));
+        index.close();
+    }
+
+    @Test
+    public void testGrowth() throws Exception {
+        File file = createFile("file.txt", "content");
+        ContentHashIndex index = new ContentHashIndex(indexFile);
+        for(int i = 0; i < 5000; i++) {
+            index.update("/content/some/deeper/structure/file-" + i + ".txt", file);
+        }
+        index.close();
+        index = new ContentHashIndex(indexFile);
+        assertEquals("Entries were lost when the index grew", 5000, index.size());
+        assertTrue("Last Entry was lost", index.isUnchanged("/content/some/deeper/structure/file-4999.txt", file));
+        index.close();
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File ret = new File(folder, name);
+        FileUtils.writeStringToFile(ret, content, "UTF-8");
+        return ret;
+    }
+}
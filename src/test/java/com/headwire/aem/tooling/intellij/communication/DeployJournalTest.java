@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeployJournalTest {
+
+    private File folder;
+    private File journalFile;
+
+    @Before
+    public void setup() throws IOException {
+        folder = File.createTempFile("deploy-journal", "");
+        folder.delete();
+        folder.mkdirs();
+        journalFile = new File(folder, "journal/test.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        DeployJournal journal = new DeployJournal(journalFile);
+        assertFalse("New Journal must not be resumable", journal.isResumable());
+        journal.begin(true, Arrays.asList("/a", "/b", "/c"), false);
+        journal.completed("/a", 1);
+        journal.commit();
+        journal.close();
+
+        journal = new DeployJournal(journalFile);
+        assertTrue("Interrupted forced Publish must be resumable", journal.isResumable());
+        assertEquals("Wrong Planned Count", 3, journal.getPlannedCount());
+        assertTrue("Committed Path is missing", journal.getCompletedPaths().contains("/a"));
+        assertEquals("Wrong Remaining Count", 2, journal.getRemainingCount());
+
+        journal.begin(true, Arrays.asList("/b", "/c"), true);
+        journal.completed("/b", 2);
+        journal.completed("/c", 3);
+        journal.commit();
+        assertEquals("Resumed Publish must keep the completed Paths", 3, journal.getCompletedCount());
+        assertEquals("Nothing should remain", 0, journal.getRemainingCount());
+        journal.finish();
+        assertFalse("Finished Journal must be deleted", journalFile.exists());
+    }
+
+    @Test
+    public void testChangedPathIsPublishedAgain() throws Exception {
+        DeployJournal journal = new DeployJournal(journalFile);
+        journal.begin(true, Arrays.asList("/a", "/b"), false);
+        journal.completed("/a", 1);
+        journal.completed("/b", 2);
+        journal.commit();
+        journal.close();
+
+        journal = new DeployJournal(journalFile);
+        assertTrue("Unchanged Path must be completed", journal.isCompleted("/a", 1));
+        assertFalse("Changed Path must not be completed", journal.isCompleted("/b", 5));
+        // The changed path is planned again and then interrupted
+        journal.begin(true, Collections.singletonList("/b"), true);
+        journal.close();
+
+        journal = new DeployJournal(journalFile);
+        assertTrue("Unchanged Path must stay completed", journal.isCompleted("/a", 1));
+        assertFalse("Planned again Path must not be completed", journal.getCompletedPaths().contains("/b"));
+        assertEquals("Wrong Remaining Count", 1, journal.getRemainingCount());
+    }
+
+    @Test
+    public void testExpiredIsNotResumable() throws Exception {
+        DeployJournal journal = new DeployJournal(journalFile);
+        journal.begin(true, Collections.singletonList("/a"), false);
+        journal.close();
+
+        journal = new DeployJournal(journalFile, -1);
+        assertFalse("Expired Journal must not be resumable", journal.isResumable());
+    }
+
+    @Test
+    public void testUpdateIsNotResumable() throws Exception {
+        DeployJournal journal = new DeployJournal(journalFile);
+        journal.begin(false, Collections.singletonList("/a"), false);
+        journal.close();
+
+        journal = new DeployJournal(journalFile);
+        assertFalse("Interrupted Update must not be resumable", journal.isResumable());
+        assertEquals("Wrong Remaining Count", 1, journal.getRemainingCount());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.DeployMetrics.Phase;
+import com.headwire.aem.tooling.intellij.communication.DeployMetrics.PhaseStatistics;
+import org.apache.sling.ide.filter.Filter;
+import org.apache.sling.ide.filter.FilterResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeployMetricsTest {
+
+    @Test
+    public void testRecord() throws Exception {
+        DeployMetrics metrics = new DeployMetrics();
+        long now = System.nanoTime();
+        metrics.record(Phase.execute, now, 3);
+        metrics.record(Phase.execute, now - TimeUnit.MILLISECONDS.toNanos(30), 1);
+        metrics.record(Phase.execute, now - TimeUnit.SECONDS.toNanos(20), 1);
+
+        PhaseStatistics statistics = metrics.getStatistics(Phase.execute);
+        assertEquals("Wrong Number of Calls", 3, statistics.getCount());
+        assertEquals("Wrong Number of Items", 5, statistics.getItems());
+        assertTrue("Max is too small: " + statistics.getMaxMillis(), statistics.getMaxMillis() >= 20000);
+        long[] histogram = statistics.getHistogram();
+        assertEquals("Fast Call not in first Bucket", 1, histogram[0]);
+        assertEquals("30ms Call not in the 50ms Bucket", 1, histogram[5]);
+        assertEquals("Slow Call not in the last Bucket", 1, histogram[histogram.length - 1]);
+        assertEquals("Other Phase was changed", 0, metrics.getStatistics(Phase.walk).getCount());
+        double throughput = statistics.getItems() * 1000.0 / statistics.getTotalMillis();
+        assertEquals("Wrong Throughput", throughput, statistics.getItemsPerSecond(), throughput / 1000);
+
+        metrics.reset();
+        assertEquals("Calls were not reset", 0, metrics.getStatistics(Phase.execute).getCount());
+    }
+
+    @Test
+    public void testFilterAndJson() throws Exception {
+        DeployMetrics metrics = new DeployMetrics();
+        Filter filter = metrics.wrap(
+            new Filter() {
+                @Override
+                public FilterResult filter(String repositoryPath) {
+                    return FilterResult.ALLOW;
+                }
+            }
+        );
+        assertEquals("Wrapped Filter changed the Result", FilterResult.ALLOW, filter.filter("/apps"));
+        filter.filter("/etc");
+
+        SerializationDataCache serializationDataCache = new SerializationDataCache(1024);
+        serializationDataCache.get("/apps/.content.xml", 1);
+        JSONObject json = new JSONObject(metrics.toJson(new NodeTypeCache(1000), serializationDataCache));
+        JSONArray phases = json.getJSONArray("phases");
+        assertEquals("Not all Phases exported", Phase.values().length, phases.length());
+        JSONObject filterPhase = phases.getJSONObject(Phase.filter.ordinal());
+        assertEquals("Wrong Phase exported", "filter", filterPhase.getString("phase"));
+        assertEquals("Filter Calls were not counted", 2, filterPhase.getLong("count"));
+        JSONObject caches = json.getJSONObject("globalCaches");
+        assertEquals("Node Type Cache not exported", 0, caches.getJSONObject("nodeTypeCache").getLong("hits"));
+        assertEquals("Serialization Data Cache Misses not exported", 1, caches.getJSONObject("serializationDataCache").getLong("misses"));
+        assertEquals("Serialization Data Cache Hit Rate not exported", 0, caches.getJSONObject("serializationDataCache").getDouble("hitRate"), 0);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
+import com.intellij.mock.MockVirtualFile;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FileChangeQueueTest {
+
+    @Test
+    public void testDeleteFollowedByCreateKeepsNewFile() throws Exception {
+        VirtualFile deleted = new MockVirtualFile("test.html");
+        VirtualFile created = new MockVirtualFile("test.html");
+        FileChangeQueue queue = new FileChangeQueue();
+        queue.addAll(Arrays.asList(
+            new FileChange(deleted, FileChangeType.DELETED),
+            new FileChange(created, FileChangeType.CREATED)
+        ));
+        List<FileChange> changes = queue.take(0, 0);
+        assertEquals("Changes not merged", 1, changes.size());
+        assertEquals("Wrong Change Type", FileChangeType.CHANGED, changes.get(0).getFileChangeType());
+        assertSame("Merged Change does not carry the new File", created, changes.get(0).getFile());
+    }
+
+    @Test
+    public void testCreateFollowedByDeleteCancels() throws Exception {
+        VirtualFile file = new MockVirtualFile("test.html");
+        VirtualFile other = new MockVirtualFile("other.html");
+        FileChangeQueue queue = new FileChangeQueue();
+        queue.addAll(Arrays.asList(
+            new FileChange(file, FileChangeType.CREATED),
+            new FileChange(other, FileChangeType.CHANGED),
+            new FileChange(file, FileChangeType.DELETED)
+        ));
+        List<FileChange> changes = queue.take(0, 0);
+        assertEquals("Created and deleted File not dropped", 1, changes.size());
+        assertSame("Wrong remaining Change", other, changes.get(0).getFile());
+        assertEquals("Changes not counted as coalesced", 1, queue.getCoalescedCount());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MerkleTreeTest {
+
+    private File jcrRoot;
+
+    @Before
+    public void setup() throws IOException {
+        jcrRoot = File.createTempFile("jcr_root", "");
+        jcrRoot.delete();
+        jcrRoot.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(jcrRoot);
+    }
+
+    @Test
+    public void testLocalTree() throws Exception {
+        createFile("apps/test/.content.xml", "<jcr:root/>");
+        createFile("apps/test/component/component.html", "<p>Test</p>");
+        createFile("apps/test/component/_cq_dialog/.content.xml", "<jcr:root/>");
+        createFile("apps/test/image.png", "png");
+        createFile("apps/test/image.png.dir/.content.xml", "<jcr:root/>");
+        createFile("apps/test/design.xml", "<?xml version=\"1.0\"?><jcr:root jcr:primaryType=\"cq:Page\"/>");
+        MerkleTree tree = MerkleTreeBuilder.buildLocalTree(jcrRoot, null, "/apps/test");
+        MerkleTree.Node root = tree.getRoot();
+        assertNotNull("Root was not found", root);
+        assertNotNull("Component Folder was not added", root.getChild("component"));
+        assertNotNull("Escaped Folder was not converted", root.getChild("component").getChild("cq:dialog"));
+        assertTrue("Image is not a file", root.getChild("image.png").isFile());
+        assertNull(".dir Folder must be merged into its file", root.getChild("image.png.dir"));
+        assertNull("DocView File must be ignored", root.getChild("design.xml"));
+        assertNull("Missing Root must not exist", MerkleTreeBuilder.buildLocalTree(jcrRoot, null, "/apps/missing").getRoot());
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        createFile("apps/test/a/one.html", "one");
+        createFile("apps/test/a/two.html", "two");
+        createFile("apps/test/b/three.html", "three");
+        createFile("apps/test/c/four.html", "four");
+        MerkleTree local = MerkleTreeBuilder.buildLocalTree(jcrRoot, null, "/apps/test");
+
+        MerkleTree remote = new MerkleTree("/apps/test");
+        MerkleTree.Node root = remote.createFolderRoot();
+        MerkleTree.Node a = root.addFolder("a");
+        a.addFile("one.html", 3, digest("one"));
+        a.addFile("two.html", 3, digest("two"));
+        root.addFolder("b").addFile("three.html", 10);
+        root.addFolder("c");
+        root.addFolder("d").addFile("five.html", 4);
+
+        List<MerkleTree.Difference> differences = MerkleTree.diff(local, remote);
+        assertEquals("Wrong Number of Differences: " + differences, 3, differences.size());
+        assertTrue("Changed File not found", differences.contains(new MerkleTree.Difference("/apps/test/b/three.html", MerkleTree.DifferenceType.changed)));
+        assertTrue("Local File not found", differences.contains(new MerkleTree.Difference("/apps/test/c/four.html", MerkleTree.DifferenceType.localOnly)));
+        assertTrue("Remote Folder not found", differences.contains(new MerkleTree.Difference("/apps/test/d", MerkleTree.DifferenceType.remoteOnly)));
+
+        MerkleTree same = MerkleTreeBuilder.buildLocalTree(jcrRoot, null, "/apps/test");
+        assertTrue("Same Trees must not have Differences", MerkleTree.diff(local, same).isEmpty());
+    }
+
+    @Test
+    public void testSameSizeDifferentContent() throws Exception {
+        createFile("apps/test/one.html", "one");
+        MerkleTree local = MerkleTreeBuilder.buildLocalTree(jcrRoot, null, "/apps/test");
+
+        MerkleTree remote = new MerkleTree("/apps/test");
+        remote.createFolderRoot().addFile("one.html", 3, digest("eno"));
+
+        List<MerkleTree.Difference> differences = MerkleTree.diff(local, remote);
+        assertEquals("Changed Content with the same Size not found: " + differences, 1, differences.size());
+        assertTrue("Changed File not found", differences.contains(new MerkleTree.Difference("/apps/test/one.html", MerkleTree.DifferenceType.changed)));
+    }
+
+    private byte[] digest(String content) throws IOException {
+        return MerkleTree.digest(new ByteArrayInputStream(content.getBytes("UTF-8")));
+    }
+
+    private void createFile(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(jcrRoot, path), content, "UTF-8");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.serialization.SerializationKindManager;
+import org.apache.sling.ide.transport.NodeTypeRegistry;
+import org.apache.sling.ide.transport.Repository;
+import org.junit.Test;
+
+import javax.jcr.nodetype.NodeType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class NodeTypeCacheTest {
+
+    @Test
+    public void testHitMissAndInvalidate() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Repository repository = createRepository(loads);
+        NodeTypeCache cache = new NodeTypeCache(NodeTypeCache.DEFAULT_TIME_TO_LIVE_IN_MILLIS);
+
+        SerializationKindManager first = cache.getSerializationKindManager(repository);
+        for(int i = 0; i < 10; i++) {
+            assertSame("Cached Manager not returned", first, cache.getSerializationKindManager(repository));
+        }
+        assertEquals("Node Types loaded more than once", 1, loads.get());
+        assertEquals("Wrong Number of Hits", 10, cache.getHitCount());
+        assertEquals("Wrong Number of Misses", 1, cache.getMissCount());
+
+        cache.invalidate(repository);
+        assertNotSame("Invalidated Manager was returned", first, cache.getSerializationKindManager(repository));
+        assertEquals("Node Types not loaded again after Invalidation", 2, loads.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Repository repository = createRepository(loads);
+        NodeTypeCache cache = new NodeTypeCache(-1);
+        cache.getSerializationKindManager(repository);
+        cache.getSerializationKindManager(repository);
+        assertEquals("Expired Node Types were not loaded again", 2, loads.get());
+        assertEquals("Expired Entry counted as Hit", 0, cache.getHitCount());
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Repository repository = createRepository(loads, release);
+        final NodeTypeCache cache = new NodeTypeCache(NodeTypeCache.DEFAULT_TIME_TO_LIVE_IN_MILLIS);
+        int callers = 8;
+        final CountDownLatch started = new CountDownLatch(callers);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<SerializationKindManager>> results = new ArrayList<Future<SerializationKindManager>>();
+            for(int i = 0; i < callers; i++) {
+                results.add(
+                    executor.submit(
+                        new Callable<SerializationKindManager>() {
+                            @Override
+                            public SerializationKindManager call() throws Exception {
+                                started.countDown();
+                                return cache.getSerializationKindManager(repository);
+                            }
+                        }
+                    )
+                );
+            }
+            started.await(5, TimeUnit.SECONDS);
+            // Give the callers the chance to pile up on the pending load
+            Thread.sleep(100);
+            release.countDown();
+            SerializationKindManager first = results.get(0).get(5, TimeUnit.SECONDS);
+            for(Future<SerializationKindManager> result : results) {
+                assertSame("Concurrent callers got different Managers", first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Concurrent Misses loaded the Node Types more than once", 1, loads.get());
+        assertEquals("Wrong Number of Misses", 1, cache.getMissCount());
+    }
+
+    private static Repository createRepository(final AtomicInteger loads) {
+        return createRepository(loads, new CountDownLatch(0));
+    }
+
+    private static Repository createRepository(final AtomicInteger loads, final CountDownLatch release) {
+        final NodeTypeRegistry registry = (NodeTypeRegistry) Proxy.newProxyInstance(
+            NodeTypeCacheTest.class.getClassLoader(),
+            new Class[] { NodeTypeRegistry.class },
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if("getNodeTypes".equals(method.getName())) {
+                        loads.incrementAndGet();
+                        release.await(5, TimeUnit.SECONDS);
+                        return Collections.<NodeType>emptyList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+        return (Repository) Proxy.newProxyInstance(
+            NodeTypeCacheTest.class.getClassLoader(),
+            new Class[] { Repository.class },
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if("getNodeTypeRegistry".equals(method.getName())) {
+                        return registry;
+                    } else if("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    } else if("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import com.headwire.aem.tooling.intellij.communication.ServerConnectionManager.FileChangeType;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OfflineChangeJournalTest {
+
+    private File folder;
+    private File journalFile;
+
+    @Before
+    public void setup() throws IOException {
+        folder = File.createTempFile("offline-journal", "");
+        folder.delete();
+        folder.mkdirs();
+        journalFile = new File(folder, "journal/test.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testReplayKeepsFailedAndNewChanges() throws Exception {
+        OfflineChangeJournal journal = new OfflineChangeJournal(journalFile);
+        journal.append(Arrays.asList(
+            new FileChange("/a", FileChangeType.CHANGED),
+            new FileChange("/b", FileChangeType.DELETED)
+        ));
+        OfflineChangeJournal.Replay replay = journal.startReplay();
+        assertEquals("Wrong Number of replayed Changes", 2, replay.getChanges().size());
+        replay.start(2);
+        // Recorded while the replay is running
+        journal.append(Collections.singletonList(new FileChange("/c", FileChangeType.CREATED)));
+
+        replay.completed(new FileChange("/a", FileChangeType.CHANGED), true);
+        assertEquals("Journal changed before the Replay finished", 3, journal.load().size());
+        replay.completed(new FileChange("/b", FileChangeType.DELETED), false);
+
+        Map<String, FileChangeType> changes = journal.load();
+        assertEquals("Wrong Changes after the Replay", Arrays.asList("/b", "/c"), new ArrayList<String>(changes.keySet()));
+        assertEquals("Failed Change lost its Type", FileChangeType.DELETED, changes.get("/b"));
+    }
+
+    @Test
+    public void testSuccessfulReplayClearsJournal() throws Exception {
+        OfflineChangeJournal journal = new OfflineChangeJournal(journalFile);
+        journal.append(Collections.singletonList(new FileChange("/a", FileChangeType.CHANGED)));
+        OfflineChangeJournal.Replay replay = journal.startReplay();
+        replay.start(1);
+        assertTrue("Journal cleared before the Replay finished", journal.hasChanges());
+        replay.completed(new FileChange("/a", FileChangeType.CHANGED), true);
+        assertFalse("Replayed Changes were not removed", journal.hasChanges());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        OfflineChangeJournal journal = new OfflineChangeJournal(journalFile, 100);
+        List<FileChange> saves = new ArrayList<FileChange>();
+        for(int i = 0; i < 50; i++) {
+            saves.add(new FileChange("/apps/test/page.html", FileChangeType.CHANGED));
+        }
+        journal.append(saves);
+        assertTrue("Journal was not compacted", journalFile.length() <= 100);
+        assertEquals("Wrong net Changes", 1, journal.load().size());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.io.ConnectorException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PublishSchedulerTest {
+
+    @Test
+    public void testParentsArePublishedFirst() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        PublishScheduler scheduler = new PublishScheduler("test", 4);
+        String[] paths = new String[] {
+            "/jcr_root/apps", "/jcr_root/apps/a", "/jcr_root/apps/a/x.html", "/jcr_root/apps/b",
+            "/jcr_root/apps/b/y.html", "/jcr_root/apps/b/z", "/jcr_root/apps/b/z/.content.xml", "/jcr_root/etc"
+        };
+        for(String path : paths) {
+            scheduler.add(path, new RecordingJob(path, executed));
+        }
+        scheduler.execute();
+        assertEquals("Not all Jobs were executed", paths.length, executed.size());
+        for(String path : paths) {
+            String parent = path.substring(0, path.lastIndexOf('/'));
+            if(executed.contains(parent)) {
+                assertTrue(
+                    "Parent: " + parent + " was not executed before: " + path,
+                    executed.indexOf(parent) < executed.indexOf(path)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testDirFolderIsOrderedAfterItsFile() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        PublishScheduler scheduler = new PublishScheduler("test", 4);
+        scheduler.add("/jcr_root/content/image.png", new RecordingJob("file", executed));
+        scheduler.add("/jcr_root/content/image.png.dir/.content.xml", new RecordingJob("dir", executed));
+        scheduler.execute();
+        assertEquals("Wrong Execution Order", "file", executed.get(0));
+        assertEquals("Wrong Execution Order", "dir", executed.get(1));
+        assertEquals("Normalization of .dir folder failed", "/a/b/c", PublishScheduler.normalize("/a/b.dir/c"));
+        assertEquals("Normalization must ignore .dir file", "/a/.dir", PublishScheduler.normalize("/a/.dir"));
+    }
+
+    @Test
+    public void testBatchWaitsForAllParents() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        PublishScheduler scheduler = new PublishScheduler("test", 4);
+        scheduler.add(Arrays.asList("/jcr_root/apps/a", "/jcr_root/apps/b"), new RecordingJob("siblings", executed));
+        scheduler.add("/jcr_root/etc", new RecordingJob("etc", executed));
+        scheduler.add(Arrays.asList("/jcr_root/apps/a/x", "/jcr_root/etc/y"), new RecordingJob("children", executed));
+        scheduler.execute();
+        assertEquals("Not all Jobs were executed", 3, executed.size());
+        assertEquals("Batch did not wait for all its parents", "children", executed.get(2));
+    }
+
+    @Test
+    public void testFailureSkipsChildren() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        PublishScheduler scheduler = new PublishScheduler("test", 2);
+        scheduler.add(
+            "/jcr_root/apps",
+            new PublishScheduler.Job() {
+                @Override
+                public void execute() throws ConnectorException {
+                    throw new ConnectorException(-1, "Failed on purpose");
+                }
+            }
+        );
+        scheduler.add("/jcr_root/apps/a", new RecordingJob("/jcr_root/apps/a", executed));
+        scheduler.add("/jcr_root/apps/a/b", new RecordingJob("/jcr_root/apps/a/b", executed));
+        try {
+            scheduler.execute();
+            fail("Failure of the parent was not reported");
+        } catch(ConnectorException e) {
+            assertEquals("Unexpected Exception Id", -1, e.getId());
+        }
+        assertFalse("Child of a failed Job was executed", executed.contains("/jcr_root/apps/a"));
+        assertTrue("Nothing should have been executed", executed.isEmpty());
+    }
+
+    private static class RecordingJob
+        implements PublishScheduler.Job
+    {
+        private final String name;
+        private final List<String> executed;
+
+        private RecordingJob(String name, List<String> executed) {
+            this.name = name;
+            this.executed = executed;
+        }
+
+        @Override
+        public void execute() {
+            try {
+                // Give other workers a chance to run out of order
+                Thread.sleep(5);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add(name);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.communication;
+
+import org.apache.sling.ide.transport.ResourceProxy;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SerializationDataCacheTest {
+
+    @Test
+    public void testCopyAndModificationStamp() throws Exception {
+        SerializationDataCache cache = new SerializationDataCache(SerializationDataCache.DEFAULT_MAXIMUM_SIZE_IN_BYTES);
+        ResourceProxy page = createPage("/content/test");
+        cache.put(1, 10, page, 100);
+        // Changes of the caller must not end up in the Cache
+        page.addChild(new ResourceProxy("/content/test/added"));
+
+        ResourceProxy cached = cache.get(1, 10);
+        assertNotNull("Entry not found", cached);
+        assertEquals("Modification of the original was cached", 1, cached.getChildren().size());
+        cached.getChildren().clear();
+        cached.addProperty("title", "changed");
+        cached = cache.get(1, 10);
+        assertEquals("Modification of a copy was cached", 1, cached.getChildren().size());
+        assertEquals("Modified Property was cached", "Test", cached.getProperties().get("title"));
+
+        assertNull("Entry of an old Modification Stamp returned", cache.get(1, 11));
+        assertNull("Outdated Entry was not removed", cache.get(1, 10));
+        assertEquals("Wrong Number of Hits", 2, cache.getHitCount());
+        assertEquals("Wrong Number of Misses", 2, cache.getMissCount());
+        assertEquals("Wrong Hit Rate", 0.5, cache.getHitRate(), 0.001);
+        assertEquals("Outdated Entry still counted", 0, cache.getSize());
+    }
+
+    @Test
+    public void testEvictionBySize() throws Exception {
+        SerializationDataCache cache = new SerializationDataCache(250);
+        cache.put(1, 1, createPage("/content/one"), 100);
+        cache.put(2, 1, createPage("/content/two"), 100);
+        // Use the first one so that the second one is the least recently used
+        cache.get(1, 1);
+        cache.put(3, 1, createPage("/content/three"), 100);
+
+        assertNotNull("Recently used Entry was evicted", cache.get(1, 1));
+        assertNull("Least recently used Entry was not evicted", cache.get(2, 1));
+        assertNotNull("New Entry was evicted", cache.get(3, 1));
+        assertEquals("Wrong retained Size", 200, cache.getSize());
+
+        cache.put(4, 1, createPage("/content/four"), 300);
+        assertNull("Entry larger than the Cache was added", cache.get(4, 1));
+        assertEquals("Oversized Entry evicted others", 200, cache.getSize());
+    }
+
+    private static ResourceProxy createPage(String path) {
+        ResourceProxy ret = new ResourceProxy(path);
+        ret.addProperty("jcr:primaryType", "cq:Page");
+        ret.addProperty("title", "Test");
+        ret.addProperty("tags", new String[] { "one", "two" });
+        ret.addChild(new ResourceProxy(path + "/jcr:content"));
+        return ret;
+    }
+}
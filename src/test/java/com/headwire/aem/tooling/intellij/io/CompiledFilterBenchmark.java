@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.io;
+
+import org.apache.sling.ide.filter.Filter;
+
+import java.util.List;
+
+/**
+ * Compares the time the Vault Filter and the Compiled Filter take to filter the paths
+ * of the Compiled Filter Test. It is not run as a test but started with its main method.
+ */
+public class CompiledFilterBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 2000;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int ITERATIONS_PER_ROUND = 2000;
+
+    public static void main(String[] args) throws Exception {
+        Filter vaultFilter = CompiledFilterTest.loadVaultFilter();
+        Filter compiledFilter = CompiledFilterTest.loadCompiledFilter();
+        String[] paths = toArray(CompiledFilterTest.createPaths());
+        // Warm up both so that they are compiled by the JIT
+        run(vaultFilter, paths, WARM_UP_ROUNDS);
+        run(compiledFilter, paths, WARM_UP_ROUNDS);
+        for(int round = 1; round <= MEASURED_ROUNDS; round++) {
+            double vault = measure(vaultFilter, paths);
+            double compiled = measure(compiledFilter, paths);
+            System.out.println(String.format(
+                "Round %d: Vault Filter %.1f ns, Compiled Filter %.1f ns per Path (%.1fx)",
+                round, vault, compiled, vault / compiled
+            ));
+        }
+    }
+
+    private static double measure(Filter filter, String[] paths) {
+        long start = System.nanoTime();
+        int result = run(filter, paths, ITERATIONS_PER_ROUND);
+        long duration = System.nanoTime() - start;
+        // Use the result so that the calls are not removed
+        if(result == -1) {
+            System.out.println();
+        }
+        return (double) duration / ((long) ITERATIONS_PER_ROUND * paths.length);
+    }
+
+    private static int run(Filter filter, String[] paths, int iterations) {
+        int ret = 0;
+        for(int i = 0; i < iterations; i++) {
+            for(String path : paths) {
+                ret += filter.filter(path).ordinal();
+            }
+        }
+        return ret;
+    }
+
+    private static String[] toArray(List<String> paths) {
+        return paths.toArray(new String[paths.size()]);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.io;
+
+import org.apache.sling.ide.filter.Filter;
+import org.apache.sling.ide.filter.FilterResult;
+import org.apache.sling.ide.impl.vlt.filter.VltFilter;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompiledFilterTest {
+
+    static final String FILTER_RESOURCE = "/filter/filter.xml";
+
+    @Test
+    public void testSameResultsAsVaultFilter() throws Exception {
+        Filter vaultFilter = loadVaultFilter();
+        Filter compiledFilter = loadCompiledFilter();
+        for(String path : createPaths()) {
+            assertEquals("Different Result for: '" + path + "'", vaultFilter.filter(path), compiledFilter.filter(path));
+        }
+    }
+
+    @Test
+    public void testResults() throws Exception {
+        Filter filter = loadCompiledFilter();
+        assertEquals("Root not allowed", FilterResult.ALLOW, filter.filter("/apps/mysite"));
+        assertEquals("Relative Path not handled", FilterResult.ALLOW, filter.filter("apps/mysite/components/page"));
+        assertEquals("Excluded Path allowed", FilterResult.DENY, filter.filter("/apps/mysite/install/core.jar"));
+        assertEquals("Parent of a Root is no Prerequisite", FilterResult.PREREQUISITE, filter.filter("/content"));
+        assertEquals("Sibling of a Root allowed", FilterResult.DENY, filter.filter("/content/othersite"));
+        assertEquals("Last matching Pattern does not decide", FilterResult.ALLOW, filter.filter("/conf/mysite/settings/wcm/policies/mysite/page"));
+        assertEquals("Regular Expression not applied", FilterResult.DENY, filter.filter("/content/mysite/en/archive/2016"));
+    }
+
+    static Filter loadVaultFilter() throws Exception {
+        InputStream contents = CompiledFilterTest.class.getResourceAsStream(FILTER_RESOURCE);
+        try {
+            return new VltFilter(contents);
+        } finally {
+            contents.close();
+        }
+    }
+
+    static Filter loadCompiledFilter() throws Exception {
+        InputStream contents = CompiledFilterTest.class.getResourceAsStream(FILTER_RESOURCE);
+        try {
+            return CompiledFilter.load(contents);
+        } finally {
+            contents.close();
+        }
+    }
+
+    /** @return Roots, their Parents, Siblings and Descendants as they are checked during a Deployment **/
+    static List<String> createPaths() {
+        String[] roots = {
+            "/apps/mysite", "/apps/mysite-components", "/apps/sling/servlet/errorhandler", "/etc/clientlibs/mysite",
+            "/etc/designs/mysite", "/conf/mysite", "/content/mysite", "/content/dam/mysite"
+        };
+        String[] children = {
+            "", "/", "x", "/components", "/components/page/page.html", "/install", "/install/core.jar", "/jcr:content",
+            "/jcr:content/par", "/settings", "/settings/wcm/policies", "/settings/wcm/policies/mysite/page",
+            "/settings/wcm/policies/other", "/en/archive", "/en/archive/2016", "/eng/archive/2016", "/en/.svn/entries",
+            "/shared", "/shared/logo.png", "/private/logo.png"
+        };
+        List<String> ret = new ArrayList<String>();
+        ret.add("");
+        ret.add("/");
+        ret.add("/apps");
+        ret.add("/apps/");
+        ret.add("/con");
+        ret.add("/content");
+        ret.add("/content/othersite/en");
+        ret.add("/libs/foundation");
+        for(String root : roots) {
+            for(String child : children) {
+                ret.add(root + child);
+                ret.add(root.substring(1) + child);
+            }
+            ret.add(root.substring(0, root.length() - 2));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.headwire.aem.tooling.intellij.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class PathTrieTest {
+
+    @Test
+    public void testLongestPrefix() {
+        PathTrie<String> trie = new PathTrie<String>();
+        trie.put("/project/ui.apps/src/main/content/jcr_root", "content");
+        trie.put("/project/ui.apps/src/main/content/META-INF", "metaInf");
+        trie.put("/project/core/target", "build");
+        trie.put("/project/ui.apps/src/main/content/jcr_root/apps/nested/jcr_root", "nested");
+        assertFalse("Duplicate Path must be rejected", trie.put("/project/core/target/", "other"));
+        assertEquals("Wrong Number of Paths", 4, trie.size());
+
+        PathTrie.Entry<String> entry = trie.find("/project/ui.apps/src/main/content/jcr_root/apps/test/.content.xml");
+        assertEquals("Wrong Value", "content", entry.getValue());
+        assertEquals("Registered Path not returned", "/project/ui.apps/src/main/content/jcr_root", entry.getPath());
+        assertEquals("Longest Prefix not found", "nested", trie.find("/project/ui.apps/src/main/content/jcr_root/apps/nested/jcr_root/a").getValue());
+        assertEquals("Backslashes not handled", "build", trie.find("\\project\\core\\target\\core.jar").getValue());
+        assertEquals("Root itself not found", "metaInf", trie.find("/project/ui.apps/src/main/content/META-INF").getValue());
+        assertNull("Partial Folder Name must not match", trie.find("/project/core/target2/core.jar"));
+        assertNull("Parent must not match", trie.find("/project/ui.apps"));
+    }
+}